@@ -1,4 +1,4 @@
-import React, { useState } from 'react';
+import React, { useEffect, useState } from 'react';
 import {
   Typography,
   Paper,
@@ -10,16 +10,36 @@ import {
   ListItem,
   ListItemText,
   Divider,
+  LinearProgress,
 } from '@mui/material';
 import CloudUploadIcon from '@mui/icons-material/CloudUpload';
-import { importUsers } from '../services/api';
+import { getImportJob, importUsers, resumeImportJob } from '../services/api';
+import { ImportJobStatus } from '../types/models';
+
+const POLL_INTERVAL_MS = 2000;
 
 const ImportUsers: React.FC = () => {
   const [file, setFile] = useState<File | null>(null);
   const [loading, setLoading] = useState<boolean>(false);
-  const [results, setResults] = useState<string[]>([]);
+  const [job, setJob] = useState<ImportJobStatus | null>(null);
   const [error, setError] = useState<string>('');
-  const [success, setSuccess] = useState<boolean>(false);
+
+  const running = job !== null && (job.status === 'QUEUED' || job.status === 'RUNNING');
+
+  useEffect(() => {
+    if (!job || !running) {
+      return;
+    }
+    const timer = setTimeout(async () => {
+      try {
+        setJob(await getImportJob(job.id));
+      } catch (err: any) {
+        setError('Lost track of the import job');
+        setJob(null);
+      }
+    }, POLL_INTERVAL_MS);
+    return () => clearTimeout(timer);
+  }, [job, running]);
 
   const handleFileChange = (e: React.ChangeEvent<HTMLInputElement>) => {
     if (e.target.files && e.target.files.length > 0) {
@@ -28,6 +48,18 @@ const ImportUsers: React.FC = () => {
     }
   };
 
+  const handleResume = async () => {
+    if (!job) {
+      return;
+    }
+    setError('');
+    try {
+      setJob(await resumeImportJob(job.id));
+    } catch (err: any) {
+      setError(err.response?.data?.[0] || 'The import could not be resumed');
+    }
+  };
+
   const handleSubmit = async (e: React.FormEvent) => {
     e.preventDefault();
     if (!file) {
@@ -41,14 +73,11 @@ const ImportUsers: React.FC = () => {
     }
 
     setLoading(true);
-    setResults([]);
-    setSuccess(false);
+    setJob(null);
     setError('');
 
     try {
-      const data = await importUsers(file);
-      setResults(data);
-      setSuccess(true);
+      setJob(await importUsers(file));
     } catch (err: any) {
       setError(err.response?.data?.[0] || 'An error occurred during import');
     } finally {
@@ -105,9 +134,22 @@ const ImportUsers: React.FC = () => {
           </Box>
 
           {error && <Alert severity="error" sx={{ mb: 3 }}>{error}</Alert>}
-          {success && (
-            <Alert severity="success" sx={{ mb: 3 }}>
-              Users imported successfully!
+          {job?.status === 'COMPLETED' && (
+            <Alert severity={job.failed > 0 ? 'warning' : 'success'} sx={{ mb: 3 }}>
+              Imported {job.succeeded} users, {job.failed} failed.
+            </Alert>
+          )}
+          {job?.status === 'FAILED' && (
+            <Alert
+              severity="error"
+              sx={{ mb: 3 }}
+              action={
+                <Button color="inherit" size="small" onClick={handleResume}>
+                  Resume
+                </Button>
+              }
+            >
+              Import failed after row {job.committedRecord}: {job.message}
             </Alert>
           )}
 
@@ -115,28 +157,39 @@ const ImportUsers: React.FC = () => {
             type="submit"
             variant="contained"
             color="primary"
-            disabled={loading || !file}
+            disabled={loading || running || !file}
           >
             {loading ? <CircularProgress size={24} /> : 'Import Users'}
           </Button>
         </form>
       </Paper>
 
-      {results.length > 0 && (
+      {job && (
         <Paper sx={{ p: 3 }}>
           <Typography component="h2" variant="h6" gutterBottom>
-            Import Results
+            Import Progress
           </Typography>
-          <List>
-            {results.map((result, index) => (
-              <React.Fragment key={index}>
-                <ListItem>
-                  <ListItemText primary={result} />
-                </ListItem>
-                {index < results.length - 1 && <Divider />}
-              </React.Fragment>
-            ))}
-          </List>
+          {running && <LinearProgress sx={{ mb: 2 }} />}
+          <Typography>
+            {job.status}: {job.processed} processed, {job.succeeded} imported, {job.failed} failed
+            ({job.rowsPerSecond.toFixed(1)} rows/s
+            {job.etaSeconds != null && `, about ${job.etaSeconds}s remaining`})
+          </Typography>
+          {job.errors.length > 0 && (
+            <List>
+              {job.errors.map((importError, index) => (
+                <React.Fragment key={importError.row}>
+                  <ListItem>
+                    <ListItemText
+                      primary={`Row ${importError.row}${importError.username ? ` (${importError.username})` : ''}`}
+                      secondary={importError.message}
+                    />
+                  </ListItem>
+                  {index < job.errors.length - 1 && <Divider />}
+                </React.Fragment>
+              ))}
+            </List>
+          )}
         </Paper>
       )}
     </div>
@@ -1,12 +1,12 @@
 import axios from 'axios';
-import { UserActivity, AnalyticsData, UserSession, AuditLog } from '../types/models';
+import { UserActivity, AnalyticsData, UserSession, AuditLog, ImportJobStatus, CursorPage } from '../types/models';
 
 const API_BASE_URL = '/api';
 
 // User Activities
 export const getUserActivities = async (userId: string): Promise<UserActivity[]> => {
-  const response = await axios.get(`${API_BASE_URL}/logs/activity/user/${userId}`);
-  return response.data;
+  const response = await axios.get<CursorPage<UserActivity>>(`${API_BASE_URL}/logs/activity/user/${userId}`);
+  return response.data.content;
 };
 
 export const logUserActivity = async (
@@ -22,8 +22,8 @@ export const logUserActivity = async (
 
 // Analytics
 export const getAnalyticsByType = async (eventType: string): Promise<AnalyticsData[]> => {
-  const response = await axios.get(`${API_BASE_URL}/logs/analytics/type/${eventType}`);
-  return response.data;
+  const response = await axios.get<CursorPage<AnalyticsData>>(`${API_BASE_URL}/logs/analytics/type/${eventType}`);
+  return response.data.content;
 };
 
 export const logAnalyticsEvent = async (
@@ -59,8 +59,8 @@ export const invalidateSession = async (sessionToken: string): Promise<void> =>
 
 // Audit Logs
 export const getAuditLogsByUser = async (userId: string): Promise<AuditLog[]> => {
-  const response = await axios.get(`${API_BASE_URL}/logs/audit/user/${userId}`);
-  return response.data;
+  const response = await axios.get<CursorPage<AuditLog>>(`${API_BASE_URL}/logs/audit/user/${userId}`);
+  return response.data.content;
 };
 
 export const createAuditLog = async (
@@ -78,7 +78,7 @@ export const createAuditLog = async (
 };
 
 // Import
-export const importUsers = async (file: File): Promise<string[]> => {
+export const importUsers = async (file: File): Promise<ImportJobStatus> => {
   const formData = new FormData();
   formData.append('file', file);
   
@@ -89,4 +89,20 @@ export const importUsers = async (file: File): Promise<string[]> => {
   });
   
   return response.data;
-}; 
\ No newline at end of file
+};
+
+export const getImportJob = async (
+  jobId: string,
+  errorPage = 0,
+  errorSize = 50
+): Promise<ImportJobStatus> => {
+  const response = await axios.get(
+    `${API_BASE_URL}/v1/import/jobs/${jobId}?errorPage=${errorPage}&errorSize=${errorSize}`
+  );
+  return response.data;
+};
+
+export const resumeImportJob = async (jobId: string): Promise<ImportJobStatus> => {
+  const response = await axios.post(`${API_BASE_URL}/v1/import/jobs/${jobId}/resume`);
+  return response.data;
+};
@@ -49,4 +49,37 @@ export interface User {
   role?: string;
   createdAt?: string;
   lastLogin?: string;
-} 
\ No newline at end of file
+}
+
+export interface ImportError {
+  row: number;
+  username?: string;
+  message: string;
+}
+
+export interface ImportJobStatus {
+  id: string;
+  fileName?: string;
+  status: 'QUEUED' | 'RUNNING' | 'COMPLETED' | 'FAILED';
+  message?: string;
+  createdAt: string;
+  startedAt?: string;
+  finishedAt?: string;
+  processed: number;
+  succeeded: number;
+  failed: number;
+  rowsPerSecond: number;
+  etaSeconds?: number;
+  committedRecord: number;
+  errors: ImportError[];
+  errorPage: number;
+  errorPageSize: number;
+  totalErrors: number;
+}
+
+export interface CursorPage<T> {
+  content: T[];
+  nextCursor?: string;
+  hasNext: boolean;
+  totalElements?: number;
+}
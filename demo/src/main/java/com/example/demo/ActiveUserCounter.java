@@ -0,0 +1,117 @@
+package com.example.demo;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Numbers of active and inactive users.
+ * The counts are read from the database once, on first use, and then adjusted on every user
+ * write instead of being counted again; they are re-read periodically to repair drift from
+ * writes that raced with a load.
+ */
+@Component
+public class ActiveUserCounter {
+    private static final Logger logger = LoggerFactory.getLogger(ActiveUserCounter.class);
+
+    private final UserRepository userRepository;
+    private volatile Counts counts;
+
+    public ActiveUserCounter(UserRepository userRepository) {
+        this.userRepository = Objects.requireNonNull(userRepository, "UserRepository must not be null");
+    }
+
+    /**
+     * Gets the number of active or inactive users.
+     *
+     * @param active whether to count active users
+     * @return the number of users with the given active flag
+     */
+    public long count(boolean active) {
+        return loaded().of(active).sum();
+    }
+
+    /**
+     * Records a new user.
+     *
+     * @param active whether the user is active
+     */
+    public void userAdded(boolean active) {
+        Counts current = counts;
+        if (current != null) {
+            current.of(active).increment();
+        }
+    }
+
+    /**
+     * Records a removed user.
+     *
+     * @param active whether the user was active
+     */
+    public void userRemoved(boolean active) {
+        Counts current = counts;
+        if (current != null) {
+            current.of(active).decrement();
+        }
+    }
+
+    /**
+     * Records a change to the active flag of a user.
+     *
+     * @param before whether the user was active before the change
+     * @param after whether the user is active after the change
+     */
+    public void activeChanged(boolean before, boolean after) {
+        Counts current = counts;
+        if (current != null && before != after) {
+            current.of(before).decrement();
+            current.of(after).increment();
+        }
+    }
+
+    /**
+     * Re-reads the counts from the database if they have been loaded.
+     */
+    @Scheduled(
+        initialDelayString = "${app.statistics.rebuild-interval:PT1H}",
+        fixedDelayString = "${app.statistics.rebuild-interval:PT1H}")
+    public void repairDrift() {
+        if (counts != null) {
+            counts = load();
+        }
+    }
+
+    private Counts loaded() {
+        Counts current = counts;
+        if (current == null) {
+            synchronized (this) {
+                current = counts;
+                if (current == null) {
+                    current = load();
+                    counts = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private Counts load() {
+        Counts loaded = new Counts();
+        loaded.active.add(userRepository.countByActive(true));
+        loaded.inactive.add(userRepository.countByActive(false));
+        logger.debug("Loaded user counts: {} active, {} inactive", loaded.active.sum(), loaded.inactive.sum());
+        return loaded;
+    }
+
+    private static final class Counts {
+        private final LongAdder active = new LongAdder();
+        private final LongAdder inactive = new LongAdder();
+
+        LongAdder of(boolean isActive) {
+            return isActive ? active : inactive;
+        }
+    }
+}
@@ -0,0 +1,332 @@
+package com.example.demo;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongPredicate;
+
+/**
+ * Counts activities per day over a fixed window of {@value #DAYS} days, by activity type and by
+ * user. Activity names are interned to small ids, and every counter lives in a ring buffer with
+ * one slot per day that is reused once its day has left the window, so memory is bounded by the
+ * number of activity types and users rather than by the number of activities recorded. Names
+ * beyond the first {@value #MAX_TYPES} are counted as {@value #OTHER}.
+ * Recording is safe from concurrent threads; reads see each counter atomically but not the
+ * counters as a whole, so callers that need that pause recording around them. The counters can
+ * be written to a snapshot and added back from one, by activity name rather than id.
+ */
+public class ActivityHistogram {
+    static final int DAYS = 32;
+    static final int MAX_TYPES = 256;
+    static final String OTHER = "OTHER";
+
+    private final Map<String, Integer> typeIds = new ConcurrentHashMap<>();
+    private final String[] typeNames = new String[MAX_TYPES];
+    private volatile int typeCount;
+
+    private final TypeSlot[] typeSlots = new TypeSlot[DAYS];
+    private final Map<Long, UserSlots> users = new ConcurrentHashMap<>();
+
+    public ActivityHistogram() {
+        for (int i = 0; i < DAYS; i++) {
+            typeSlots[i] = new TypeSlot();
+        }
+        intern(OTHER);
+    }
+
+    /**
+     * Counts one activity.
+     *
+     * @param userId the user
+     * @param activity the activity name
+     * @param day the day the activity happened
+     */
+    public void record(Long userId, String activity, LocalDate day) {
+        Objects.requireNonNull(activity, "Activity must not be null");
+        long epochDay = day.toEpochDay();
+        typeSlots[slot(epochDay)].add(epochDay, intern(activity), 1);
+        users.computeIfAbsent(userId, k -> new UserSlots()).add(epochDay, 1);
+    }
+
+    /**
+     * Counts the activities of each type between two days.
+     *
+     * @param from the first day, clamped to the window
+     * @param to the last day
+     * @return the number of activities by name, without types that did not occur
+     */
+    public Map<String, Long> countsByType(LocalDate from, LocalDate to) {
+        long first = Math.max(from.toEpochDay(), to.toEpochDay() - DAYS + 1);
+        int types = typeCount;
+        long[] totals = new long[types];
+        for (long day = first; day <= to.toEpochDay(); day++) {
+            typeSlots[slot(day)].addTo(day, totals);
+        }
+        Map<String, Long> counts = new HashMap<>();
+        for (int id = 0; id < types; id++) {
+            if (totals[id] > 0) {
+                counts.put(typeNames[id], totals[id]);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Passes the number of activities of each user between two days to a consumer, skipping users
+     * without any.
+     *
+     * @param from the first day, clamped to the window
+     * @param to the last day
+     * @param consumer receives the user id and the count
+     */
+    public void forEachUserCount(LocalDate from, LocalDate to, UserCountConsumer consumer) {
+        long first = Math.max(from.toEpochDay(), to.toEpochDay() - DAYS + 1);
+        long last = to.toEpochDay();
+        users.forEach((userId, slots) -> {
+            long count = slots.sum(first, last);
+            if (count > 0) {
+                consumer.accept(userId, count);
+            }
+        });
+    }
+
+    /**
+     * Forgets the counters of users for which the predicate fails.
+     *
+     * @param keep whether to keep the counters of a user
+     */
+    public void retainUsers(LongPredicate keep) {
+        users.keySet().removeIf(userId -> !keep.test(userId));
+    }
+
+    /**
+     * Adds the counters of another histogram to these.
+     *
+     * @param other the histogram to add
+     */
+    public void add(ActivityHistogram other) {
+        int types = other.typeCount;
+        int[] ids = new int[types];
+        for (int id = 0; id < types; id++) {
+            ids[id] = intern(other.typeNames[id]);
+        }
+        long[] counts = new long[types];
+        for (TypeSlot slot : other.typeSlots) {
+            long day = slot.day;
+            Arrays.fill(counts, 0);
+            slot.addTo(day, counts);
+            for (int type = 0; type < types; type++) {
+                if (counts[type] > 0) {
+                    typeSlots[slot(day)].add(day, ids[type], counts[type]);
+                }
+            }
+        }
+        other.users.forEach((userId, slots) -> slots.addTo(users.computeIfAbsent(userId, k -> new UserSlots())));
+    }
+
+    /**
+     * Writes the counters of the days still in the window.
+     *
+     * @param out the snapshot
+     * @param today the last day of the window
+     * @throws IOException if the snapshot cannot be written
+     */
+    public void writeTo(DataOutput out, LocalDate today) throws IOException {
+        long first = today.toEpochDay() - DAYS + 1;
+        int types = typeCount;
+        out.writeInt(types);
+        for (int id = 0; id < types; id++) {
+            out.writeUTF(typeNames[id]);
+        }
+        long[] counts = new long[types];
+        for (TypeSlot slot : typeSlots) {
+            long day = slot.day;
+            out.writeLong(day >= first ? day : Long.MIN_VALUE);
+            Arrays.fill(counts, 0);
+            slot.addTo(day, counts);
+            for (long count : counts) {
+                out.writeLong(count);
+            }
+        }
+        Map<Long, UserSlots> copy = new HashMap<>(users);
+        out.writeInt(copy.size());
+        for (Map.Entry<Long, UserSlots> entry : copy.entrySet()) {
+            out.writeLong(entry.getKey());
+            entry.getValue().writeTo(out, first);
+        }
+    }
+
+    /**
+     * Adds the counters of a snapshot written by {@link #writeTo} to these.
+     *
+     * @param in the snapshot
+     * @throws IOException if the snapshot cannot be read
+     */
+    public void readFrom(DataInput in) throws IOException {
+        int types = in.readInt();
+        if (types < 0 || types > MAX_TYPES) {
+            throw new IOException("Invalid number of activity types: " + types);
+        }
+        int[] ids = new int[types];
+        for (int i = 0; i < types; i++) {
+            ids[i] = intern(in.readUTF());
+        }
+        for (int i = 0; i < DAYS; i++) {
+            long day = in.readLong();
+            for (int type = 0; type < types; type++) {
+                long count = in.readLong();
+                if (day != Long.MIN_VALUE && count > 0) {
+                    typeSlots[slot(day)].add(day, ids[type], count);
+                }
+            }
+        }
+        int userCount = in.readInt();
+        for (int i = 0; i < userCount; i++) {
+            long userId = in.readLong();
+            int days = in.readUnsignedByte();
+            for (int d = 0; d < days; d++) {
+                long day = in.readLong();
+                long count = in.readLong();
+                users.computeIfAbsent(userId, k -> new UserSlots()).add(day, count);
+            }
+        }
+    }
+
+    private int intern(String activity) {
+        Integer id = typeIds.get(activity);
+        if (id != null) {
+            return id;
+        }
+        synchronized (typeNames) {
+            id = typeIds.get(activity);
+            if (id != null) {
+                return id;
+            }
+            int count = typeCount;
+            if (count == MAX_TYPES) {
+                return typeIds.get(OTHER);
+            }
+            typeNames[count] = activity;
+            typeCount = count + 1;
+            typeIds.put(activity, count);
+            return count;
+        }
+    }
+
+    private static int slot(long epochDay) {
+        return (int) Math.floorMod(epochDay, DAYS);
+    }
+
+    /**
+     * Receives the activity count of a user.
+     */
+    @FunctionalInterface
+    public interface UserCountConsumer {
+        void accept(long userId, long count);
+    }
+
+    /**
+     * The counts by type of one day; cleared when the slot is reused for a later day.
+     */
+    private static final class TypeSlot {
+        private final AtomicLongArray counts = new AtomicLongArray(MAX_TYPES);
+        private volatile long day = Long.MIN_VALUE;
+
+        void add(long epochDay, int type, long count) {
+            if (day != epochDay) {
+                synchronized (this) {
+                    if (day < epochDay) {
+                        for (int i = 0; i < MAX_TYPES; i++) {
+                            counts.set(i, 0);
+                        }
+                        day = epochDay;
+                    }
+                }
+                if (day != epochDay) {
+                    // Older than the window
+                    return;
+                }
+            }
+            counts.addAndGet(type, count);
+        }
+
+        void addTo(long epochDay, long[] totals) {
+            if (day != epochDay) {
+                return;
+            }
+            for (int i = 0; i < totals.length; i++) {
+                totals[i] += counts.get(i);
+            }
+        }
+    }
+
+    /**
+     * The daily counts of one user; each slot remembers which day it holds.
+     */
+    private static final class UserSlots {
+        private final long[] days = new long[DAYS];
+        private final long[] counts = new long[DAYS];
+
+        UserSlots() {
+            Arrays.fill(days, Long.MIN_VALUE);
+        }
+
+        synchronized void add(long epochDay, long count) {
+            int slot = slot(epochDay);
+            if (days[slot] < epochDay) {
+                days[slot] = epochDay;
+                counts[slot] = 0;
+            } else if (days[slot] > epochDay) {
+                return;
+            }
+            counts[slot] += count;
+        }
+
+        void addTo(UserSlots target) {
+            long[] daysCopy;
+            long[] countsCopy;
+            synchronized (this) {
+                daysCopy = days.clone();
+                countsCopy = counts.clone();
+            }
+            for (int slot = 0; slot < DAYS; slot++) {
+                if (countsCopy[slot] > 0) {
+                    target.add(daysCopy[slot], countsCopy[slot]);
+                }
+            }
+        }
+
+        synchronized void writeTo(DataOutput out, long first) throws IOException {
+            int written = 0;
+            for (int slot = 0; slot < DAYS; slot++) {
+                if (days[slot] >= first && counts[slot] > 0) {
+                    written++;
+                }
+            }
+            out.writeByte(written);
+            for (int slot = 0; slot < DAYS; slot++) {
+                if (days[slot] >= first && counts[slot] > 0) {
+                    out.writeLong(days[slot]);
+                    out.writeLong(counts[slot]);
+                }
+            }
+        }
+
+        synchronized long sum(long first, long last) {
+            long total = 0;
+            for (int slot = 0; slot < DAYS; slot++) {
+                if (days[slot] >= first && days[slot] <= last) {
+                    total += counts[slot];
+                }
+            }
+            return total;
+        }
+    }
+}
@@ -96,8 +96,8 @@ public class AnalyticsController {
             
             Map<String, Object> stats = Map.of(
                 "totalUsers", userService.getTotalUsers(),
-                "activeUsers", userService.getActiveUsers(Pageable.unpaged()).getTotalElements(),
-                "inactiveUsers", userService.getInactiveUsers(Pageable.unpaged()).getTotalElements(),
+                "activeUsers", userService.countUsersByActive(true),
+                "inactiveUsers", userService.countUsersByActive(false),
                 "usersByRole", userService.getUserCountByRole(),
                 "averageRolesPerUser", userService.getAverageRolesPerUser()
             );
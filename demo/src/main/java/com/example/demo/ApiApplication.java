@@ -4,17 +4,20 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * Main Spring Boot application class.
- * Configures and launches the application with caching and asynchronous processing enabled.
+ * Configures and launches the application with caching, asynchronous processing and scheduling enabled.
  * 
  * {@link EnableCaching} enables Spring's caching support
  * {@link EnableAsync} enables asynchronous method execution support
+ * {@link EnableScheduling} enables scheduled task execution support
  */
 @SpringBootApplication
 @EnableCaching
 @EnableAsync
+@EnableScheduling
 public class ApiApplication {
   /**
    * Main method that starts the Spring Boot application.
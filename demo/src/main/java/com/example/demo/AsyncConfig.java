@@ -1,6 +1,7 @@
 package com.example.demo;
 
 import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableAsync;
@@ -27,4 +28,58 @@ public class AsyncConfig {
     executor.initialize();
     return executor;
   }
+
+  /**
+   * Creates the executor that writes streamed responses such as user exports.
+   * Kept separate from the @Async executor so that long-running downloads cannot starve it.
+   *
+   * @return Configured ThreadPoolTaskExecutor instance
+   */
+  @Bean(name = "streamingExecutor")
+  public ThreadPoolTaskExecutor streamingExecutor() {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(2);
+    executor.setMaxPoolSize(4);
+    executor.setQueueCapacity(20);
+    executor.setThreadNamePrefix("StreamingThread-");
+    executor.initialize();
+    return executor;
+  }
+
+  /**
+   * Creates the executor that hashes passwords during bulk imports.
+   * Sized to the available cores since hashing is CPU-bound; when the queue is full the
+   * submitting import thread hashes the row itself, which throttles parsing.
+   *
+   * @return Configured ThreadPoolTaskExecutor instance
+   */
+  @Bean(name = "importExecutor")
+  public ThreadPoolTaskExecutor importExecutor() {
+    int cores = Runtime.getRuntime().availableProcessors();
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(cores);
+    executor.setMaxPoolSize(cores);
+    executor.setQueueCapacity(1000);
+    executor.setThreadNamePrefix("ImportThread-");
+    executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+    executor.initialize();
+    return executor;
+  }
+
+  /**
+   * Creates the executor that runs background import jobs.
+   * Each job drives its own pipeline, hashing on the import executor, so only a few run at once.
+   *
+   * @return Configured ThreadPoolTaskExecutor instance
+   */
+  @Bean(name = "importJobExecutor")
+  public ThreadPoolTaskExecutor importJobExecutor() {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(2);
+    executor.setMaxPoolSize(2);
+    executor.setQueueCapacity(10);
+    executor.setThreadNamePrefix("ImportJobThread-");
+    executor.initialize();
+    return executor;
+  }
 }
@@ -0,0 +1,27 @@
+package com.example.demo;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A slice of a keyset-paginated listing.
+ *
+ * @param content the elements of the slice
+ * @param nextCursor the cursor of the next slice, or null if this is the last one
+ * @param hasNext whether there are more elements
+ * @param totalElements the total number of elements, or null if not requested
+ * @param <T> the element type
+ */
+public record CursorPage<T>(List<T> content, String nextCursor, boolean hasNext, Long totalElements) {
+
+    /**
+     * Converts the elements of this slice.
+     *
+     * @param mapper the conversion
+     * @param <R> the converted element type
+     * @return the converted slice
+     */
+    public <R> CursorPage<R> map(Function<? super T, ? extends R> mapper) {
+        return new CursorPage<>(content.stream().<R>map(mapper).toList(), nextCursor, hasNext, totalElements);
+    }
+}
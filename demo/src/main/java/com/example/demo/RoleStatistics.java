@@ -0,0 +1,221 @@
+package com.example.demo;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Maintained aggregate of users per role and per role combination.
+ * Counters are adjusted on every user write and read in time proportional to the number of
+ * distinct roles, so role analytics never scan the users table. The aggregate is rebuilt from
+ * the database once the application is ready and then periodically to repair drift; writes
+ * that race with a rebuild may be missed until the next one.
+ */
+@Component
+public class RoleStatistics {
+    private static final Logger logger = LoggerFactory.getLogger(RoleStatistics.class);
+
+    private final UserRepository userRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private volatile Counts counts = new Counts();
+    private volatile boolean ready;
+
+    public RoleStatistics(UserRepository userRepository, PlatformTransactionManager transactionManager) {
+        this.userRepository = Objects.requireNonNull(userRepository, "UserRepository must not be null");
+        this.readOnlyTransaction = new TransactionTemplate(
+            Objects.requireNonNull(transactionManager, "PlatformTransactionManager must not be null"));
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * Checks whether the aggregate has been built from the database.
+     *
+     * @return true if the statistics can be served
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Records a new user.
+     *
+     * @param roles the roles of the user
+     */
+    public void userAdded(Set<String> roles) {
+        counts.add(roles, 1);
+    }
+
+    /**
+     * Records a removed user.
+     *
+     * @param roles the roles the user had
+     */
+    public void userRemoved(Set<String> roles) {
+        counts.add(roles, -1);
+    }
+
+    /**
+     * Records a change to the roles of a user.
+     *
+     * @param before the roles before the change
+     * @param after the roles after the change
+     */
+    public void rolesChanged(Set<String> before, Set<String> after) {
+        if (!before.equals(after)) {
+            Counts current = counts;
+            current.add(before, -1);
+            current.add(after, 1);
+        }
+    }
+
+    /**
+     * Gets the number of users holding each role.
+     *
+     * @return map of role to count
+     */
+    public Map<String, Long> countByRole() {
+        return positive(counts.byRole);
+    }
+
+    /**
+     * Gets the average number of roles per user.
+     *
+     * @return the average number of roles per user
+     */
+    public double averageRolesPerUser() {
+        Counts current = counts;
+        long users = current.users.sum();
+        return users > 0 ? (double) current.roleAssignments.sum() / users : 0.0;
+    }
+
+    /**
+     * Gets the percentage of users holding each role.
+     *
+     * @return map of role to percentage
+     */
+    public Map<String, Long> roleDistribution() {
+        Counts current = counts;
+        long users = current.users.sum();
+        if (users <= 0) {
+            return Map.of();
+        }
+        return positive(current.byRole).entrySet().stream()
+            .collect(Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue() * 100 / users));
+    }
+
+    /**
+     * Gets the most common role combinations.
+     *
+     * @param limit the maximum number of combinations
+     * @return list of combinations with their roles and user count, most common first
+     */
+    public List<Map<String, Object>> commonRoleCombinations(int limit) {
+        return positive(counts.byCombination).entrySet().stream()
+            .sorted(Map.Entry.<Set<String>, Long>comparingByValue(Comparator.reverseOrder()))
+            .limit(limit)
+            .map(entry -> {
+                Map<String, Object> combination = new HashMap<>();
+                combination.put("roles", new HashSet<>(entry.getKey()));
+                combination.put("count", entry.getValue());
+                return combination;
+            })
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Builds the aggregate once the application has started.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuild();
+    }
+
+    /**
+     * Rebuilds the aggregate periodically to repair drift.
+     */
+    @Scheduled(
+        initialDelayString = "${app.statistics.rebuild-interval:PT1H}",
+        fixedDelayString = "${app.statistics.rebuild-interval:PT1H}")
+    public void repairDrift() {
+        rebuild();
+    }
+
+    /**
+     * Rebuilds the aggregate from the database.
+     * Rows are streamed one user at a time, so memory use does not depend on the number of users.
+     */
+    public void rebuild() {
+        long start = System.nanoTime();
+        Counts rebuilt = readOnlyTransaction.execute(status -> {
+            Counts fresh = new Counts();
+            try (Stream<UserRepository.UserRole> rows = userRepository.streamUserRoles()) {
+                Long[] currentUser = new Long[1];
+                Set<String> roles = new HashSet<>();
+                rows.forEach(row -> {
+                    if (!row.getUserId().equals(currentUser[0])) {
+                        if (currentUser[0] != null) {
+                            fresh.add(roles, 1);
+                        }
+                        currentUser[0] = row.getUserId();
+                        roles.clear();
+                    }
+                    if (row.getRole() != null) {
+                        roles.add(row.getRole());
+                    }
+                });
+                if (currentUser[0] != null) {
+                    fresh.add(roles, 1);
+                }
+            }
+            return fresh;
+        });
+        counts = Objects.requireNonNull(rebuilt);
+        ready = true;
+        logger.info("Rebuilt role statistics for {} users in {} ms",
+            rebuilt.users.sum(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static <K> Map<K, Long> positive(Map<K, LongAdder> counters) {
+        Map<K, Long> result = new HashMap<>();
+        counters.forEach((key, counter) -> {
+            long count = counter.sum();
+            if (count > 0) {
+                result.put(key, count);
+            }
+        });
+        return result;
+    }
+
+    private static final class Counts {
+        private final LongAdder users = new LongAdder();
+        private final LongAdder roleAssignments = new LongAdder();
+        private final ConcurrentMap<String, LongAdder> byRole = new ConcurrentHashMap<>();
+        private final ConcurrentMap<Set<String>, LongAdder> byCombination = new ConcurrentHashMap<>();
+
+        void add(Set<String> roles, int delta) {
+            users.add(delta);
+            roleAssignments.add((long) delta * roles.size());
+            for (String role : roles) {
+                byRole.computeIfAbsent(role, r -> new LongAdder()).add(delta);
+            }
+            byCombination.computeIfAbsent(Set.copyOf(roles), r -> new LongAdder()).add(delta);
+        }
+    }
+}
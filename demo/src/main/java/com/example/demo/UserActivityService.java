@@ -1,113 +1,403 @@
 package com.example.demo;
 
+import com.example.demo.model.mongo.UserActivity;
+import com.example.demo.service.ActiveUserSketches;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.scheduling.annotation.Scheduled;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.util.*;
-import java.util.stream.Collectors;
-import org.springframework.data.domain.Pageable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
+/**
+ * Tracks logins and user activity in memory and derives the analytics reports from them.
+ * Request threads record concurrently: every map is a {@link ConcurrentHashMap}, whose per-bin
+ * locking stripes writers by key, and activities only increment the fixed-size daily counters
+ * of an {@link ActivityHistogram}. The reports read while recording is paused for a moment,
+ * copying the login state into a {@link Snapshot}, so that what they read agrees. Distinct
+ * active users per hour and day are estimated by {@link ActiveUserSketches}, since the last
+ * login of each user cannot tell who was active on earlier days.
+ * Every {@code app.activity.checkpoint.interval}, and at shutdown, the state is written to a
+ * versioned binary checkpoint in {@code app.activity.checkpoint.directory}. At startup the
+ * checkpoint is restored and the activities logged to Mongo since it was taken are replayed, so
+ * a restarted node resumes where it stopped; without a checkpoint the last
+ * {@code app.activity.checkpoint.cold-start-replay} of activities are replayed. The state only
+ * covers the activities logged by this node, so only those tagged with its
+ * {@code app.activity.node-id} are replayed. The id must be set explicitly and stay the same
+ * across restarts, and the checkpoint directory must survive them, or a restarted node starts
+ * over from the cold start replay.
+ */
 @Service
 public class UserActivityService {
+    private static final Logger logger = LoggerFactory.getLogger(UserActivityService.class);
+    private static final String CHECKPOINT_FILE = "user-activity.checkpoint";
+    private static final int CHECKPOINT_MAGIC = 0x55414354;
+    private static final int CHECKPOINT_VERSION = 1;
     private static final int LOCKOUT_THRESHOLD = 5;
     private static final int TOP_USERS_LIMIT = 10;
+    private static final int WEEK_DAYS = 7;
+    private static final int MONTH_DAYS = 30;
     
     private final UserService userService;
+    private final ActiveUserSketches activeUserSketches;
+    private final MongoOperations mongoOperations;
+    private final Path checkpointDirectory;
+    private final Duration coldStartReplay;
+    private final String nodeId;
+    private final Instant startedAt = Instant.now();
+    private volatile boolean restored;
     private final Map<String, Integer> loginAttempts;
     private final Map<Long, LocalDateTime> lastLoginTimes;
-    private final Map<Long, List<String>> userActivities;
+    private final ActivityHistogram userActivities;
+
+    // Recording shares the read lock; taking a snapshot or cleaning up takes the write lock
+    private final ReadWriteLock snapshotLock = new ReentrantReadWriteLock();
 
     /**
      * Creates a new UserActivityService.
      *
      * @param userService the user service to use
-     * @throws NullPointerException if userService is null
+     * @param activeUserSketches the sketches counting distinct active users
+     * @param mongoOperations the Mongo operations to replay logged activities with
+     * @param checkpointDirectory the directory holding the checkpoint
+     * @param coldStartReplay how far back to replay logged activities without a checkpoint
+     * @param nodeId the id this node tags its logged activities with
+     * @throws NullPointerException if any argument is null
+     * @throws IllegalArgumentException if the node id is blank
      */
-    public UserActivityService(UserService userService) {
+    public UserActivityService(UserService userService, ActiveUserSketches activeUserSketches,
+                               MongoOperations mongoOperations,
+                               @Value("${app.activity.checkpoint.directory:data/user-activity}") String checkpointDirectory,
+                               @Value("${app.activity.checkpoint.cold-start-replay:P1D}") Duration coldStartReplay,
+                               @Value("${app.activity.node-id:local}") String nodeId) {
         this.userService = Objects.requireNonNull(userService, "UserService must not be null");
-        this.loginAttempts = new HashMap<>();
-        this.lastLoginTimes = new HashMap<>();
-        this.userActivities = new HashMap<>();
+        this.activeUserSketches = Objects.requireNonNull(activeUserSketches, "ActiveUserSketches must not be null");
+        this.mongoOperations = Objects.requireNonNull(mongoOperations, "MongoOperations must not be null");
+        this.checkpointDirectory = Paths.get(Objects.requireNonNull(checkpointDirectory, "Checkpoint directory must not be null"));
+        this.coldStartReplay = Objects.requireNonNull(coldStartReplay, "Cold start replay must not be null");
+        this.nodeId = Objects.requireNonNull(nodeId, "Node id must not be null");
+        if (nodeId.isBlank()) {
+            throw new IllegalArgumentException(
+                "app.activity.node-id must be set to an id that stays the same across restarts of this node");
+        }
+        this.loginAttempts = new ConcurrentHashMap<>();
+        this.lastLoginTimes = new ConcurrentHashMap<>();
+        this.userActivities = new ActivityHistogram();
     }
 
     @Cacheable(value = "activityTrends", key = "#startDate")
     public Map<String, Object> getActivityTrendsSince(LocalDateTime startDate) {
+        LocalDate today = LocalDate.now();
         Map<String, Object> trends = new HashMap<>();
-        trends.put("dailyActiveUsers", calculateDailyActiveUsers(startDate));
-        trends.put("peakActivityHours", calculatePeakActivityHours());
+        trends.put("dailyActiveUsers", calculateDailyActiveUsers(startDate, today));
+        trends.put("weeklyActiveUsers", activeUserSketches.activeUsers(today.minusDays(WEEK_DAYS - 1), today));
+        trends.put("monthlyActiveUsers", activeUserSketches.activeUsers(today.minusDays(MONTH_DAYS - 1), today));
+        trends.put("peakActivityHours", activeUserSketches.activeUsersByHourOfDay(
+            startDate.atZone(ZoneId.systemDefault()).toInstant()));
         trends.put("averageSessionDuration", calculateAverageSessionDuration());
         return trends;
     }
 
     public Map<String, Object> getUserGrowthMetrics(LocalDateTime startDate) {
+        Snapshot snapshot = snapshot();
+        double retentionRate = calculateRetentionRate(snapshot, startDate);
         Map<String, Object> metrics = new HashMap<>();
         metrics.put("newUsers", calculateNewUserGrowth(startDate));
-        metrics.put("userRetentionRate", calculateRetentionRate(startDate));
-        metrics.put("churnRate", calculateChurnRate(startDate));
+        metrics.put("userRetentionRate", retentionRate);
+        metrics.put("churnRate", 100 - retentionRate);
         return metrics;
     }
 
     public Map<String, Object> getSecurityMetrics() {
+        Snapshot snapshot = snapshot();
         Map<String, Object> metrics = new HashMap<>();
-        metrics.put("failedLoginAttempts", getFailedLoginAttempts());
+        metrics.put("failedLoginAttempts", snapshot.loginAttempts());
         metrics.put("suspiciousActivities", getSuspiciousActivities());
-        metrics.put("accountLockouts", getAccountLockouts());
+        metrics.put("accountLockouts", getAccountLockouts(snapshot));
         return metrics;
     }
 
     public Map<String, Object> getUserRetentionMetrics(LocalDateTime startDate) {
+        LocalDateTime[] lastLogins = snapshot().lastLoginTimes().values().toArray(LocalDateTime[]::new);
+        Arrays.sort(lastLogins, Comparator.reverseOrder());
+        long totalUsers = userService.getTotalUsers();
+        LocalDateTime now = LocalDateTime.now();
+
         Map<String, Object> metrics = new HashMap<>();
-        metrics.put("dailyRetention", calculateDailyRetention(startDate));
-        metrics.put("weeklyRetention", calculateWeeklyRetention(startDate));
-        metrics.put("monthlyRetention", calculateMonthlyRetention(startDate));
+        metrics.put("dailyRetention", calculateRetention(lastLogins, totalUsers, now, startDate, date -> date.minusDays(1)));
+        metrics.put("weeklyRetention", calculateRetention(lastLogins, totalUsers, now, startDate, date -> date.minusWeeks(1)));
+        metrics.put("monthlyRetention", calculateRetention(lastLogins, totalUsers, now, startDate, date -> date.minusMonths(1)));
         return metrics;
     }
 
     public Map<String, Object> getUserBehaviorAnalysis(LocalDateTime startDate) {
+        LocalDate from = startDate.toLocalDate();
+        LocalDate today = LocalDate.now();
         Map<String, Object> analysis = new HashMap<>();
-        analysis.put("mostActiveUsers", getMostActiveUsers());
+        Lock lock = snapshotLock.writeLock();
+        lock.lock();
+        try {
+            analysis.put("mostActiveUsers", getMostActiveUsers(from, today));
+            analysis.put("featureUsage", userActivities.countsByType(from, today));
+        } finally {
+            lock.unlock();
+        }
         analysis.put("commonUserPaths", getCommonUserPaths());
-        analysis.put("featureUsage", getFeatureUsageStats());
         return analysis;
     }
 
     public void recordLoginAttempt(String username, boolean success) {
-        if (!success) {
-            loginAttempts.merge(username, 1, Integer::sum);
-        } else {
-            loginAttempts.remove(username);
+        Lock lock = snapshotLock.readLock();
+        lock.lock();
+        try {
+            if (!success) {
+                loginAttempts.merge(username, 1, Integer::sum);
+            } else {
+                loginAttempts.remove(username);
+            }
+        } finally {
+            lock.unlock();
         }
     }
 
     public void recordUserActivity(Long userId, String activity) {
-        userActivities.computeIfAbsent(userId, k -> new ArrayList<>()).add(activity);
-        lastLoginTimes.put(userId, LocalDateTime.now());
+        Instant now = Instant.now();
+        record(userId, activity, LocalDateTime.ofInstant(now, ZoneId.systemDefault()));
+        activeUserSketches.add(String.valueOf(userId), now);
+    }
+
+    /**
+     * Records an activity written to the activity log. Users are tracked by their numeric id;
+     * other ids only count towards the distinct active users.
+     *
+     * @param userId the user
+     * @param activity the activity name
+     * @param at when the activity happened
+     */
+    public void recordUserActivity(String userId, String activity, Instant at) {
+        activeUserSketches.add(userId, at);
+        Long id = parseUserId(userId);
+        if (id != null && activity != null && at != null) {
+            record(id, activity, LocalDateTime.ofInstant(at, ZoneId.systemDefault()));
+        }
+    }
+
+    private void record(Long userId, String activity, LocalDateTime time) {
+        Lock lock = snapshotLock.readLock();
+        lock.lock();
+        try {
+            userActivities.record(userId, activity, time.toLocalDate());
+            lastLoginTimes.merge(userId, time, (current, next) -> next.isAfter(current) ? next : current);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static Long parseUserId(String userId) {
+        if (userId == null || userId.isEmpty() || userId.length() > 19) {
+            return null;
+        }
+        try {
+            return Long.valueOf(userId);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Restores the last checkpoint and replays the activities logged since it was taken.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void restoreState() {
+        Instant replayFrom = startedAt.minus(coldStartReplay);
+        Path file = checkpointDirectory.resolve(CHECKPOINT_FILE);
+        try {
+            if (Files.exists(file)) {
+                replayFrom = readCheckpoint(file);
+                logger.info("Restored user activity checkpoint taken at {}", replayFrom);
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Could not restore user activity checkpoint {}: {}", file, e.getMessage());
+        }
+        try {
+            long replayed = replayLoggedActivities(replayFrom, startedAt);
+            logger.info("Replayed {} user activities logged since {}", replayed, replayFrom);
+        } catch (RuntimeException e) {
+            logger.warn("Could not replay logged user activities: {}", e.getMessage());
+        }
+        restored = true;
+    }
+
+    /**
+     * Writes the state to the checkpoint, once the previous one has been restored.
+     */
+    @Scheduled(
+        initialDelayString = "${app.activity.checkpoint.interval:PT5M}",
+        fixedDelayString = "${app.activity.checkpoint.interval:PT5M}")
+    @PreDestroy
+    public void saveState() {
+        if (!restored) {
+            return;
+        }
+        try {
+            writeCheckpoint(checkpointDirectory.resolve(CHECKPOINT_FILE));
+        } catch (IOException e) {
+            logger.warn("Could not write user activity checkpoint: {}", e.getMessage());
+        }
+    }
+
+    private void writeCheckpoint(Path target) throws IOException {
+        // Serialize in memory while recording is paused, then compress and write without blocking it
+        ByteArrayOutputStream state = new ByteArrayOutputStream();
+        Lock lock = snapshotLock.writeLock();
+        lock.lock();
+        try (DataOutputStream out = new DataOutputStream(state)) {
+            out.writeInt(CHECKPOINT_MAGIC);
+            out.writeInt(CHECKPOINT_VERSION);
+            out.writeLong(Instant.now().toEpochMilli());
+            out.writeInt(loginAttempts.size());
+            for (Map.Entry<String, Integer> entry : loginAttempts.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeInt(entry.getValue());
+            }
+            out.writeInt(lastLoginTimes.size());
+            for (Map.Entry<Long, LocalDateTime> entry : lastLoginTimes.entrySet()) {
+                out.writeLong(entry.getKey());
+                out.writeLong(entry.getValue().toEpochSecond(ZoneOffset.UTC));
+                out.writeInt(entry.getValue().getNano());
+            }
+            userActivities.writeTo(out, LocalDate.now());
+        } finally {
+            lock.unlock();
+        }
+
+        // Replace the previous checkpoint atomically so that a crash never leaves a partial one
+        Files.createDirectories(checkpointDirectory);
+        Path temp = checkpointDirectory.resolve(CHECKPOINT_FILE + ".tmp");
+        try (OutputStream out = new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            state.writeTo(out);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Instant readCheckpoint(Path file) throws IOException {
+        try (InputStream stream = new GZIPInputStream(new BufferedInputStream(Files.newInputStream(file)));
+             DataInputStream in = new DataInputStream(stream)) {
+            if (in.readInt() != CHECKPOINT_MAGIC) {
+                throw new IOException("Not a user activity checkpoint");
+            }
+            int version = in.readInt();
+            if (version != CHECKPOINT_VERSION) {
+                throw new IOException("Unsupported checkpoint version " + version);
+            }
+            Instant takenAt = Instant.ofEpochMilli(in.readLong());
+            Map<String, Integer> attempts = new HashMap<>();
+            int attemptCount = in.readInt();
+            for (int i = 0; i < attemptCount; i++) {
+                attempts.put(in.readUTF(), in.readInt());
+            }
+            Map<Long, LocalDateTime> logins = new HashMap<>();
+            int loginCount = in.readInt();
+            for (int i = 0; i < loginCount; i++) {
+                logins.put(in.readLong(), LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC));
+            }
+            ActivityHistogram histogram = new ActivityHistogram();
+            histogram.readFrom(in);
+
+            Lock lock = snapshotLock.writeLock();
+            lock.lock();
+            try {
+                // What was recorded since startup is newer than the checkpoint
+                attempts.forEach(loginAttempts::putIfAbsent);
+                logins.forEach((userId, time) ->
+                    lastLoginTimes.merge(userId, time, (current, checkpointed) -> checkpointed.isAfter(current) ? checkpointed : current));
+                userActivities.add(histogram);
+            } finally {
+                lock.unlock();
+            }
+            return takenAt;
+        }
+    }
+
+    private long replayLoggedActivities(Instant from, Instant to) {
+        if (!from.isBefore(to)) {
+            return 0;
+        }
+        // Other nodes count their own activities, so only this node's are replayed
+        Query query = Query.query(Criteria.where("nodeId").is(nodeId).and("timestamp").gte(from).lt(to));
+        query.fields().include("userId", "action", "timestamp");
+        long replayed = 0;
+        try (Stream<UserActivity> activities = mongoOperations.stream(query, UserActivity.class)) {
+            for (UserActivity activity : (Iterable<UserActivity>) activities::iterator) {
+                recordUserActivity(activity.getUserId(), activity.getAction(), activity.getTimestamp());
+                replayed++;
+            }
+        }
+        return replayed;
     }
 
     @Scheduled(cron = "0 0 0 * * *")
     public void cleanupOldData() {
         LocalDateTime oneMonthAgo = LocalDateTime.now().minusMonths(1);
-        userActivities.entrySet().removeIf(entry -> 
-            lastLoginTimes.get(entry.getKey()).isBefore(oneMonthAgo));
-        lastLoginTimes.entrySet().removeIf(entry -> entry.getValue().isBefore(oneMonthAgo));
+        Lock lock = snapshotLock.writeLock();
+        lock.lock();
+        try {
+            lastLoginTimes.values().removeIf(time -> time.isBefore(oneMonthAgo));
+            userActivities.retainUsers(lastLoginTimes::containsKey);
+        } finally {
+            lock.unlock();
+        }
     }
 
-    private Map<LocalDateTime, Long> calculateDailyActiveUsers(LocalDateTime startDate) {
-        return lastLoginTimes.entrySet().stream()
-            .filter(entry -> entry.getValue().isAfter(startDate))
-            .collect(Collectors.groupingBy(
-                entry -> entry.getValue().toLocalDate().atStartOfDay(),
-                Collectors.counting()
-            ));
+    /**
+     * Copies the login state while recording is paused, so that the copies are consistent
+     * with each other.
+     */
+    private Snapshot snapshot() {
+        Lock lock = snapshotLock.writeLock();
+        lock.lock();
+        try {
+            return new Snapshot(new HashMap<>(loginAttempts), new HashMap<>(lastLoginTimes));
+        } finally {
+            lock.unlock();
+        }
     }
 
-    private Map<Integer, Long> calculatePeakActivityHours() {
-        return lastLoginTimes.values().stream()
-            .collect(Collectors.groupingBy(
-                time -> time.getHour(),
-                Collectors.counting()
-            ));
+    private Map<LocalDateTime, Long> calculateDailyActiveUsers(LocalDateTime startDate, LocalDate today) {
+        return byDayStart(activeUserSketches.dailyActiveUsers(startDate.toLocalDate(), today));
     }
 
     private double calculateAverageSessionDuration() {
@@ -115,117 +405,88 @@ public class UserActivityService {
     }
 
     private Map<LocalDateTime, Long> calculateNewUserGrowth(LocalDateTime startDate) {
-        return lastLoginTimes.entrySet().stream()
-            .filter(entry -> entry.getValue().isAfter(startDate))
-            .collect(Collectors.groupingBy(
-                entry -> entry.getValue().toLocalDate().atStartOfDay(),
-                Collectors.counting()
-            ));
+        return byDayStart(activeUserSketches.newActiveUsers(startDate.toLocalDate(), LocalDate.now()));
+    }
+
+    private static Map<LocalDateTime, Long> byDayStart(Map<LocalDate, Long> counts) {
+        Map<LocalDateTime, Long> byDayStart = new LinkedHashMap<>();
+        counts.forEach((day, count) -> byDayStart.put(day.atStartOfDay(), count));
+        return byDayStart;
     }
 
-    private double calculateRetentionRate(LocalDateTime startDate) {
-        long totalUsers = userService.getAllUsers(Pageable.unpaged()).getTotalElements();
-        long activeUsers = lastLoginTimes.values().stream()
+    private double calculateRetentionRate(Snapshot snapshot, LocalDateTime startDate) {
+        long totalUsers = userService.getTotalUsers();
+        long activeUsers = snapshot.lastLoginTimes().values().stream()
             .filter(time -> time.isAfter(startDate))
             .count();
         return totalUsers > 0 ? (double) activeUsers / totalUsers * 100 : 0;
     }
 
-    private double calculateChurnRate(LocalDateTime startDate) {
-        return 100 - calculateRetentionRate(startDate);
-    }
-
-    private Map<String, Integer> getFailedLoginAttempts() {
-        return new HashMap<>(loginAttempts);
-    }
-
     private List<Map<String, Object>> getSuspiciousActivities() {
         return new ArrayList<>(); 
     }
 
-    private int getAccountLockouts() {
-        return (int) loginAttempts.values().stream()
+    private int getAccountLockouts(Snapshot snapshot) {
+        return (int) snapshot.loginAttempts().values().stream()
             .filter(attempts -> attempts >= LOCKOUT_THRESHOLD)
             .count();
     }
 
-    private Map<LocalDateTime, Double> calculateDailyRetention(LocalDateTime startDate) {
-        Map<LocalDateTime, Double> retention = new HashMap<>();
-        LocalDateTime currentDate = LocalDateTime.now();
-        
-        while (currentDate.isAfter(startDate)) {
-            LocalDateTime date = currentDate;
-            long totalUsers = userService.getAllUsers(Pageable.unpaged()).getTotalElements();
-            long retainedUsers = lastLoginTimes.values().stream()
-                .filter(loginTime -> loginTime.isAfter(date))
-                .count();
-            
-            retention.put(date, totalUsers > 0 ? (double) retainedUsers / totalUsers * 100 : 0.0);
-            currentDate = currentDate.minusDays(1);
-        }
-        
-        return retention;
-    }
-
-    private Map<LocalDateTime, Double> calculateWeeklyRetention(LocalDateTime startDate) {
-        Map<LocalDateTime, Double> retention = new HashMap<>();
-        LocalDateTime currentDate = LocalDateTime.now();
-        
-        while (currentDate.isAfter(startDate)) {
-            LocalDateTime weekStart = currentDate;
-            long totalUsers = userService.getAllUsers(Pageable.unpaged()).getTotalElements();
-            long retainedUsers = lastLoginTimes.values().stream()
-                .filter(loginTime -> loginTime.isAfter(weekStart))
-                .count();
-            
-            retention.put(weekStart, totalUsers > 0 ? (double) retainedUsers / totalUsers * 100 : 0.0);
-            currentDate = currentDate.minusWeeks(1);
-        }
-        
-        return retention;
-    }
-
-    private Map<LocalDateTime, Double> calculateMonthlyRetention(LocalDateTime startDate) {
+    /**
+     * Computes the share of users active after each period boundary, from now back to the start
+     * date. The boundaries and the last logins are both newest first, so one sweep counts the
+     * logins after every boundary.
+     *
+     * @param lastLogins the last login of every tracked user, newest first
+     * @param totalUsers the number of users
+     * @param now the first boundary
+     * @param startDate the boundary to stop at, exclusive
+     * @param previous steps back one period
+     * @return the retention percentage by boundary
+     */
+    private static Map<LocalDateTime, Double> calculateRetention(LocalDateTime[] lastLogins, long totalUsers,
+            LocalDateTime now, LocalDateTime startDate, UnaryOperator<LocalDateTime> previous) {
         Map<LocalDateTime, Double> retention = new HashMap<>();
-        LocalDateTime currentDate = LocalDateTime.now();
-        
-        while (currentDate.isAfter(startDate)) {
-            LocalDateTime monthStart = currentDate;
-            long totalUsers = userService.getAllUsers(Pageable.unpaged()).getTotalElements();
-            long retainedUsers = lastLoginTimes.values().stream()
-                .filter(loginTime -> loginTime.isAfter(monthStart))
-                .count();
-            
-            retention.put(monthStart, totalUsers > 0 ? (double) retainedUsers / totalUsers * 100 : 0.0);
-            currentDate = currentDate.minusMonths(1);
-        }
-        
+        int retainedUsers = 0;
+        for (LocalDateTime boundary = now; boundary.isAfter(startDate); boundary = previous.apply(boundary)) {
+            while (retainedUsers < lastLogins.length && lastLogins[retainedUsers].isAfter(boundary)) {
+                retainedUsers++;
+            }
+            retention.put(boundary, totalUsers > 0 ? (double) retainedUsers / totalUsers * 100 : 0.0);
+        }
         return retention;
     }
 
-    private List<Map<String, Object>> getMostActiveUsers() {
-        return userActivities.entrySet().stream()
-            .sorted((e1, e2) -> Integer.compare(e2.getValue().size(), e1.getValue().size()))
-            .limit(TOP_USERS_LIMIT)
-            .map(entry -> {
-                Map<String, Object> userStats = new HashMap<>();
-                userStats.put("userId", entry.getKey());
-                userStats.put("activityCount", entry.getValue().size());
-                return userStats;
-            })
-            .collect(Collectors.toList());
+    private List<Map<String, Object>> getMostActiveUsers(LocalDate from, LocalDate to) {
+        // Keep the top users in a min-heap instead of sorting everyone
+        PriorityQueue<long[]> top = new PriorityQueue<>(TOP_USERS_LIMIT + 1, Comparator.comparingLong(user -> user[1]));
+        userActivities.forEachUserCount(from, to, (userId, count) -> {
+            top.add(new long[] {userId, count});
+            if (top.size() > TOP_USERS_LIMIT) {
+                top.poll();
+            }
+        });
+        List<Map<String, Object>> mostActive = new ArrayList<>(top.size());
+        while (!top.isEmpty()) {
+            long[] user = top.poll();
+            Map<String, Object> userStats = new HashMap<>();
+            userStats.put("userId", user[0]);
+            userStats.put("activityCount", user[1]);
+            mostActive.add(userStats);
+        }
+        Collections.reverse(mostActive);
+        return mostActive;
     }
 
     private List<String> getCommonUserPaths() {
         return new ArrayList<>(); 
     }
 
-    private Map<String, Long> getFeatureUsageStats() {
-        return userActivities.values().stream()
-            .flatMap(List::stream)
-            .collect(Collectors.groupingBy(
-                activity -> activity,
-                Collectors.counting()
-            ));
+    /**
+     * A consistent copy of the tracked state.
+     */
+    private record Snapshot(
+            Map<String, Integer> loginAttempts,
+            Map<Long, LocalDateTime> lastLoginTimes) {
     }
 } 
\ No newline at end of file
@@ -0,0 +1,209 @@
+package com.example.demo;
+
+import com.example.demo.cache.TwoLevelCache;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+/**
+ * Evicts the user cache entries that a write can actually affect.
+ * Entries of the {@code users} cache are tagged with the predicates they depend on: {@code all}
+ * for unfiltered pages and the total count, {@code active:true}/{@code active:false} for pages
+ * filtered by the active flag, {@code role:<name>} for pages filtered by role and
+ * {@code user:<id>} for every user a cached list contains. A write evicts the
+ * tags derived from the user's state before and after the change; pages of ids are hydrated from
+ * the {@code user} cache and only need evicting when their membership or order can change. When
+ * the cache does not support tags the whole {@code users} cache is cleared as before.
+ */
+@Component
+public class UserCacheInvalidator {
+    private static final Logger logger = LoggerFactory.getLogger(UserCacheInvalidator.class);
+
+    static final String TAG_ALL = "all";
+    static final String TAG_OTHER = "other";
+
+    private final CacheManager cacheManager;
+
+    public UserCacheInvalidator(CacheManager cacheManager) {
+        this.cacheManager = Objects.requireNonNull(cacheManager, "CacheManager must not be null");
+    }
+
+    /**
+     * Evicts the entries affected by a new user.
+     *
+     * @param user the created user
+     */
+    public void userCreated(User user) {
+        UserSnapshot created = UserSnapshot.of(user);
+        evictLookups(created);
+        evictUsersTagged(membershipTags(created));
+    }
+
+    /**
+     * Evicts the entries affected by a batch of new users with a single tagged eviction.
+     *
+     * @param users the created users
+     */
+    public void usersCreated(Collection<User> users) {
+        if (users.isEmpty()) {
+            return;
+        }
+        Set<String> tags = new HashSet<>();
+        for (User user : users) {
+            UserSnapshot created = UserSnapshot.of(user);
+            evictLookups(created);
+            tags.addAll(membershipTags(created));
+        }
+        evictUsersTagged(tags);
+    }
+
+    /**
+     * Evicts the entries affected by a change to an existing user.
+     *
+     * @param before the user's state before the change
+     * @param after the user after the change
+     */
+    public void userUpdated(UserSnapshot before, User after) {
+        UserSnapshot updated = UserSnapshot.of(after);
+        evictLookups(before);
+        evictLookups(updated);
+
+        Set<String> tags = new HashSet<>();
+        tags.add(TAG_OTHER);
+        tags.add(userTag(updated.id()));
+        if (!Objects.equals(before.username(), updated.username())
+                || !Objects.equals(before.email(), updated.email())) {
+            // Pages may be sorted by these fields, so the user can move between pages
+            tags.addAll(pageTags(updated));
+        }
+        if (before.active() != updated.active()) {
+            tags.add(activeTag(before.active()));
+            tags.add(activeTag(updated.active()));
+        }
+        if (!before.roles().equals(updated.roles())) {
+            before.roles().stream().filter(role -> !updated.roles().contains(role))
+                .forEach(role -> tags.add(roleTag(role)));
+            updated.roles().stream().filter(role -> !before.roles().contains(role))
+                .forEach(role -> tags.add(roleTag(role)));
+        }
+        evictUsersTagged(tags);
+    }
+
+    /**
+     * Evicts the entries affected by a removed user.
+     *
+     * @param user the deleted user
+     */
+    public void userDeleted(User user) {
+        UserSnapshot deleted = UserSnapshot.of(user);
+        evictLookups(deleted);
+        evictUsersTagged(membershipTags(deleted));
+    }
+
+    /**
+     * Derives the tags of a {@code users} cache entry from its key and value.
+     *
+     * @param key the cache key
+     * @param value the cached value
+     * @return the tags of the entry
+     */
+    public static Set<String> usersCacheTags(Object key, Object value) {
+        Set<String> tags = new HashSet<>();
+        if (key instanceof UserPageCache.PageKey pageKey) {
+            tags.add(pageKey.filter());
+            return tags;
+        }
+        String name = String.valueOf(key);
+        if (name.equals("all") || name.equals("count")) {
+            tags.add(TAG_ALL);
+        } else {
+            tags.add(TAG_OTHER);
+        }
+        if (value instanceof Iterable<?> elements) {
+            for (Object element : elements) {
+                if (element instanceof User user && user.getId() != null) {
+                    tags.add(userTag(user.getId()));
+                }
+            }
+        }
+        return tags;
+    }
+
+    private void evictLookups(UserSnapshot user) {
+        Cache cache = cacheManager.getCache(UserService.USER_CACHE);
+        if (cache == null) {
+            return;
+        }
+        if (user.username() != null) {
+            cache.evict("username_" + user.username());
+        }
+        if (user.email() != null) {
+            cache.evict("email_" + user.email());
+        }
+    }
+
+    private void evictUsersTagged(Set<String> tags) {
+        Cache cache = cacheManager.getCache(UserService.USERS_CACHE);
+        if (cache instanceof TwoLevelCache twoLevelCache) {
+            logger.debug("Evicting users cache entries tagged {}", tags);
+            twoLevelCache.evictTagged(tags);
+        } else if (cache != null) {
+            cache.clear();
+        }
+    }
+
+    private static Set<String> membershipTags(UserSnapshot user) {
+        Set<String> tags = pageTags(user);
+        tags.add(TAG_OTHER);
+        return tags;
+    }
+
+    private static Set<String> pageTags(UserSnapshot user) {
+        Set<String> tags = new HashSet<>();
+        tags.add(TAG_ALL);
+        tags.add(activeTag(user.active()));
+        user.roles().forEach(role -> tags.add(roleTag(role)));
+        return tags;
+    }
+
+    static String activeTag(boolean active) {
+        return "active:" + active;
+    }
+
+    static String roleTag(String role) {
+        return "role:" + role;
+    }
+
+    static String userTag(Long id) {
+        return "user:" + id;
+    }
+
+    /**
+     * The cache-relevant state of a user, captured before it is modified.
+     *
+     * @param id the user ID
+     * @param username the username
+     * @param email the email
+     * @param active whether the user is active
+     * @param roles the roles
+     */
+    public record UserSnapshot(Long id, String username, String email, boolean active, Set<String> roles) {
+
+        /**
+         * Captures the current state of a user.
+         *
+         * @param user the user
+         * @return the snapshot
+         */
+        public static UserSnapshot of(User user) {
+            return new UserSnapshot(user.getId(), user.getUsername(), user.getEmail(), user.isActive(),
+                Set.copyOf(user.getRoles()));
+        }
+    }
+}
@@ -1,5 +1,10 @@
 package com.example.demo;
 
+import com.example.demo.service.UserExportService;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.ResponseEntity;
@@ -14,10 +19,15 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.context.request.async.WebAsyncTask;
 import io.github.resilience4j.ratelimiter.annotation.RateLimiter;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
+import java.time.Duration;
 import java.util.Objects;
 import java.util.concurrent.TimeUnit;
 
@@ -28,19 +38,31 @@ import java.util.concurrent.TimeUnit;
 public class UserController {
     private static final Logger logger = LoggerFactory.getLogger(UserController.class);
     private static final String USER_NOT_FOUND_MSG = "User not found with id: %d";
+    private static final int MAX_SCROLL_SIZE = 1000;
     
     private final Counter userCreationCounter;
     private final UserService userService;
+    private final UserExportService userExportService;
+    private final AsyncTaskExecutor exportExecutor;
+    private final Duration exportTimeout;
 
     /**
      * Creates a new UserController.
      *
      * @param userService the user service to use
+     * @param userExportService the user export service to use
      * @param registry the meter registry for metrics
-     * @throws NullPointerException if either parameter is null
+     * @param exportExecutor the executor that writes exports
+     * @param exportTimeout how long an export may take
+     * @throws NullPointerException if any parameter is null
      */
-    public UserController(UserService userService, MeterRegistry registry) {
+    public UserController(UserService userService, UserExportService userExportService, MeterRegistry registry,
+                          @Qualifier("streamingExecutor") AsyncTaskExecutor exportExecutor,
+                          @Value("${app.export.timeout:30m}") Duration exportTimeout) {
         this.userService = Objects.requireNonNull(userService, "UserService must not be null");
+        this.userExportService = Objects.requireNonNull(userExportService, "UserExportService must not be null");
+        this.exportExecutor = Objects.requireNonNull(exportExecutor, "Export executor must not be null");
+        this.exportTimeout = Objects.requireNonNull(exportTimeout, "Export timeout must not be null");
         Objects.requireNonNull(registry, "MeterRegistry must not be null");
         this.userCreationCounter = Counter.builder("api.user.creation")
             .description("Number of users created")
@@ -523,4 +545,139 @@ public class UserController {
             throw e;
         }
     }
+
+    /**
+     * Scrolls through all users by keyset pagination.
+     * Each slice costs the same however deep the listing is; pass the returned cursor to get the next one.
+     *
+     * @param cursor the cursor returned with the previous slice, or none for the first slice
+     * @param size the maximum number of users in the slice
+     * @param sort the sort specification, {@code id}, {@code username} or {@code email} with an optional direction
+     * @param count whether to include the total number of users
+     * @return slice of users
+     */
+    @Timed(value = "api.scrollUsers.time")
+    @Operation(summary = "Scroll through all users with keyset pagination")
+    @GetMapping("/scroll")
+    public ResponseEntity<CursorPage<UserDTO>> scrollUsers(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") @Min(1) @Max(MAX_SCROLL_SIZE) int size,
+            @RequestParam(required = false) String sort,
+            @RequestParam(defaultValue = "false") boolean count) {
+        logger.debug("Scrolling users - size: {}, sort: {}", size, sort);
+        return ResponseEntity.ok(userService.scrollUsers(cursor, size, sort, count).map(this::convertToDTO));
+    }
+
+    /**
+     * Scrolls through active users by keyset pagination.
+     *
+     * @param cursor the cursor returned with the previous slice, or none for the first slice
+     * @param size the maximum number of users in the slice
+     * @param sort the sort specification, {@code id}, {@code username} or {@code email} with an optional direction
+     * @param count whether to include the total number of active users
+     * @return slice of active users
+     */
+    @Operation(summary = "Scroll through active users with keyset pagination")
+    @GetMapping("/active/scroll")
+    public ResponseEntity<CursorPage<UserDTO>> scrollActiveUsers(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") @Min(1) @Max(MAX_SCROLL_SIZE) int size,
+            @RequestParam(required = false) String sort,
+            @RequestParam(defaultValue = "false") boolean count) {
+        logger.debug("Scrolling active users - size: {}, sort: {}", size, sort);
+        return ResponseEntity.ok(userService.scrollUsersByActive(true, cursor, size, sort, count)
+            .map(this::convertToDTO));
+    }
+
+    /**
+     * Scrolls through inactive users by keyset pagination.
+     *
+     * @param cursor the cursor returned with the previous slice, or none for the first slice
+     * @param size the maximum number of users in the slice
+     * @param sort the sort specification, {@code id}, {@code username} or {@code email} with an optional direction
+     * @param count whether to include the total number of inactive users
+     * @return slice of inactive users
+     */
+    @Operation(summary = "Scroll through inactive users with keyset pagination")
+    @GetMapping("/inactive/scroll")
+    public ResponseEntity<CursorPage<UserDTO>> scrollInactiveUsers(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") @Min(1) @Max(MAX_SCROLL_SIZE) int size,
+            @RequestParam(required = false) String sort,
+            @RequestParam(defaultValue = "false") boolean count) {
+        logger.debug("Scrolling inactive users - size: {}, sort: {}", size, sort);
+        return ResponseEntity.ok(userService.scrollUsersByActive(false, cursor, size, sort, count)
+            .map(this::convertToDTO));
+    }
+
+    /**
+     * Scrolls through users with a role by keyset pagination.
+     *
+     * @param role the role
+     * @param cursor the cursor returned with the previous slice, or none for the first slice
+     * @param size the maximum number of users in the slice
+     * @param sort the sort specification, {@code id}, {@code username} or {@code email} with an optional direction
+     * @param count whether to include the total number of users with the role
+     * @return slice of users with the given role
+     */
+    @Operation(summary = "Scroll through users by role with keyset pagination")
+    @GetMapping("/by-role/scroll")
+    public ResponseEntity<CursorPage<UserDTO>> scrollUsersByRole(
+            @RequestParam @NotBlank String role,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") @Min(1) @Max(MAX_SCROLL_SIZE) int size,
+            @RequestParam(required = false) String sort,
+            @RequestParam(defaultValue = "false") boolean count) {
+        logger.debug("Scrolling users with role: {} - size: {}, sort: {}", role, size, sort);
+        return ResponseEntity.ok(userService.scrollUsersByRole(role, cursor, size, sort, count)
+            .map(this::convertToDTO));
+    }
+
+    /**
+     * Scrolls through all user summaries by keyset pagination.
+     *
+     * @param cursor the cursor returned with the previous slice, or none for the first slice
+     * @param size the maximum number of summaries in the slice
+     * @param sort the sort specification, {@code id}, {@code username} or {@code email} with an optional direction
+     * @param count whether to include the total number of users
+     * @return slice of user summaries
+     */
+    @Operation(summary = "Scroll through all user summaries with keyset pagination")
+    @GetMapping("/summaries/scroll")
+    public ResponseEntity<CursorPage<UserSummaryDTO>> scrollUserSummaries(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") @Min(1) @Max(MAX_SCROLL_SIZE) int size,
+            @RequestParam(required = false) String sort,
+            @RequestParam(defaultValue = "false") boolean count) {
+        logger.debug("Scrolling user summaries - size: {}, sort: {}", size, sort);
+        return ResponseEntity.ok(userService.scrollUsers(cursor, size, sort, count).map(UserSummaryDTO::fromUser));
+    }
+
+    /**
+     * Exports all users as user summaries.
+     * The response is streamed from a database cursor on the streaming executor, so neither the
+     * heap nor a servlet thread is held for the size of the whole export. The executor and the
+     * {@code app.export.timeout} only apply to exports; other async requests keep the defaults.
+     *
+     * @param format the export format, {@code ndjson} or {@code csv}
+     * @param response the response the export is written to
+     * @return the task writing the export
+     */
+    @Timed(value = "api.exportUsers.time")
+    @Operation(summary = "Export all users as NDJSON or CSV")
+    @GetMapping("/export")
+    public WebAsyncTask<Void> exportUsers(@RequestParam(defaultValue = "ndjson") String format,
+                                          HttpServletResponse response) {
+        UserExportService.Format exportFormat = UserExportService.Format.fromString(format);
+        logger.info("Exporting users as {}", exportFormat);
+        response.setContentType(exportFormat.getMediaType().toString());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+            .filename("users." + exportFormat.getExtension())
+            .build()
+            .toString());
+        return new WebAsyncTask<>(exportTimeout.toMillis(), exportExecutor, () -> {
+            userExportService.exportUsers(exportFormat, response.getOutputStream());
+            return null;
+        });
+    }
 }
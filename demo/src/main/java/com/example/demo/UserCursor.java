@@ -0,0 +1,127 @@
+package com.example.demo;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+
+/**
+ * Opaque position in a keyset-paginated user listing.
+ * A cursor records the sort order and the sort key and id of the last user of a slice; the next
+ * slice starts right after that user, so fetching it costs the same however deep the listing is.
+ *
+ * @param sortProperty the property the listing is sorted by
+ * @param direction the sort direction
+ * @param lastValue the sort key of the last user, or null when sorting by id
+ * @param lastId the id of the last user
+ */
+public record UserCursor(String sortProperty, Sort.Direction direction, String lastValue, long lastId) {
+    private static final String VERSION = "1";
+    private static final String SEPARATOR = "\n";
+    private static final String ID = "id";
+    private static final Set<String> SORT_PROPERTIES = Set.of(ID, "username", "email");
+
+    /**
+     * Parses a sort specification of the form {@code property} or {@code property,direction}.
+     * Only unique properties can be used so that keyset positions are unambiguous.
+     *
+     * @param sort the sort specification, or null for ascending id
+     * @return the sort, always ending with the id as a tiebreaker
+     * @throws IllegalArgumentException if the property is not sortable
+     */
+    public static Sort parseSort(String sort) {
+        if (sort == null || sort.isBlank()) {
+            return Sort.by(Sort.Direction.ASC, ID);
+        }
+        String[] parts = sort.split(",", 2);
+        String property = parts[0].trim();
+        if (!SORT_PROPERTIES.contains(property)) {
+            throw new IllegalArgumentException("Cannot scroll users sorted by " + property
+                + "; use one of " + SORT_PROPERTIES);
+        }
+        Sort.Direction direction = parts.length > 1
+            ? Sort.Direction.fromString(parts[1].trim())
+            : Sort.Direction.ASC;
+        return ID.equals(property)
+            ? Sort.by(direction, ID)
+            : Sort.by(direction, property).and(Sort.by(direction, ID));
+    }
+
+    /**
+     * Creates the cursor positioned after the given user.
+     *
+     * @param user the last user of a slice
+     * @param sort the sort of the listing, as returned by {@link #parseSort}
+     * @return the cursor
+     */
+    public static UserCursor after(User user, Sort sort) {
+        Sort.Order order = sort.iterator().next();
+        String property = order.getProperty();
+        String value = switch (property) {
+            case "username" -> user.getUsername();
+            case "email" -> user.getEmail();
+            default -> null;
+        };
+        return new UserCursor(property, order.getDirection(), value, user.getId());
+    }
+
+    /**
+     * Decodes a cursor returned by a previous call and checks that it belongs to the same sort.
+     *
+     * @param cursor the encoded cursor
+     * @param sort the sort of the listing
+     * @return the decoded cursor
+     * @throws IllegalArgumentException if the cursor is malformed or was issued for another sort
+     */
+    public static UserCursor decode(String cursor, Sort sort) {
+        String[] parts;
+        try {
+            parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(SEPARATOR, -1);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+        if (parts.length != 5 || !VERSION.equals(parts[0])) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        UserCursor decoded;
+        try {
+            decoded = new UserCursor(parts[1], Sort.Direction.valueOf(parts[2]),
+                parts[3].isEmpty() ? null : parts[3], Long.parseLong(parts[4]));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+        Sort.Order order = sort.iterator().next();
+        if (!decoded.sortProperty().equals(order.getProperty()) || decoded.direction() != order.getDirection()) {
+            throw new IllegalArgumentException("Cursor was issued for a different sort order");
+        }
+        return decoded;
+    }
+
+    /**
+     * Encodes this cursor as an opaque URL-safe string.
+     *
+     * @return the encoded cursor
+     */
+    public String encode() {
+        String raw = String.join(SEPARATOR, VERSION, sortProperty, direction.name(),
+            lastValue != null ? lastValue : "", Long.toString(lastId));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Converts this cursor to the scroll position of the next slice.
+     *
+     * @return the keyset scroll position
+     */
+    public ScrollPosition toScrollPosition() {
+        Map<String, Object> keys = new LinkedHashMap<>();
+        if (!ID.equals(sortProperty)) {
+            keys.put(sortProperty, lastValue);
+        }
+        keys.put(ID, lastId);
+        return ScrollPosition.forward(keys);
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.demo;
+
+import com.example.demo.cache.IdPage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+/**
+ * Serves pages of users from cached pages of ids.
+ * The {@code users} cache holds an {@link IdPage} per filter, page number, page size and sort;
+ * the users themselves are hydrated from the {@code user} cache, loading every miss of a page
+ * with a single query. Unpaged requests are not cached.
+ */
+@Component
+public class UserPageCache {
+    private static final Logger logger = LoggerFactory.getLogger(UserPageCache.class);
+
+    private final CacheManager cacheManager;
+    private final UserRepository userRepository;
+
+    public UserPageCache(CacheManager cacheManager, UserRepository userRepository) {
+        this.cacheManager = Objects.requireNonNull(cacheManager, "CacheManager must not be null");
+        this.userRepository = Objects.requireNonNull(userRepository, "UserRepository must not be null");
+    }
+
+    /**
+     * Gets a page of users.
+     *
+     * @param filter the filter the id query applies, used as the cache tag of the page
+     * @param pageable pagination information
+     * @param idQuery the query returning the ids of the page
+     * @return page of users
+     */
+    public Page<User> getPage(String filter, Pageable pageable, Function<Pageable, Page<Long>> idQuery) {
+        IdPage idPage;
+        if (pageable.isUnpaged()) {
+            idPage = IdPage.of(idQuery.apply(pageable));
+        } else {
+            PageKey key = new PageKey(filter, pageable.getPageNumber(), pageable.getPageSize(),
+                pageable.getSort().toString());
+            idPage = usersCache().get(key, () -> IdPage.of(idQuery.apply(pageable)));
+        }
+        return new PageImpl<>(hydrate(idPage.ids()), pageable, idPage.total());
+    }
+
+    /**
+     * Resolves users by id from the {@code user} cache, loading the misses in one query.
+     * Ids of users deleted in the meantime are skipped.
+     *
+     * @param ids the user ids
+     * @return the users, in the order of the ids
+     */
+    List<User> hydrate(long[] ids) {
+        Cache userCache = cacheManager.getCache(UserService.USER_CACHE);
+        User[] users = new User[ids.length];
+        List<Long> missing = new ArrayList<>();
+        for (int i = 0; i < ids.length; i++) {
+            Cache.ValueWrapper cached = userCache != null ? userCache.get(ids[i]) : null;
+            if (cached != null && cached.get() instanceof User user) {
+                users[i] = user;
+            } else {
+                missing.add(ids[i]);
+            }
+        }
+        if (!missing.isEmpty()) {
+            logger.debug("Loading {} of {} page users missing from the cache", missing.size(), ids.length);
+            Map<Long, User> loaded = userRepository.findAllById(missing).stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+            for (int i = 0; i < ids.length; i++) {
+                if (users[i] == null) {
+                    users[i] = loaded.get(ids[i]);
+                }
+            }
+            if (userCache != null) {
+                loaded.forEach(userCache::putIfAbsent);
+            }
+        }
+        return Arrays.stream(users).filter(Objects::nonNull).toList();
+    }
+
+    private Cache usersCache() {
+        return Objects.requireNonNull(cacheManager.getCache(UserService.USERS_CACHE), "users cache is not configured");
+    }
+
+    /**
+     * Key of a cached page of ids.
+     *
+     * @param filter the filter of the id query
+     * @param page the page number
+     * @param size the page size
+     * @param sort the sort order
+     */
+    public record PageKey(String filter, int page, int size, String sort) {}
+}
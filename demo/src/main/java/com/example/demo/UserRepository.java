@@ -1,10 +1,20 @@
 package com.example.demo;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
@@ -22,6 +32,108 @@ public interface UserRepository extends JpaRepository<User, Long> {
     Page<User> findByEmailDomain(@Param("domain") String domain, Pageable pageable);
     
     Page<User> findByRolesContaining(String role, Pageable pageable);
+
+    Window<User> findAllBy(ScrollPosition position, Sort sort, Limit limit);
+    Window<User> findByActive(boolean active, ScrollPosition position, Sort sort, Limit limit);
+    Window<User> findByRolesContaining(String role, ScrollPosition position, Sort sort, Limit limit);
+    long countByRolesContaining(String role);
+
+    @Query(value = "SELECT u.id FROM User u", countQuery = "SELECT COUNT(u) FROM User u")
+    Page<Long> findAllIds(Pageable pageable);
+
+    @Query(
+        value = "SELECT u.id FROM User u WHERE u.active = :active",
+        countQuery = "SELECT COUNT(u) FROM User u WHERE u.active = :active")
+    Page<Long> findIdsByActive(@Param("active") boolean active, Pageable pageable);
+
+    @Query(
+        value = "SELECT u.id FROM User u WHERE :role MEMBER OF u.roles",
+        countQuery = "SELECT COUNT(u) FROM User u WHERE :role MEMBER OF u.roles")
+    Page<Long> findIdsByRole(@Param("role") String role, Pageable pageable);
+
+    long countByActive(boolean active);
+
+    @Query("SELECT u.username FROM User u WHERE u.username IN :usernames")
+    List<String> findExistingUsernames(@Param("usernames") Collection<String> usernames);
+
+    @Query("SELECT u.email FROM User u WHERE u.email IN :emails")
+    List<String> findExistingEmails(@Param("emails") Collection<String> emails);
+
+    @Query("SELECT r AS role, COUNT(u) AS users FROM User u JOIN u.roles r GROUP BY r")
+    List<RoleCount> countUsersByRole();
+
+    @Query("SELECT AVG(SIZE(u.roles)) FROM User u")
+    Double averageRolesPerUser();
+
+    /**
+     * Counts users per distinct set of roles, most common first. Each set is returned as its
+     * roles in alphabetical order joined by commas, or an empty string for users without roles.
+     *
+     * @param limit the maximum number of combinations
+     * @return the most common role combinations
+     */
+    @Query("SELECT c.roles AS roles, COUNT(*) AS users FROM ("
+            + "SELECT COALESCE(LISTAGG(r, ',') WITHIN GROUP (ORDER BY r), '') AS roles "
+            + "FROM User u LEFT JOIN u.roles r GROUP BY u.id) c "
+            + "GROUP BY c.roles ORDER BY COUNT(*) DESC")
+    List<RoleCombinationCount> findCommonRoleCombinations(Limit limit);
+
+    /**
+     * Streams every (user, role) pair ordered by user, with a null role for users without roles.
+     * Must be consumed inside a transaction and closed afterwards.
+     *
+     * @return stream of user roles
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT u.id AS userId, r AS role FROM User u LEFT JOIN u.roles r ORDER BY u.id")
+    Stream<UserRole> streamUserRoles();
+
+    /**
+     * Streams the exported fields of every user, one row per (user, role) pair ordered by user.
+     * Rows are scalar projections, so the persistence context does not grow while streaming.
+     * Must be consumed inside a transaction and closed afterwards.
+     *
+     * @return stream of export rows
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT u.id AS id, u.username AS username, u.email AS email, u.active AS active, r AS role "
+        + "FROM User u LEFT JOIN u.roles r ORDER BY u.id")
+    Stream<UserExportRow> streamUserExportRows();
+
+    /**
+     * Exported fields of a user with one of its roles, or a null role for a user without roles.
+     */
+    interface UserExportRow {
+        Long getId();
+        String getUsername();
+        String getEmail();
+        boolean isActive();
+        String getRole();
+    }
+
+    /**
+     * Number of users holding a role.
+     */
+    interface RoleCount {
+        String getRole();
+        long getUsers();
+    }
+
+    /**
+     * Number of users holding exactly a set of roles.
+     */
+    interface RoleCombinationCount {
+        String getRoles();
+        long getUsers();
+    }
+
+    /**
+     * A role held by a user.
+     */
+    interface UserRole {
+        Long getUserId();
+        String getRole();
+    }
     
     @Query("SELECT u FROM User u WHERE SIZE(u.roles) > :minRoles")
     Page<User> findByMinimumRoles(@Param("minRoles") int minRoles, Pageable pageable);
@@ -1,19 +1,28 @@
 package com.example.demo;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.LongSupplier;
 import java.util.Set;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.CachePut;
 import org.springframework.cache.annotation.Cacheable;
-import org.springframework.cache.annotation.Caching;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
@@ -27,17 +36,28 @@ import java.util.Objects;
 public class UserService {
     private static final Logger logger = LoggerFactory.getLogger(UserService.class);
     private static final String USER_NOT_FOUND = "User not found";
-    private static final String USER_CACHE = "user";
-    private static final String USERS_CACHE = "users";
+    public static final String USER_CACHE = "user";
+    public static final String USERS_CACHE = "users";
     private static final String ROLE_USER = "ROLE_USER";
+    private static final int TOP_ROLE_COMBINATIONS = 5;
 
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final UserCacheInvalidator cacheInvalidator;
+    private final UserPageCache userPageCache;
+    private final RoleStatistics roleStatistics;
+    private final ActiveUserCounter activeUserCounter;
     private final AtomicInteger failureCounter;
 
-    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder) {
+    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder,
+                       UserCacheInvalidator cacheInvalidator, UserPageCache userPageCache,
+                       RoleStatistics roleStatistics, ActiveUserCounter activeUserCounter) {
         this.userRepository = Objects.requireNonNull(userRepository, "UserRepository must not be null");
         this.passwordEncoder = Objects.requireNonNull(passwordEncoder, "PasswordEncoder must not be null");
+        this.cacheInvalidator = Objects.requireNonNull(cacheInvalidator, "UserCacheInvalidator must not be null");
+        this.userPageCache = Objects.requireNonNull(userPageCache, "UserPageCache must not be null");
+        this.roleStatistics = Objects.requireNonNull(roleStatistics, "RoleStatistics must not be null");
+        this.activeUserCounter = Objects.requireNonNull(activeUserCounter, "ActiveUserCounter must not be null");
         this.failureCounter = new AtomicInteger(0);
     }
 
@@ -47,11 +67,9 @@ public class UserService {
      * @param pageable pagination information
      * @return page of all users
      */
-    @Cacheable(value = USERS_CACHE, key = "'all_' + #pageable.pageNumber + '_' + #pageable.pageSize")
     public Page<User> getAllUsers(Pageable pageable) {
-        logger.debug("Fetching all users - page: {}, size: {}", 
-            pageable.getPageNumber(), pageable.getPageSize());
-        return userRepository.findAll(pageable);
+        logger.debug("Fetching all users - {}", pageable);
+        return userPageCache.getPage(UserCacheInvalidator.TAG_ALL, pageable, userRepository::findAllIds);
     }
 
     /**
@@ -73,7 +91,7 @@ public class UserService {
      * @param id the user ID
      * @return optional containing the user if found
      */
-    @Cacheable(value = USER_CACHE, key = "#id")
+    @Cacheable(value = USER_CACHE, key = "#id", sync = true)
     public Optional<User> getUserById(Long id) {
         logger.debug("Fetching user by ID: {}", id);
         return userRepository.findById(id);
@@ -85,10 +103,7 @@ public class UserService {
      * @param user the user to create
      * @return the created user
      */
-    @Caching(
-        put = { @CachePut(value = USER_CACHE, key = "#result.id") },
-        evict = { @CacheEvict(value = USERS_CACHE, allEntries = true) }
-    )
+    @CachePut(value = USER_CACHE, key = "#result.id")
     public User createUser(User user) {
         if (logger.isInfoEnabled()) {
             logger.info("Creating user with username: {}", user.getUsername());
@@ -101,6 +116,9 @@ public class UserService {
         }
         try {
             User savedUser = userRepository.save(user);
+            cacheInvalidator.userCreated(savedUser);
+            roleStatistics.userAdded(savedUser.getRoles());
+            activeUserCounter.userAdded(savedUser.isActive());
             logger.debug("User created successfully: {}", savedUser.getId());
             return savedUser;
         } catch (Exception e) {
@@ -109,6 +127,82 @@ public class UserService {
         }
     }
 
+    /**
+     * Creates a batch of users with batched inserts.
+     * The batch is saved in one transaction; if that fails, the users are saved one at a time
+     * so that a single invalid or duplicate user only fails itself. Caches are invalidated once
+     * for the whole batch.
+     *
+     * @param users the users to create, with passwords already hashed or in plain text
+     * @param onFailure called with each user that could not be created and the cause
+     * @return the created users
+     */
+    public List<User> createUsers(List<User> users, BiConsumer<User, Exception> onFailure) {
+        logger.debug("Creating batch of {} users", users.size());
+        for (User user : users) {
+            if (user.getRoles().isEmpty()) {
+                user.setRoles(Set.of(ROLE_USER));
+            }
+            if (!isPasswordHashed(user.getPassword())) {
+                user.setPassword(passwordEncoder.encode(user.getPassword()));
+            }
+        }
+        List<User> savedUsers;
+        try {
+            savedUsers = userRepository.saveAll(users);
+        } catch (Exception e) {
+            logger.warn("Batch insert of {} users failed, retrying one at a time: {}", users.size(), e.getMessage());
+            savedUsers = new ArrayList<>(users.size());
+            for (User user : users) {
+                try {
+                    // The failed batch may have assigned an id and version, so save a fresh copy
+                    savedUsers.add(userRepository.save(copyForInsert(user)));
+                } catch (Exception rowException) {
+                    logger.error("Error creating user {}: {}", user.getUsername(), rowException.getMessage());
+                    onFailure.accept(user, rowException);
+                }
+            }
+        }
+        cacheInvalidator.usersCreated(savedUsers);
+        for (User savedUser : savedUsers) {
+            roleStatistics.userAdded(savedUser.getRoles());
+            activeUserCounter.userAdded(savedUser.isActive());
+        }
+        logger.debug("Created {} of {} users", savedUsers.size(), users.size());
+        return savedUsers;
+    }
+
+    private static User copyForInsert(User user) {
+        return User.builder()
+            .username(user.getUsername())
+            .email(user.getEmail())
+            .password(user.getPassword())
+            .token(user.getToken())
+            .active(user.isActive())
+            .roles(user.getRoles())
+            .build();
+    }
+
+    /**
+     * Finds which of the given usernames are already taken, with a single query.
+     *
+     * @param usernames the usernames to look up
+     * @return the usernames that exist
+     */
+    public Set<String> findExistingUsernames(Collection<String> usernames) {
+        return usernames.isEmpty() ? Set.of() : new HashSet<>(userRepository.findExistingUsernames(usernames));
+    }
+
+    /**
+     * Finds which of the given emails are already taken, with a single query.
+     *
+     * @param emails the emails to look up
+     * @return the emails that exist
+     */
+    public Set<String> findExistingEmails(Collection<String> emails) {
+        return emails.isEmpty() ? Set.of() : new HashSet<>(userRepository.findExistingEmails(emails));
+    }
+
     /**
      * Updates an existing user.
      *
@@ -116,10 +210,7 @@ public class UserService {
      * @param userDetails the updated user details
      * @return the updated user
      */
-    @Caching(
-        put = { @CachePut(value = USER_CACHE, key = "#id") },
-        evict = { @CacheEvict(value = USERS_CACHE, allEntries = true) }
-    )
+    @CachePut(value = USER_CACHE, key = "#id")
     public User updateUser(Long id, User userDetails) {
         logger.debug("Updating user with ID: {}", id);
         User user = userRepository.findById(id)
@@ -127,9 +218,13 @@ public class UserService {
                 logger.warn("User not found for update: {}", id);
                 return new UserNotFoundException(USER_NOT_FOUND);
             });
-            
+
+        UserCacheInvalidator.UserSnapshot before = UserCacheInvalidator.UserSnapshot.of(user);
         updateUserFields(user, userDetails);
         User updatedUser = userRepository.save(user);
+        cacheInvalidator.userUpdated(before, updatedUser);
+        roleStatistics.rolesChanged(before.roles(), updatedUser.getRoles());
+        activeUserCounter.activeChanged(before.active(), updatedUser.isActive());
         logger.debug("User updated successfully: {}", id);
         return updatedUser;
     }
@@ -139,15 +234,15 @@ public class UserService {
      *
      * @param id the user ID
      */
-    @Caching(
-        evict = {
-            @CacheEvict(value = USER_CACHE, key = "#id"),
-            @CacheEvict(value = USERS_CACHE, allEntries = true)
-        }
-    )
+    @CacheEvict(value = USER_CACHE, key = "#id")
     public void deleteUser(Long id) {
         logger.debug("Deleting user with ID: {}", id);
-        userRepository.deleteById(id);
+        userRepository.findById(id).ifPresent(user -> {
+            userRepository.delete(user);
+            cacheInvalidator.userDeleted(user);
+            roleStatistics.userRemoved(user.getRoles());
+            activeUserCounter.userRemoved(user.isActive());
+        });
         logger.debug("User deleted successfully: {}", id);
     }
 
@@ -211,8 +306,10 @@ public class UserService {
             logger.warn("Invalid old password for user: {}", id);
             throw new IllegalArgumentException("Invalid old password");
         }
+        UserCacheInvalidator.UserSnapshot before = UserCacheInvalidator.UserSnapshot.of(user);
         user.setPassword(passwordEncoder.encode(newPassword));
         User updatedUser = userRepository.save(user);
+        cacheInvalidator.userUpdated(before, updatedUser);
         logger.debug("Password updated successfully for user: {}", id);
         return updatedUser;
     }
@@ -277,12 +374,13 @@ public class UserService {
      * @param userId the user ID
      * @param token the token
      */
-    @CachePut(value = USER_CACHE, key = "#userId")
+    @CacheEvict(value = USER_CACHE, key = "#userId")
     public void saveResetToken(Long userId, String token) {
         logger.debug("Saving reset token for user: {}", userId);
         userRepository.findById(userId).ifPresent(user -> {
+            UserCacheInvalidator.UserSnapshot before = UserCacheInvalidator.UserSnapshot.of(user);
             user.setToken(token);
-            userRepository.save(user);
+            cacheInvalidator.userUpdated(before, userRepository.save(user));
         });
     }
 
@@ -292,12 +390,13 @@ public class UserService {
      * @param userId the user ID
      * @param token the token
      */
-    @CachePut(value = USER_CACHE, key = "#userId")
+    @CacheEvict(value = USER_CACHE, key = "#userId")
     public void saveVerificationToken(Long userId, String token) {
         logger.debug("Saving verification token for user: {}", userId);
         userRepository.findById(userId).ifPresent(user -> {
+            UserCacheInvalidator.UserSnapshot before = UserCacheInvalidator.UserSnapshot.of(user);
             user.setToken(token);
-            userRepository.save(user);
+            cacheInvalidator.userUpdated(before, userRepository.save(user));
         });
     }
 
@@ -351,11 +450,10 @@ public class UserService {
      * @param pageable pagination information
      * @return page of active users
      */
-    @Cacheable(value = USERS_CACHE, key = "'active_' + #pageable.pageNumber + '_' + #pageable.pageSize")
     public Page<User> getActiveUsers(Pageable pageable) {
-        logger.debug("Fetching active users - page: {}, size: {}", 
-            pageable.getPageNumber(), pageable.getPageSize());
-        return userRepository.findByActiveTrue(pageable);
+        logger.debug("Fetching active users - {}", pageable);
+        return userPageCache.getPage(UserCacheInvalidator.activeTag(true), pageable,
+            page -> userRepository.findIdsByActive(true, page));
     }
 
     /**
@@ -364,11 +462,10 @@ public class UserService {
      * @param pageable pagination information
      * @return page of inactive users
      */
-    @Cacheable(value = USERS_CACHE, key = "'inactive_' + #pageable.pageNumber + '_' + #pageable.pageSize")
     public Page<User> getInactiveUsers(Pageable pageable) {
-        logger.debug("Fetching inactive users - page: {}, size: {}", 
-            pageable.getPageNumber(), pageable.getPageSize());
-        return userRepository.findByActiveFalse(pageable);
+        logger.debug("Fetching inactive users - {}", pageable);
+        return userPageCache.getPage(UserCacheInvalidator.activeTag(false), pageable,
+            page -> userRepository.findIdsByActive(false, page));
     }
 
     /**
@@ -391,11 +488,82 @@ public class UserService {
      * @param pageable pagination information
      * @return page of users with the given role
      */
-    @Cacheable(value = USERS_CACHE, key = "'role_' + #role + '_' + #pageable.pageNumber + '_' + #pageable.pageSize")
     public Page<User> getUsersByRole(String role, Pageable pageable) {
-        logger.debug("Fetching users by role: {} - page: {}, size: {}", 
-            role, pageable.getPageNumber(), pageable.getPageSize());
-        return userRepository.findByRolesContaining(role, pageable);
+        logger.debug("Fetching users by role: {} - {}", role, pageable);
+        return userPageCache.getPage(UserCacheInvalidator.roleTag(role), pageable,
+            page -> userRepository.findIdsByRole(role, page));
+    }
+
+    /**
+     * Scrolls through all users by keyset pagination.
+     *
+     * @param cursor the cursor returned with the previous slice, or null for the first slice
+     * @param size the maximum number of users in the slice
+     * @param sort the sort specification, {@code property[,direction]}
+     * @param includeCount whether to include the total number of users
+     * @return slice of users
+     */
+    public CursorPage<User> scrollUsers(String cursor, int size, String sort, boolean includeCount) {
+        logger.debug("Scrolling users - size: {}, sort: {}", size, sort);
+        return scroll(cursor, size, sort,
+            (position, order) -> userRepository.findAllBy(position, order, Limit.of(size)),
+            includeCount ? () -> activeUserCounter.count(true) + activeUserCounter.count(false) : null);
+    }
+
+    /**
+     * Scrolls through active or inactive users by keyset pagination.
+     *
+     * @param active whether to scroll through active users
+     * @param cursor the cursor returned with the previous slice, or null for the first slice
+     * @param size the maximum number of users in the slice
+     * @param sort the sort specification, {@code property[,direction]}
+     * @param includeCount whether to include the total number of matching users
+     * @return slice of users with the given active flag
+     */
+    public CursorPage<User> scrollUsersByActive(boolean active, String cursor, int size, String sort,
+            boolean includeCount) {
+        logger.debug("Scrolling {} users - size: {}, sort: {}", active ? "active" : "inactive", size, sort);
+        return scroll(cursor, size, sort,
+            (position, order) -> userRepository.findByActive(active, position, order, Limit.of(size)),
+            includeCount ? () -> activeUserCounter.count(active) : null);
+    }
+
+    /**
+     * Scrolls through users with a role by keyset pagination.
+     *
+     * @param role the role
+     * @param cursor the cursor returned with the previous slice, or null for the first slice
+     * @param size the maximum number of users in the slice
+     * @param sort the sort specification, {@code property[,direction]}
+     * @param includeCount whether to include the total number of matching users
+     * @return slice of users with the given role
+     */
+    public CursorPage<User> scrollUsersByRole(String role, String cursor, int size, String sort,
+            boolean includeCount) {
+        logger.debug("Scrolling users by role: {} - size: {}, sort: {}", role, size, sort);
+        return scroll(cursor, size, sort,
+            (position, order) -> userRepository.findByRolesContaining(role, position, order, Limit.of(size)),
+            includeCount ? () -> roleStatistics.isReady()
+                ? roleStatistics.countByRole().getOrDefault(role, 0L)
+                : userRepository.countByRolesContaining(role) : null);
+    }
+
+    private CursorPage<User> scroll(String cursor, int size, String sort,
+            BiFunction<ScrollPosition, Sort, Window<User>> query, LongSupplier count) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Size must be positive");
+        }
+        Sort order = UserCursor.parseSort(sort);
+        ScrollPosition position = cursor == null || cursor.isBlank()
+            ? ScrollPosition.keyset()
+            : UserCursor.decode(cursor, order).toScrollPosition();
+        Window<User> window = query.apply(position, order);
+        List<User> users = window.getContent();
+        String nextCursor = window.hasNext() && !users.isEmpty()
+            ? UserCursor.after(users.get(users.size() - 1), order).encode()
+            : null;
+        return new CursorPage<>(users, nextCursor, nextCursor != null,
+            count != null ? count.getAsLong() : null);
     }
 
     /**
@@ -434,14 +602,7 @@ public class UserService {
      * @param roles the roles to update
      * @return the updated user
      */
-    @Caching(
-        put = { @CachePut(value = USER_CACHE, key = "#id") },
-        evict = { 
-            @CacheEvict(value = USERS_CACHE, key = "'all'"),
-            @CacheEvict(value = USERS_CACHE, key = "'active'", condition = "#result.active"),
-            @CacheEvict(value = USERS_CACHE, key = "'inactive'", condition = "!#result.active")
-        }
-    )
+    @CachePut(value = USER_CACHE, key = "#id")
     public User updateUserRoles(Long id, Set<String> roles) {
         logger.debug("Updating roles for user with ID: {}", id);
         User user = userRepository.findById(id)
@@ -449,12 +610,15 @@ public class UserService {
                 logger.warn("User not found for role update: {}", id);
                 return new UserNotFoundException("User not found");
             });
-        
+
+        UserCacheInvalidator.UserSnapshot before = UserCacheInvalidator.UserSnapshot.of(user);
         user.getRoles().clear();  
         user.setRoles(new HashSet<>(roles));  
         
         try {
             User updatedUser = userRepository.save(user);
+            cacheInvalidator.userUpdated(before, updatedUser);
+            roleStatistics.rolesChanged(before.roles(), updatedUser.getRoles());
             logger.debug("Roles updated successfully for user: {}", id);
             return updatedUser;
         } catch (Exception e) {
@@ -474,20 +638,31 @@ public class UserService {
         return userRepository.count();
     }
 
+    /**
+     * Gets the number of active or inactive users.
+     * Counted in the database once and then adjusted on every write.
+     *
+     * @param active whether to count active users
+     * @return the number of users with the given active flag
+     */
+    public long countUsersByActive(boolean active) {
+        logger.debug("Counting {} users", active ? "active" : "inactive");
+        return activeUserCounter.count(active);
+    }
+
     /**
      * Gets the count of users by role.
+     * Served from the maintained role statistics, or aggregated in the database until they are built.
      *
      * @return map of role to count
      */
-    @Cacheable(value = USERS_CACHE, key = "'countByRole'")
     public Map<String, Long> getUserCountByRole() {
         logger.debug("Counting users by role");
-        return getAllUsers().stream()
-            .flatMap(user -> user.getRoles().stream())
-            .collect(Collectors.groupingBy(
-                role -> role,
-                Collectors.counting()
-            ));
+        if (roleStatistics.isReady()) {
+            return roleStatistics.countByRole();
+        }
+        return userRepository.countUsersByRole().stream()
+            .collect(Collectors.toMap(UserRepository.RoleCount::getRole, UserRepository.RoleCount::getUsers));
     }
 
     /**
@@ -495,17 +670,13 @@ public class UserService {
      *
      * @return the average number of roles per user
      */
-    @Cacheable(value = USERS_CACHE, key = "'avgRoles'")
     public double getAverageRolesPerUser() {
         logger.debug("Calculating average roles per user");
-        List<User> users = getAllUsers();
-        if (users.isEmpty()) {
-            return 0.0;
+        if (roleStatistics.isReady()) {
+            return roleStatistics.averageRolesPerUser();
         }
-        return users.stream()
-            .mapToInt(user -> user.getRoles().size())
-            .average()
-            .orElse(0.0);
+        Double average = userRepository.averageRolesPerUser();
+        return average != null ? average : 0.0;
     }
 
     /**
@@ -513,23 +684,19 @@ public class UserService {
      *
      * @return map of role to percentage
      */
-    @Cacheable(value = USERS_CACHE, key = "'roleDistribution'")
     public Map<String, Long> getRoleDistribution() {
         logger.debug("Calculating role distribution");
-        List<User> users = getAllUsers();
-        long totalUsers = users.size();
+        if (roleStatistics.isReady()) {
+            return roleStatistics.roleDistribution();
+        }
+        long totalUsers = userRepository.count();
         if (totalUsers == 0) {
             return Map.of();
         }
-        
-        return users.stream()
-            .flatMap(user -> user.getRoles().stream())
-            .collect(Collectors.groupingBy(
-                role -> role,
-                Collectors.collectingAndThen(
-                    Collectors.counting(),
-                    count -> (count * 100) / totalUsers
-                )
+        return userRepository.countUsersByRole().stream()
+            .collect(Collectors.toMap(
+                UserRepository.RoleCount::getRole,
+                roleCount -> (roleCount.getUsers() * 100) / totalUsers
             ));
     }
 
@@ -538,22 +705,18 @@ public class UserService {
      *
      * @return list of role combinations
      */
-    @Cacheable(value = USERS_CACHE, key = "'roleCombinations'")
     public List<Map<String, Object>> getCommonRoleCombinations() {
         logger.debug("Finding common role combinations");
-        return getAllUsers().stream()
-            .map(User::getRoles)
-            .collect(Collectors.groupingBy(
-                roles -> new HashSet<>(roles),
-                Collectors.counting()
-            ))
-            .entrySet().stream()
-            .sorted((e1, e2) -> e2.getValue().compareTo(e1.getValue()))
-            .limit(5)
-            .map(entry -> {
+        if (roleStatistics.isReady()) {
+            return roleStatistics.commonRoleCombinations(TOP_ROLE_COMBINATIONS);
+        }
+        return userRepository.findCommonRoleCombinations(Limit.of(TOP_ROLE_COMBINATIONS)).stream()
+            .map(combinationCount -> {
                 Map<String, Object> combination = new HashMap<>();
-                combination.put("roles", entry.getKey());
-                combination.put("count", entry.getValue());
+                combination.put("roles", combinationCount.getRoles().isEmpty()
+                    ? new HashSet<String>()
+                    : new HashSet<>(Arrays.asList(combinationCount.getRoles().split(","))));
+                combination.put("count", combinationCount.getUsers());
                 return combination;
             })
             .collect(Collectors.toList());
@@ -0,0 +1,115 @@
+package com.example.demo.cache;
+
+import com.example.demo.User;
+import com.github.benmanes.caffeine.cache.Weigher;
+import java.time.temporal.Temporal;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpEntity;
+
+/**
+ * Weighs cache entries by an estimate of their retained heap size in bytes.
+ * The estimate follows the shapes this application actually caches (users, pages, id pages,
+ * collections, maps and response entities) and is deliberately cheap: large collections are sampled and
+ * extrapolated instead of walked in full.
+ */
+public final class CacheEntryWeigher implements Weigher<Object, Object> {
+    private static final int ENTRY_OVERHEAD = 64;
+    private static final int OBJECT_HEADER = 16;
+    private static final int REFERENCE = 8;
+    private static final int STRING_OVERHEAD = 48;
+    private static final int BOXED_VALUE = 16;
+    private static final int TEMPORAL_VALUE = 48;
+    private static final int UNKNOWN_VALUE = 64;
+    private static final int MAX_DEPTH = 6;
+    private static final int SAMPLE_SIZE = 256;
+
+    @Override
+    public int weigh(Object key, Object value) {
+        long bytes = ENTRY_OVERHEAD + estimate(key) + estimate(value);
+        return (int) Math.min(Integer.MAX_VALUE, bytes);
+    }
+
+    /**
+     * Estimates the retained size of a value in bytes.
+     *
+     * @param value the value to estimate
+     * @return the estimated size in bytes
+     */
+    public static long estimate(Object value) {
+        return estimate(value, 0);
+    }
+
+    private static long estimate(Object value, int depth) {
+        if (value == null) {
+            return 0;
+        }
+        if (depth > MAX_DEPTH) {
+            return UNKNOWN_VALUE;
+        }
+        if (value instanceof String string) {
+            return STRING_OVERHEAD + string.length();
+        }
+        if (value instanceof Number || value instanceof Boolean || value instanceof Character) {
+            return BOXED_VALUE;
+        }
+        if (value instanceof Enum<?>) {
+            return REFERENCE;
+        }
+        if (value instanceof Temporal) {
+            return TEMPORAL_VALUE;
+        }
+        if (value instanceof byte[] bytes) {
+            return OBJECT_HEADER + bytes.length;
+        }
+        if (value instanceof long[] longs) {
+            return OBJECT_HEADER + 8L * longs.length;
+        }
+        if (value instanceof IdPage page) {
+            return OBJECT_HEADER + 8 + estimate(page.ids(), depth + 1);
+        }
+        if (value instanceof User user) {
+            return OBJECT_HEADER + 8L * REFERENCE
+                + estimate(user.getUsername(), depth + 1)
+                + estimate(user.getEmail(), depth + 1)
+                + estimate(user.getPassword(), depth + 1)
+                + estimate(user.getToken(), depth + 1)
+                + estimate(user.getRoles(), depth + 1);
+        }
+        if (value instanceof Optional<?> optional) {
+            return OBJECT_HEADER + estimate(optional.orElse(null), depth + 1);
+        }
+        if (value instanceof Slice<?> slice) {
+            return OBJECT_HEADER + 64 + estimate(slice.getContent(), depth + 1);
+        }
+        if (value instanceof HttpEntity<?> entity) {
+            return OBJECT_HEADER + 256 + estimate(entity.getBody(), depth + 1);
+        }
+        if (value instanceof Collection<?> collection) {
+            return OBJECT_HEADER + 32 + (long) REFERENCE * collection.size()
+                + sampled(collection.iterator(), collection.size(), depth);
+        }
+        if (value instanceof Map<?, ?> map) {
+            return OBJECT_HEADER + 48 + 32L * map.size()
+                + sampled(map.keySet().iterator(), map.size(), depth)
+                + sampled(map.values().iterator(), map.size(), depth);
+        }
+        return UNKNOWN_VALUE;
+    }
+
+    private static long sampled(Iterator<?> elements, int size, int depth) {
+        long total = 0;
+        int seen = 0;
+        while (elements.hasNext() && seen < SAMPLE_SIZE) {
+            total += estimate(elements.next(), depth + 1);
+            seen++;
+        }
+        if (seen == 0 || seen == size) {
+            return total;
+        }
+        return total / seen * size;
+    }
+}
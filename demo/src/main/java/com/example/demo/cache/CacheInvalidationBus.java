@@ -0,0 +1,48 @@
+package com.example.demo.cache;
+
+import java.util.Collection;
+import java.util.function.Consumer;
+
+/**
+ * Channel over which nodes tell each other to drop first-level cache entries.
+ */
+public interface CacheInvalidationBus {
+
+    /**
+     * Broadcasts an invalidation to every subscribed node, including the sender.
+     *
+     * @param invalidation the invalidation to broadcast
+     */
+    void publish(CacheInvalidation invalidation);
+
+    /**
+     * Registers a listener for invalidations.
+     *
+     * @param listener the listener to register
+     */
+    void subscribe(Consumer<CacheInvalidation> listener);
+
+    /**
+     * An invalidation of one entry, of every entry carrying one of the given tags, or of a whole
+     * cache when both {@code key} and {@code tags} are null.
+     *
+     * @param origin identifier of the node that changed the entry
+     * @param cacheName the cache name
+     * @param key the entry key, or null
+     * @param tags the tags of the entries to drop, or null
+     */
+    record CacheInvalidation(String origin, String cacheName, Object key, Collection<String> tags) {
+
+        static CacheInvalidation ofKey(String origin, String cacheName, Object key) {
+            return new CacheInvalidation(origin, cacheName, key, null);
+        }
+
+        static CacheInvalidation ofTags(String origin, String cacheName, Collection<String> tags) {
+            return new CacheInvalidation(origin, cacheName, null, tags);
+        }
+
+        static CacheInvalidation ofAll(String origin, String cacheName) {
+            return new CacheInvalidation(origin, cacheName, null, null);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.demo.cache;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Two-way index between cache keys and their tags.
+ * Callers drop a key from the index before invalidating it and add it while storing it, before
+ * the value is visible, so a race with a concurrent write can leave a key indexed that is no
+ * longer cached, which is harmless, but never a cached key that is not indexed.
+ */
+final class CacheTagIndex {
+
+    private final Map<String, Set<Object>> keysByTag = new HashMap<>();
+    private final Map<Object, Set<String>> tagsByKey = new HashMap<>();
+
+    /**
+     * Adds tags to a key, keeping any tags it already has.
+     *
+     * @param key the cache key
+     * @param tags the tags to add
+     */
+    synchronized void add(Object key, Collection<String> tags) {
+        if (tags.isEmpty()) {
+            return;
+        }
+        tagsByKey.computeIfAbsent(key, k -> new HashSet<>()).addAll(tags);
+        for (String tag : tags) {
+            keysByTag.computeIfAbsent(tag, t -> new HashSet<>()).add(key);
+        }
+    }
+
+    /**
+     * Removes a key and all of its tags.
+     *
+     * @param key the cache key
+     */
+    synchronized void remove(Object key) {
+        Set<String> tags = tagsByKey.remove(key);
+        if (tags != null) {
+            tags.forEach(tag -> unlink(tag, key));
+        }
+    }
+
+    /**
+     * Removes every key carrying at least one of the given tags.
+     *
+     * @param tags the tags to look for
+     * @return the removed keys
+     */
+    synchronized Set<Object> removeTagged(Collection<String> tags) {
+        Set<Object> keys = new HashSet<>();
+        for (String tag : tags) {
+            Set<Object> tagged = keysByTag.remove(tag);
+            if (tagged != null) {
+                keys.addAll(tagged);
+            }
+        }
+        for (Object key : keys) {
+            Set<String> keyTags = tagsByKey.remove(key);
+            if (keyTags != null) {
+                keyTags.forEach(tag -> unlink(tag, key));
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Removes every key.
+     */
+    synchronized void clear() {
+        keysByTag.clear();
+        tagsByKey.clear();
+    }
+
+    /**
+     * Gets the number of indexed keys.
+     *
+     * @return the number of indexed keys
+     */
+    synchronized int size() {
+        return tagsByKey.size();
+    }
+
+    private void unlink(String tag, Object key) {
+        Set<Object> keys = keysByTag.get(tag);
+        if (keys != null && keys.remove(key) && keys.isEmpty()) {
+            keysByTag.remove(tag);
+        }
+    }
+}
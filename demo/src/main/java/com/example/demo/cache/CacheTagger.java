@@ -0,0 +1,26 @@
+package com.example.demo.cache;
+
+import java.util.Set;
+
+/**
+ * Derives the tags of a cache entry from its key and value.
+ * A tag names a predicate the entry depends on, so that a write can evict exactly the entries
+ * whose predicates it affects through {@link TwoLevelCache#evictTagged}.
+ */
+@FunctionalInterface
+public interface CacheTagger {
+
+    /**
+     * Tagger for caches whose entries are only ever evicted by key or cleared as a whole.
+     */
+    CacheTagger NONE = (key, value) -> Set.of();
+
+    /**
+     * Gets the tags of an entry.
+     *
+     * @param key the entry key
+     * @param value the entry value, possibly null
+     * @return the tags of the entry, never null
+     */
+    Set<String> tags(Object key, Object value);
+}
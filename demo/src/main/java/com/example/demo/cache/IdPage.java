@@ -0,0 +1,24 @@
+package com.example.demo.cache;
+
+import org.springframework.data.domain.Page;
+
+/**
+ * A page of entity ids together with the total element count of the query.
+ * Cached in place of a page of entities so that every entity is held once, in its own cache,
+ * and changes to a single entity show up in every page without evicting the pages.
+ *
+ * @param ids the ids of the page content, in page order
+ * @param total the total number of elements across all pages
+ */
+public record IdPage(long[] ids, long total) {
+
+    /**
+     * Captures a page of ids.
+     *
+     * @param page the page returned by an id query
+     * @return the compact id page
+     */
+    public static IdPage of(Page<Long> page) {
+        return new IdPage(page.getContent().stream().mapToLong(Long::longValue).toArray(), page.getTotalElements());
+    }
+}
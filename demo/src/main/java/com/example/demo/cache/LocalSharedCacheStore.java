@@ -0,0 +1,96 @@
+package com.example.demo.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Embeddable {@link SharedCacheStore} kept in the local heap.
+ * It stands in for a networked store such as Redis in single-node deployments and tests; several
+ * {@link TwoLevelCacheManager}s built on the same instance behave like nodes sharing one tier.
+ */
+public class LocalSharedCacheStore implements SharedCacheStore {
+
+    private final Cache<StoreKey, StoreEntry> entries;
+    private final Map<String, CacheTagIndex> tagIndexes = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a store bounded by the estimated size of its entries.
+     *
+     * @param maxWeightBytes the maximum total entry weight in bytes
+     */
+    public LocalSharedCacheStore(long maxWeightBytes) {
+        CacheEntryWeigher weigher = new CacheEntryWeigher();
+        this.entries = Caffeine.newBuilder()
+            .maximumWeight(maxWeightBytes)
+            .<StoreKey, StoreEntry>weigher((key, entry) -> weigher.weigh(key.key(), entry.value()))
+            .expireAfter(new Expiry<StoreKey, StoreEntry>() {
+                @Override
+                public long expireAfterCreate(StoreKey key, StoreEntry entry, long currentTime) {
+                    return entry.timeToLive().toNanos();
+                }
+
+                @Override
+                public long expireAfterUpdate(StoreKey key, StoreEntry entry, long currentTime,
+                                              long currentDuration) {
+                    return entry.timeToLive().toNanos();
+                }
+
+                @Override
+                public long expireAfterRead(StoreKey key, StoreEntry entry, long currentTime,
+                                            long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .<StoreKey, StoreEntry>evictionListener((key, entry, cause) -> {
+                if (key != null) {
+                    tagIndex(key.cacheName()).remove(key.key());
+                }
+            })
+            .build();
+    }
+
+    @Override
+    public Object get(String cacheName, Object key) {
+        StoreEntry entry = entries.getIfPresent(new StoreKey(cacheName, key));
+        return entry != null ? entry.value() : null;
+    }
+
+    @Override
+    public void put(String cacheName, Object key, Object value, Duration timeToLive, Collection<String> tags) {
+        entries.put(new StoreKey(cacheName, key), new StoreEntry(value, timeToLive));
+        tagIndex(cacheName).add(key, tags);
+    }
+
+    @Override
+    public void evict(String cacheName, Object key) {
+        tagIndex(cacheName).remove(key);
+        entries.invalidate(new StoreKey(cacheName, key));
+    }
+
+    @Override
+    public Set<Object> evictTagged(String cacheName, Collection<String> tags) {
+        Set<Object> keys = tagIndex(cacheName).removeTagged(tags);
+        keys.forEach(key -> entries.invalidate(new StoreKey(cacheName, key)));
+        return keys;
+    }
+
+    @Override
+    public void clear(String cacheName) {
+        tagIndex(cacheName).clear();
+        entries.asMap().keySet().removeIf(key -> key.cacheName().equals(cacheName));
+    }
+
+    private CacheTagIndex tagIndex(String cacheName) {
+        return tagIndexes.computeIfAbsent(cacheName, name -> new CacheTagIndex());
+    }
+
+    private record StoreKey(String cacheName, Object key) {}
+
+    private record StoreEntry(Object value, Duration timeToLive) {}
+}
@@ -0,0 +1,69 @@
+package com.example.demo.cache;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * Second-level cache tier shared by every node of the application.
+ * Values are stored exactly as handed over by {@link TwoLevelCache}, including the
+ * {@link org.springframework.cache.support.NullValue} marker for cached nulls.
+ */
+public interface SharedCacheStore {
+
+    /**
+     * Looks up a value.
+     *
+     * @param cacheName the cache name
+     * @param key the entry key
+     * @return the stored value, or null if absent or expired
+     */
+    Object get(String cacheName, Object key);
+
+    /**
+     * Stores a value, replacing any existing one.
+     *
+     * @param cacheName the cache name
+     * @param key the entry key
+     * @param value the value to store
+     * @param timeToLive how long the entry stays valid
+     */
+    default void put(String cacheName, Object key, Object value, Duration timeToLive) {
+        put(cacheName, key, value, timeToLive, Set.of());
+    }
+
+    /**
+     * Stores a value, replacing any existing one, and indexes it under the given tags.
+     *
+     * @param cacheName the cache name
+     * @param key the entry key
+     * @param value the value to store
+     * @param timeToLive how long the entry stays valid
+     * @param tags the tags of the entry
+     */
+    void put(String cacheName, Object key, Object value, Duration timeToLive, Collection<String> tags);
+
+    /**
+     * Removes a single entry.
+     *
+     * @param cacheName the cache name
+     * @param key the entry key
+     */
+    void evict(String cacheName, Object key);
+
+    /**
+     * Removes every entry carrying at least one of the given tags.
+     *
+     * @param cacheName the cache name
+     * @param tags the tags to look for
+     * @return the keys of the removed entries
+     */
+    Set<Object> evictTagged(String cacheName, Collection<String> tags);
+
+    /**
+     * Removes every entry of a cache.
+     *
+     * @param cacheName the cache name
+     */
+    void clear(String cacheName);
+}
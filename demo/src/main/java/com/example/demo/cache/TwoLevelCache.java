@@ -0,0 +1,220 @@
+package com.example.demo.cache;
+
+import com.example.demo.cache.CacheInvalidationBus.CacheInvalidation;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.LongAdder;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+
+/**
+ * Near cache combining a per-node Caffeine tier (L1) with a {@link SharedCacheStore} (L2).
+ * Reads are served from L1 when possible and fall back to L2 before invoking the loader.
+ * Writes go to both tiers and are broadcast over the {@link CacheInvalidationBus} so that
+ * other nodes drop their L1 copy and pick up the new value from L2 on the next read.
+ * Entries are tagged by a {@link CacheTagger} in both tiers so that a write can evict only the
+ * entries that depend on what it changed.
+ */
+public class TwoLevelCache extends AbstractValueAdaptingCache {
+
+    private final String name;
+    private final Cache<Object, Object> localCache;
+    private final SharedCacheStore sharedStore;
+    private final Duration sharedTimeToLive;
+    private final CacheInvalidationBus invalidationBus;
+    private final String nodeId;
+    private final CacheTagger tagger;
+    private final CacheTagIndex localTags = new CacheTagIndex();
+    private final LongAdder sharedHits = new LongAdder();
+    private final LongAdder sharedMisses = new LongAdder();
+
+    /**
+     * Creates a two-level cache.
+     *
+     * @param name the cache name
+     * @param localCacheBuilder builder of the per-node tier
+     * @param sharedStore the shared tier
+     * @param sharedTimeToLive how long entries stay in the shared tier
+     * @param invalidationBus the channel used to invalidate other nodes
+     * @param nodeId identifier of this node on the invalidation channel
+     * @param tagger derives the tags of an entry
+     */
+    public TwoLevelCache(String name, Caffeine<Object, Object> localCacheBuilder, SharedCacheStore sharedStore,
+                         Duration sharedTimeToLive, CacheInvalidationBus invalidationBus, String nodeId,
+                         CacheTagger tagger) {
+        super(true);
+        this.name = name;
+        this.localCache = localCacheBuilder
+            .evictionListener((key, value, cause) -> localTags.remove(key))
+            .build();
+        this.sharedStore = sharedStore;
+        this.sharedTimeToLive = sharedTimeToLive;
+        this.invalidationBus = invalidationBus;
+        this.nodeId = nodeId;
+        this.tagger = tagger;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Cache<Object, Object> getNativeCache() {
+        return localCache;
+    }
+
+    @Override
+    protected Object lookup(Object key) {
+        Object value = localCache.getIfPresent(key);
+        if (value != null) {
+            return value;
+        }
+        value = readShared(key);
+        if (value != null) {
+            putLocal(key, value, tags(key, value));
+        }
+        return value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        Object storeValue = localCache.get(key, k -> {
+            Object shared = readShared(k);
+            if (shared != null) {
+                localTags.add(k, tags(k, shared));
+                return shared;
+            }
+            Object value = toStoreValue(load(k, valueLoader));
+            Set<String> tags = tags(k, value);
+            localTags.add(k, tags);
+            sharedStore.put(name, k, value, sharedTimeToLive, tags);
+            return value;
+        });
+        return (T) fromStoreValue(storeValue);
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        Object storeValue = toStoreValue(value);
+        Set<String> tags = tags(key, storeValue);
+        sharedStore.put(name, key, storeValue, sharedTimeToLive, tags);
+        putLocal(key, storeValue, tags);
+        invalidationBus.publish(CacheInvalidation.ofKey(nodeId, name, key));
+    }
+
+    @Override
+    public void evict(Object key) {
+        sharedStore.evict(name, key);
+        invalidateLocal(key);
+        invalidationBus.publish(CacheInvalidation.ofKey(nodeId, name, key));
+    }
+
+    /**
+     * Evicts every entry carrying at least one of the given tags, on every node.
+     *
+     * @param tags the tags of the entries to evict
+     */
+    public void evictTagged(Collection<String> tags) {
+        if (tags.isEmpty()) {
+            return;
+        }
+        sharedStore.evictTagged(name, tags).forEach(this::invalidateLocal);
+        invalidateLocalTagged(tags);
+        invalidationBus.publish(CacheInvalidation.ofTags(nodeId, name, tags));
+    }
+
+    @Override
+    public void clear() {
+        sharedStore.clear(name);
+        invalidateLocalAll();
+        invalidationBus.publish(CacheInvalidation.ofAll(nodeId, name));
+    }
+
+    /**
+     * Applies an invalidation broadcast by another node to the local tier.
+     *
+     * @param invalidation the received invalidation
+     */
+    void onInvalidation(CacheInvalidation invalidation) {
+        if (nodeId.equals(invalidation.origin())) {
+            return;
+        }
+        if (invalidation.key() != null) {
+            invalidateLocal(invalidation.key());
+        } else if (invalidation.tags() != null) {
+            invalidateLocalTagged(invalidation.tags());
+        } else {
+            invalidateLocalAll();
+        }
+    }
+
+    /**
+     * Gets the number of local misses that were served from the shared tier.
+     *
+     * @return the shared tier hit count
+     */
+    public long getSharedHitCount() {
+        return sharedHits.sum();
+    }
+
+    /**
+     * Gets the number of local misses that the shared tier could not serve either.
+     *
+     * @return the shared tier miss count
+     */
+    public long getSharedMissCount() {
+        return sharedMisses.sum();
+    }
+
+    /**
+     * Stores a value in the local tier, indexing its tags inside the atomic compute of the key so
+     * that a concurrent invalidation of the key waits until it is indexed.
+     */
+    private void putLocal(Object key, Object storeValue, Set<String> tags) {
+        localCache.asMap().compute(key, (k, previous) -> {
+            localTags.add(k, tags);
+            return storeValue;
+        });
+    }
+
+    private void invalidateLocal(Object key) {
+        localTags.remove(key);
+        localCache.invalidate(key);
+    }
+
+    private void invalidateLocalTagged(Collection<String> tags) {
+        localCache.invalidateAll(localTags.removeTagged(tags));
+    }
+
+    private void invalidateLocalAll() {
+        localTags.clear();
+        localCache.invalidateAll();
+    }
+
+    private Set<String> tags(Object key, Object storeValue) {
+        return tagger.tags(key, fromStoreValue(storeValue));
+    }
+
+    private Object readShared(Object key) {
+        Object value = sharedStore.get(name, key);
+        if (value != null) {
+            sharedHits.increment();
+        } else {
+            sharedMisses.increment();
+        }
+        return value;
+    }
+
+    private static <T> T load(Object key, Callable<T> valueLoader) {
+        try {
+            return valueLoader.call();
+        } catch (Exception e) {
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+    }
+}
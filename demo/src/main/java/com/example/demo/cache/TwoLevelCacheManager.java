@@ -0,0 +1,89 @@
+package com.example.demo.cache;
+
+import com.example.demo.cache.CacheInvalidationBus.CacheInvalidation;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.AbstractCacheManager;
+
+/**
+ * Cache manager handing out {@link TwoLevelCache}s that share one {@link SharedCacheStore}
+ * and one {@link CacheInvalidationBus}.
+ */
+public class TwoLevelCacheManager extends AbstractCacheManager {
+
+    private final Collection<String> initialCacheNames;
+    private final Function<String, Caffeine<Object, Object>> localCacheBuilder;
+    private final SharedCacheStore sharedStore;
+    private final Function<String, Duration> sharedTimeToLive;
+    private final CacheInvalidationBus invalidationBus;
+    private final String nodeId = UUID.randomUUID().toString();
+    private Map<String, CacheTagger> cacheTaggers = Map.of();
+
+    /**
+     * Creates a two-level cache manager and subscribes it to the invalidation channel.
+     *
+     * @param initialCacheNames caches created at startup
+     * @param localCacheBuilder builder of the per-node tier for a given cache name
+     * @param sharedStore the shared tier
+     * @param sharedTimeToLive how long entries stay in the shared tier, for a given cache name
+     * @param invalidationBus the channel used to invalidate other nodes
+     */
+    public TwoLevelCacheManager(Collection<String> initialCacheNames,
+                                Function<String, Caffeine<Object, Object>> localCacheBuilder,
+                                SharedCacheStore sharedStore, Function<String, Duration> sharedTimeToLive,
+                                CacheInvalidationBus invalidationBus) {
+        this.initialCacheNames = List.copyOf(initialCacheNames);
+        this.localCacheBuilder = localCacheBuilder;
+        this.sharedStore = sharedStore;
+        this.sharedTimeToLive = sharedTimeToLive;
+        this.invalidationBus = invalidationBus;
+        invalidationBus.subscribe(this::onInvalidation);
+    }
+
+    /**
+     * Gets the identifier of this node on the invalidation channel.
+     *
+     * @return the node identifier
+     */
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Sets the taggers of the caches whose entries are evicted by tag.
+     * Must be called before the caches are initialized; other caches are not tagged.
+     *
+     * @param cacheTaggers taggers by cache name
+     */
+    public void setCacheTaggers(Map<String, CacheTagger> cacheTaggers) {
+        this.cacheTaggers = Map.copyOf(cacheTaggers);
+    }
+
+    @Override
+    protected Collection<? extends Cache> loadCaches() {
+        return initialCacheNames.stream().map(this::createCache).toList();
+    }
+
+    @Override
+    protected Cache getMissingCache(String name) {
+        return createCache(name);
+    }
+
+    private TwoLevelCache createCache(String name) {
+        return new TwoLevelCache(name, localCacheBuilder.apply(name), sharedStore, sharedTimeToLive.apply(name),
+            invalidationBus, nodeId, cacheTaggers.getOrDefault(name, CacheTagger.NONE));
+    }
+
+    private void onInvalidation(CacheInvalidation invalidation) {
+        Cache cache = lookupCache(invalidation.cacheName());
+        if (cache instanceof TwoLevelCache twoLevelCache) {
+            twoLevelCache.onInvalidation(invalidation);
+        }
+    }
+}
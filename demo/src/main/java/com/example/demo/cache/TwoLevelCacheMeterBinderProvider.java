@@ -0,0 +1,33 @@
+package com.example.demo.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.boot.actuate.metrics.cache.CacheMeterBinderProvider;
+
+/**
+ * Exposes the standard Caffeine cache meters for the local tier of a {@link TwoLevelCache}
+ * plus {@code cache.shared.gets} counters for lookups that fell through to the shared tier.
+ */
+public class TwoLevelCacheMeterBinderProvider implements CacheMeterBinderProvider<TwoLevelCache> {
+
+    @Override
+    public MeterBinder getMeterBinder(TwoLevelCache cache, Iterable<Tag> tags) {
+        return registry -> {
+            new CaffeineCacheMetrics<>(cache.getNativeCache(), cache.getName(), tags).bindTo(registry);
+            Tags sharedTags = Tags.concat(tags, "cache", cache.getName());
+            FunctionCounter.builder("cache.shared.gets", cache, TwoLevelCache::getSharedHitCount)
+                .tags(sharedTags)
+                .tag("result", "hit")
+                .description("Local cache misses served by the shared cache tier")
+                .register(registry);
+            FunctionCounter.builder("cache.shared.gets", cache, TwoLevelCache::getSharedMissCount)
+                .tags(sharedTags)
+                .tag("result", "miss")
+                .description("Local cache misses not present in the shared cache tier either")
+                .register(registry);
+        };
+    }
+}
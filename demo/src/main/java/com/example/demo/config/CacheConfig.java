@@ -1,17 +1,113 @@
 package com.example.demo.config;
 
+import com.example.demo.UserCacheInvalidator;
+import com.example.demo.UserService;
+import com.example.demo.cache.CacheEntryWeigher;
+import com.example.demo.cache.CacheInvalidationBus;
+import com.example.demo.cache.LocalCacheInvalidationBus;
+import com.example.demo.cache.LocalSharedCacheStore;
+import com.example.demo.cache.SharedCacheStore;
+import com.example.demo.cache.TwoLevelCacheManager;
+import com.example.demo.cache.TwoLevelCacheMeterBinderProvider;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.util.Map;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
-import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 @Configuration
 @EnableCaching
+@EnableConfigurationProperties(CachingProperties.class)
 public class CacheConfig {
 
+    /**
+     * Creates the application cache manager.
+     * Each configured cache is registered up front with its own weight and expiry bounds so that
+     * the actuator binds hit, miss, eviction and load metrics for it at startup; caches that are
+     * not configured are created on demand with the default bounds. When the shared tier is
+     * enabled every cache is a near cache in front of the shared store and the {@code users}
+     * cache is tagged for fine-grained invalidation, otherwise caches are local to this node.
+     *
+     * @param properties the cache tuning properties
+     * @param sharedCacheStore the shared second-level store
+     * @param cacheInvalidationBus the channel used to invalidate other nodes
+     * @return the configured cache manager
+     */
     @Bean
-    public CacheManager cacheManager() {
-        return new ConcurrentMapCacheManager();
+    public CacheManager cacheManager(CachingProperties properties, SharedCacheStore sharedCacheStore,
+                                     CacheInvalidationBus cacheInvalidationBus) {
+        if (properties.getShared().isEnabled()) {
+            TwoLevelCacheManager cacheManager = new TwoLevelCacheManager(
+                properties.getCaches().keySet(),
+                name -> caffeine(properties.resolve(name)),
+                sharedCacheStore,
+                properties::sharedTimeToLive,
+                cacheInvalidationBus);
+            cacheManager.setCacheTaggers(Map.of(UserService.USERS_CACHE, UserCacheInvalidator::usersCacheTags));
+            return cacheManager;
+        }
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        cacheManager.setCaffeine(caffeine(properties.getDefaults()));
+        properties.getCaches().keySet().forEach(name ->
+            cacheManager.registerCustomCache(name, caffeine(properties.resolve(name)).build()));
+        return cacheManager;
     }
-} 
\ No newline at end of file
+
+    /**
+     * Creates the shared second-level cache store.
+     * The embedded implementation keeps entries in this JVM; a networked store is plugged in by
+     * replacing this bean.
+     *
+     * @param properties the cache tuning properties
+     * @return the shared cache store
+     */
+    @Bean
+    public SharedCacheStore sharedCacheStore(CachingProperties properties) {
+        return new LocalSharedCacheStore(properties.getShared().getMaxWeight().toBytes());
+    }
+
+    /**
+     * Creates the channel that propagates cache invalidations between nodes.
+     *
+     * @return the cache invalidation bus
+     */
+    @Bean
+    public CacheInvalidationBus cacheInvalidationBus() {
+        return new LocalCacheInvalidationBus();
+    }
+
+    /**
+     * Creates the meter binder provider for two-level caches.
+     *
+     * @return the meter binder provider
+     */
+    @Bean
+    public TwoLevelCacheMeterBinderProvider twoLevelCacheMeterBinderProvider() {
+        return new TwoLevelCacheMeterBinderProvider();
+    }
+
+    /**
+     * Creates a cache builder for the given bounds.
+     * Eviction uses Caffeine's W-TinyLFU policy, which admits a new entry only when it is
+     * estimated to be accessed more often than the victim it would replace.
+     *
+     * @param spec the cache bounds
+     * @return the configured cache builder
+     */
+    private static Caffeine<Object, Object> caffeine(CachingProperties.Spec spec) {
+        Caffeine<Object, Object> builder = Caffeine.newBuilder()
+            .maximumWeight(spec.getMaxWeight().toBytes())
+            .weigher(new CacheEntryWeigher())
+            .recordStats();
+        if (spec.getTimeToLive() != null) {
+            builder.expireAfterWrite(spec.getTimeToLive());
+        }
+        if (spec.getTimeToIdle() != null) {
+            builder.expireAfterAccess(spec.getTimeToIdle());
+        }
+        return builder;
+    }
+}
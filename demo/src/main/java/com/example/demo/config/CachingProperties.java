@@ -0,0 +1,99 @@
+package com.example.demo.config;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Tuning for the cache engine, bound from {@code app.cache.*}.
+ * Every cache is bounded by the estimated size of its entries in bytes rather than by entry count.
+ */
+@ConfigurationProperties(prefix = "app.cache")
+public class CachingProperties {
+
+    private Spec defaults = new Spec(DataSize.ofMegabytes(16), Duration.ofMinutes(10), null);
+    private Map<String, Spec> caches = new LinkedHashMap<>();
+    private Shared shared = new Shared();
+
+    public Spec getDefaults() { return defaults; }
+    public void setDefaults(Spec defaults) { this.defaults = defaults; }
+    public Map<String, Spec> getCaches() { return caches; }
+    public void setCaches(Map<String, Spec> caches) { this.caches = caches; }
+    public Shared getShared() { return shared; }
+    public void setShared(Shared shared) { this.shared = shared; }
+
+    /**
+     * Resolves the effective settings of a cache, falling back to the defaults for unset values.
+     *
+     * @param cacheName the cache name
+     * @return the effective settings
+     */
+    public Spec resolve(String cacheName) {
+        Spec spec = caches.get(cacheName);
+        if (spec == null) {
+            return defaults;
+        }
+        return new Spec(
+            spec.getMaxWeight() != null ? spec.getMaxWeight() : defaults.getMaxWeight(),
+            spec.getTimeToLive() != null ? spec.getTimeToLive() : defaults.getTimeToLive(),
+            spec.getTimeToIdle() != null ? spec.getTimeToIdle() : defaults.getTimeToIdle());
+    }
+
+    /**
+     * Resolves how long entries of a cache stay in the shared tier: the cache's own time to live,
+     * capped by the shared tier's, so that the shared tier never serves an entry the cache would
+     * already have expired.
+     *
+     * @param cacheName the cache name
+     * @return the shared tier time to live of the cache
+     */
+    public Duration sharedTimeToLive(String cacheName) {
+        Duration timeToLive = resolve(cacheName).getTimeToLive();
+        if (timeToLive == null || timeToLive.compareTo(shared.getTimeToLive()) > 0) {
+            return shared.getTimeToLive();
+        }
+        return timeToLive;
+    }
+
+    /**
+     * Bounds of a single cache.
+     */
+    public static class Spec {
+        private DataSize maxWeight;
+        private Duration timeToLive;
+        private Duration timeToIdle;
+
+        public Spec() {}
+
+        public Spec(DataSize maxWeight, Duration timeToLive, Duration timeToIdle) {
+            this.maxWeight = maxWeight;
+            this.timeToLive = timeToLive;
+            this.timeToIdle = timeToIdle;
+        }
+
+        public DataSize getMaxWeight() { return maxWeight; }
+        public void setMaxWeight(DataSize maxWeight) { this.maxWeight = maxWeight; }
+        public Duration getTimeToLive() { return timeToLive; }
+        public void setTimeToLive(Duration timeToLive) { this.timeToLive = timeToLive; }
+        public Duration getTimeToIdle() { return timeToIdle; }
+        public void setTimeToIdle(Duration timeToIdle) { this.timeToIdle = timeToIdle; }
+    }
+
+    /**
+     * Settings of the shared second-level tier behind the per-node caches.
+     */
+    public static class Shared {
+        private boolean enabled = true;
+        private Duration timeToLive = Duration.ofMinutes(10);
+        private DataSize maxWeight = DataSize.ofMegabytes(128);
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+        public Duration getTimeToLive() { return timeToLive; }
+        public void setTimeToLive(Duration timeToLive) { this.timeToLive = timeToLive; }
+        public DataSize getMaxWeight() { return maxWeight; }
+        public void setMaxWeight(DataSize maxWeight) { this.maxWeight = maxWeight; }
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.demo.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Binds the tuning of the Mongo log write-behind buffers and the retention of the log collections.
+ */
+@Configuration
+@EnableConfigurationProperties({WriteBehindProperties.class, RetentionProperties.class})
+public class LoggingConfig {
+}
@@ -0,0 +1,45 @@
+package com.example.demo.config;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Retention of the Mongo log collections, bound from {@code app.logging.retention.*}.
+ * Activities and analytics events are best-effort data and simply expire through TTL indexes.
+ * Audit logs are moved into monthly, compressed archive collections once they are older than
+ * {@code audit}, and the archive is dropped a month at a time after {@code audit-archive}.
+ * A zero or missing duration keeps the data forever.
+ */
+@ConfigurationProperties(prefix = "app.logging.retention")
+public class RetentionProperties {
+
+    private Duration activity = Duration.ofDays(90);
+    private Duration analytics = Duration.ofDays(180);
+    private Duration audit = Duration.ofDays(30);
+    private Duration auditArchive;
+    private int archiveBatchSize = 1000;
+    private String archiveCompressor = "zstd";
+
+    public Duration getActivity() { return activity; }
+    public void setActivity(Duration activity) { this.activity = activity; }
+    public Duration getAnalytics() { return analytics; }
+    public void setAnalytics(Duration analytics) { this.analytics = analytics; }
+    public Duration getAudit() { return audit; }
+    public void setAudit(Duration audit) { this.audit = audit; }
+    public Duration getAuditArchive() { return auditArchive; }
+    public void setAuditArchive(Duration auditArchive) { this.auditArchive = auditArchive; }
+    public int getArchiveBatchSize() { return archiveBatchSize; }
+    public void setArchiveBatchSize(int archiveBatchSize) { this.archiveBatchSize = archiveBatchSize; }
+    public String getArchiveCompressor() { return archiveCompressor; }
+    public void setArchiveCompressor(String archiveCompressor) { this.archiveCompressor = archiveCompressor; }
+
+    /**
+     * Whether a retention period is set.
+     *
+     * @param retention the retention period
+     * @return true unless the period is missing or zero
+     */
+    public static boolean isLimited(Duration retention) {
+        return retention != null && !retention.isZero() && !retention.isNegative();
+    }
+}
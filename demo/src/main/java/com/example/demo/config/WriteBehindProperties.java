@@ -0,0 +1,53 @@
+package com.example.demo.config;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Tuning for the write-behind buffers of the Mongo log collections, bound from
+ * {@code app.logging.write-behind.*}.
+ * Each stream ({@code activity}, {@code analytics}, {@code audit}) has its own bounded buffer;
+ * its durability decides whether callers wait for their event to be written.
+ */
+@ConfigurationProperties(prefix = "app.logging.write-behind")
+public class WriteBehindProperties {
+
+    private int capacity = 10_000;
+    private int batchSize = 500;
+    private Duration maxDelay = Duration.ofMillis(100);
+    private Duration syncTimeout = Duration.ofSeconds(5);
+    private Map<String, Durability> durability = new LinkedHashMap<>(Map.of("audit", Durability.SYNC));
+
+    public int getCapacity() { return capacity; }
+    public void setCapacity(int capacity) { this.capacity = capacity; }
+    public int getBatchSize() { return batchSize; }
+    public void setBatchSize(int batchSize) { this.batchSize = batchSize; }
+    public Duration getMaxDelay() { return maxDelay; }
+    public void setMaxDelay(Duration maxDelay) { this.maxDelay = maxDelay; }
+    public Duration getSyncTimeout() { return syncTimeout; }
+    public void setSyncTimeout(Duration syncTimeout) { this.syncTimeout = syncTimeout; }
+    public Map<String, Durability> getDurability() { return durability; }
+    public void setDurability(Map<String, Durability> durability) { this.durability = durability; }
+
+    /**
+     * Resolves the durability of a stream, defaulting to best effort.
+     *
+     * @param stream the stream name
+     * @return the durability
+     */
+    public Durability durabilityOf(String stream) {
+        return durability.getOrDefault(stream, Durability.BEST_EFFORT);
+    }
+
+    /**
+     * How strongly a buffered event is persisted before the caller continues.
+     */
+    public enum Durability {
+        /** The caller returns immediately; events are dropped when the buffer is full or a write fails. */
+        BEST_EFFORT,
+        /** The caller waits until the batch holding its event has been written. */
+        SYNC
+    }
+}
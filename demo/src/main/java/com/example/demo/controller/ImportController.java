@@ -1,9 +1,14 @@
 package com.example.demo.controller;
 
-import com.example.demo.service.ImportService;
+import com.example.demo.service.ImportJob;
+import com.example.demo.service.ImportJobService;
+import com.example.demo.service.ImportJobStatus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -11,20 +16,29 @@ import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.net.URI;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api/v1/import")
 public class ImportController {
     private static final Logger logger = LoggerFactory.getLogger(ImportController.class);
-    private final ImportService importService;
+    private static final int MAX_ERROR_PAGE_SIZE = 500;
+    private final ImportJobService importJobService;
 
-    public ImportController(ImportService importService) {
-        this.importService = importService;
+    public ImportController(ImportJobService importJobService) {
+        this.importJobService = importJobService;
     }
 
+    /**
+     * Starts a background import of users from a CSV file.
+     *
+     * @param file the CSV file
+     * @return the queued job, with its location in the Location header
+     */
     @PostMapping("/users")
-    public ResponseEntity<List<String>> importUsers(@RequestParam("file") MultipartFile file) {
+    public ResponseEntity<?> importUsers(@RequestParam("file") MultipartFile file) {
         if (file.isEmpty()) {
             logger.warn("Empty file uploaded for user import");
             return ResponseEntity.badRequest().body(List.of("Please select a file to upload"));
@@ -32,18 +46,59 @@ public class ImportController {
 
         try {
             logger.info("Processing user import from file: {}", file.getOriginalFilename());
-            List<String> results = importService.importUsersFromCsv(file);
-            
-            if (results.isEmpty()) {
-                logger.info("No users imported from file: {}", file.getOriginalFilename());
-                return ResponseEntity.ok(List.of("No users were imported"));
-            }
-            
-            logger.info("Successfully processed import with {} results", results.size());
-            return ResponseEntity.ok(results);
+            ImportJob job = importJobService.submit(file);
+            return ResponseEntity.accepted()
+                .location(URI.create("/api/v1/import/jobs/" + job.getId()))
+                .body(job.status(0, 0));
+        } catch (RejectedExecutionException e) {
+            logger.warn("Import queue is full, rejecting file: {}", file.getOriginalFilename());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body(List.of("Too many imports in progress, please retry later"));
         } catch (IOException e) {
             logger.error("Failed to process import file: {}", e.getMessage(), e);
             return ResponseEntity.badRequest().body(List.of("Failed to process file: " + e.getMessage()));
         }
     }
-} 
\ No newline at end of file
+
+    /**
+     * Resumes a failed import job after its last committed record.
+     *
+     * @param id the job id
+     * @return the queued job, 404 if the job is unknown or has expired, or 409 if it cannot be resumed
+     */
+    @PostMapping("/jobs/{id}/resume")
+    public ResponseEntity<?> resumeImportJob(@PathVariable String id) {
+        try {
+            return importJobService.resume(id)
+                .<ResponseEntity<?>>map(job -> ResponseEntity.accepted().body(job.status(0, 0)))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+        } catch (IllegalStateException e) {
+            logger.warn("Cannot resume import job {}: {}", id, e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(List.of(e.getMessage()));
+        } catch (RejectedExecutionException e) {
+            logger.warn("Import queue is full, not resuming job {}", id);
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body(List.of("Too many imports in progress, please retry later"));
+        }
+    }
+
+    /**
+     * Gets the progress of an import job with one page of its errors.
+     *
+     * @param id the job id
+     * @param errorPage the zero-based page of errors
+     * @param errorSize the number of errors per page
+     * @return the job status, or 404 if the job is unknown or has expired
+     */
+    @GetMapping("/jobs/{id}")
+    public ResponseEntity<ImportJobStatus> getImportJob(
+            @PathVariable String id,
+            @RequestParam(defaultValue = "0") int errorPage,
+            @RequestParam(defaultValue = "50") int errorSize) {
+        int page = Math.max(errorPage, 0);
+        int size = Math.min(Math.max(errorSize, 0), MAX_ERROR_PAGE_SIZE);
+        return importJobService.getJob(id)
+            .map(job -> ResponseEntity.ok(job.status(page, size)))
+            .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+}
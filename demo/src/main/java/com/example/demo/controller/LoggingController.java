@@ -1,17 +1,38 @@
 package com.example.demo.controller;
 
+import com.example.demo.CursorPage;
 import com.example.demo.model.mongo.*;
+import com.example.demo.service.AnalyticsRollupSeries;
+import com.example.demo.service.AnalyticsRollupService;
+import com.example.demo.service.BulkLogResult;
+import com.example.demo.service.LogRetentionService;
 import com.example.demo.service.MongoLoggingService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotBlank;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 @RestController
 @RequestMapping("/api/logs")
@@ -19,10 +40,23 @@ import java.util.Map;
 public class LoggingController {
 
     private static final Logger logger = LoggerFactory.getLogger(LoggingController.class);
+    private static final String APPLICATION_NDJSON = "application/x-ndjson";
+    private static final String DEFAULT_PAGE_SIZE = "100";
+    private static final int STREAM_FLUSH_INTERVAL = 1000;
     private final MongoLoggingService mongoLoggingService;
+    private final AnalyticsRollupService analyticsRollupService;
+    private final LogRetentionService logRetentionService;
+    private final ObjectMapper objectMapper;
+    private final int maxBatchSize;
 
-    public LoggingController(MongoLoggingService mongoLoggingService) {
+    public LoggingController(MongoLoggingService mongoLoggingService, AnalyticsRollupService analyticsRollupService,
+                             LogRetentionService logRetentionService, ObjectMapper objectMapper,
+                             @Value("${app.logging.bulk.max-events:10000}") int maxBatchSize) {
         this.mongoLoggingService = mongoLoggingService;
+        this.analyticsRollupService = analyticsRollupService;
+        this.logRetentionService = logRetentionService;
+        this.objectMapper = objectMapper;
+        this.maxBatchSize = maxBatchSize;
     }
 
     /**
@@ -54,6 +88,36 @@ public class LoggingController {
         return ResponseEntity.ok(activity);
     }
 
+    /**
+     * Logs a batch of user activities sent as a JSON array.
+     *
+     * @param request HTTP request carrying the activities, with IP and user agent information
+     * @return ResponseEntity containing the outcome of the batch
+     * @throws IOException if the body cannot be read
+     */
+    @PostMapping(value = "/activity/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<BulkLogResult> logUserActivities(HttpServletRequest request) throws IOException {
+        List<UserActivity> activities = readJsonArray(request, UserActivity.class);
+        logger.debug("Logging batch of {} user activities", activities.size());
+        return toResponse("user activities", mongoLoggingService.logUserActivities(
+            activities, request.getRemoteAddr(), request.getHeader("User-Agent")));
+    }
+
+    /**
+     * Logs a batch of user activities sent as NDJSON, one activity per line.
+     *
+     * @param request HTTP request carrying the activities
+     * @return ResponseEntity containing the outcome of the batch
+     * @throws IOException if the body cannot be read
+     */
+    @PostMapping(value = "/activity/batch", consumes = APPLICATION_NDJSON)
+    public ResponseEntity<BulkLogResult> logUserActivitiesNdjson(HttpServletRequest request) throws IOException {
+        List<UserActivity> activities = readNdjson(request, UserActivity.class);
+        logger.debug("Logging batch of {} user activities", activities.size());
+        return toResponse("user activities", mongoLoggingService.logUserActivities(
+            activities, request.getRemoteAddr(), request.getHeader("User-Agent")));
+    }
+
     /**
      * Logs analytics events.
      *
@@ -75,6 +139,34 @@ public class LoggingController {
         return ResponseEntity.ok(data);
     }
 
+    /**
+     * Logs a batch of analytics events sent as a JSON array.
+     *
+     * @param request HTTP request carrying the events
+     * @return ResponseEntity containing the outcome of the batch
+     * @throws IOException if the body cannot be read
+     */
+    @PostMapping(value = "/analytics/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<BulkLogResult> logAnalyticsEvents(HttpServletRequest request) throws IOException {
+        List<AnalyticsData> events = readJsonArray(request, AnalyticsData.class);
+        logger.debug("Logging batch of {} analytics events", events.size());
+        return toResponse("analytics events", mongoLoggingService.logAnalyticsEvents(events));
+    }
+
+    /**
+     * Logs a batch of analytics events sent as NDJSON, one event per line.
+     *
+     * @param request HTTP request carrying the events
+     * @return ResponseEntity containing the outcome of the batch
+     * @throws IOException if the body cannot be read
+     */
+    @PostMapping(value = "/analytics/batch", consumes = APPLICATION_NDJSON)
+    public ResponseEntity<BulkLogResult> logAnalyticsEventsNdjson(HttpServletRequest request) throws IOException {
+        List<AnalyticsData> events = readNdjson(request, AnalyticsData.class);
+        logger.debug("Logging batch of {} analytics events", events.size());
+        return toResponse("analytics events", mongoLoggingService.logAnalyticsEvents(events));
+    }
+
     /**
      * Creates a new user session.
      *
@@ -168,41 +260,357 @@ public class LoggingController {
     }
 
     /**
-     * Retrieves user activities for a specific user.
+     * Creates a batch of audit log entries sent as a JSON array.
+     *
+     * @param request HTTP request carrying the entries, with IP information
+     * @return ResponseEntity containing the outcome of the batch
+     * @throws IOException if the body cannot be read
+     */
+    @PostMapping(value = "/audit/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<BulkLogResult> createAuditLogs(HttpServletRequest request) throws IOException {
+        List<AuditLog> auditLogs = readJsonArray(request, AuditLog.class);
+        logger.debug("Creating batch of {} audit logs", auditLogs.size());
+        return toResponse("audit logs", mongoLoggingService.createAuditLogs(auditLogs, request.getRemoteAddr()));
+    }
+
+    /**
+     * Creates a batch of audit log entries sent as NDJSON, one entry per line.
+     *
+     * @param request HTTP request carrying the entries
+     * @return ResponseEntity containing the outcome of the batch
+     * @throws IOException if the body cannot be read
+     */
+    @PostMapping(value = "/audit/batch", consumes = APPLICATION_NDJSON)
+    public ResponseEntity<BulkLogResult> createAuditLogsNdjson(HttpServletRequest request) throws IOException {
+        List<AuditLog> auditLogs = readNdjson(request, AuditLog.class);
+        logger.debug("Creating batch of {} audit logs", auditLogs.size());
+        return toResponse("audit logs", mongoLoggingService.createAuditLogs(auditLogs, request.getRemoteAddr()));
+    }
+
+    /**
+     * Retrieves user activities for a specific user, newest first.
      *
      * @param userId User identifier
-     * @return ResponseEntity containing a list of UserActivity
+     * @param from Earliest timestamp, inclusive
+     * @param to Latest timestamp, exclusive
+     * @param cursor Cursor returned with the previous slice, or none for the first slice
+     * @param size Maximum number of activities in the slice
+     * @param fields Comma-separated fields to return besides the id, or none for all
+     * @return ResponseEntity containing a slice of UserActivity
      */
     @GetMapping("/activity/user/{userId}")
-    public ResponseEntity<List<UserActivity>> getUserActivities(
-            @NotBlank @PathVariable String userId) {
+    public ResponseEntity<CursorPage<UserActivity>> getUserActivities(
+            @NotBlank @PathVariable String userId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = DEFAULT_PAGE_SIZE) int size,
+            @RequestParam(required = false) String fields) {
         logger.debug("Retrieving activities for user: {}", userId);
-        return ResponseEntity.ok(mongoLoggingService.getUserActivities(userId));
+        return ResponseEntity.ok(mongoLoggingService.scrollUserActivities(userId, from, to, cursor, size, fields));
+    }
+
+    /**
+     * Retrieves the user activities of every user within a time range, newest first.
+     *
+     * @param from Earliest timestamp, inclusive
+     * @param to Latest timestamp, exclusive
+     * @param cursor Cursor returned with the previous slice, or none for the first slice
+     * @param size Maximum number of activities in the slice
+     * @param fields Comma-separated fields to return besides the id, or none for all
+     * @return ResponseEntity containing a slice of UserActivity
+     */
+    @GetMapping("/activity")
+    public ResponseEntity<CursorPage<UserActivity>> getActivities(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = DEFAULT_PAGE_SIZE) int size,
+            @RequestParam(required = false) String fields) {
+        logger.debug("Retrieving activities between {} and {}", from, to);
+        return ResponseEntity.ok(mongoLoggingService.scrollUserActivities(null, from, to, cursor, size, fields));
     }
 
     /**
-     * Retrieves analytics data for a specific event type.
+     * Streams user activities as NDJSON, newest first.
+     *
+     * @param userId User identifier, or none for every user
+     * @param from Earliest timestamp, inclusive
+     * @param to Latest timestamp, exclusive
+     * @param fields Comma-separated fields to return besides the id, or none for all
+     * @return the streamed activities
+     */
+    @GetMapping(value = "/activity/stream", produces = APPLICATION_NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamActivities(
+            @RequestParam(required = false) String userId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(required = false) String fields) {
+        logger.debug("Streaming activities for user: {} between {} and {}", userId, from, to);
+        return toNdjson(mongoLoggingService.streamUserActivities(userId, from, to, fields));
+    }
+
+    /**
+     * Retrieves analytics data for a specific event type, newest first.
      *
      * @param eventType Type of analytics event
-     * @return ResponseEntity containing a list of AnalyticsData
+     * @param from Earliest timestamp, inclusive
+     * @param to Latest timestamp, exclusive
+     * @param cursor Cursor returned with the previous slice, or none for the first slice
+     * @param size Maximum number of events in the slice
+     * @param fields Comma-separated fields to return besides the id, or none for all
+     * @return ResponseEntity containing a slice of AnalyticsData
      */
     @GetMapping("/analytics/type/{eventType}")
-    public ResponseEntity<List<AnalyticsData>> getAnalyticsByType(
-            @NotBlank @PathVariable String eventType) {
+    public ResponseEntity<CursorPage<AnalyticsData>> getAnalyticsByType(
+            @NotBlank @PathVariable String eventType,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = DEFAULT_PAGE_SIZE) int size,
+            @RequestParam(required = false) String fields) {
         logger.debug("Retrieving analytics for event type: {}", eventType);
-        return ResponseEntity.ok(mongoLoggingService.getAnalyticsByEventType(eventType));
+        return ResponseEntity.ok(mongoLoggingService.scrollAnalytics(eventType, from, to, cursor, size, fields));
+    }
+
+    /**
+     * Retrieves analytics data of every event type within a time range, newest first.
+     *
+     * @param from Earliest timestamp, inclusive
+     * @param to Latest timestamp, exclusive
+     * @param cursor Cursor returned with the previous slice, or none for the first slice
+     * @param size Maximum number of events in the slice
+     * @param fields Comma-separated fields to return besides the id, or none for all
+     * @return ResponseEntity containing a slice of AnalyticsData
+     */
+    @GetMapping("/analytics")
+    public ResponseEntity<CursorPage<AnalyticsData>> getAnalytics(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = DEFAULT_PAGE_SIZE) int size,
+            @RequestParam(required = false) String fields) {
+        logger.debug("Retrieving analytics between {} and {}", from, to);
+        return ResponseEntity.ok(mongoLoggingService.scrollAnalytics(null, from, to, cursor, size, fields));
+    }
+
+    /**
+     * Streams analytics data as NDJSON, newest first.
+     *
+     * @param eventType Type of analytics event, or none for every type
+     * @param from Earliest timestamp, inclusive
+     * @param to Latest timestamp, exclusive
+     * @param fields Comma-separated fields to return besides the id, or none for all
+     * @return the streamed events
+     */
+    @GetMapping(value = "/analytics/stream", produces = APPLICATION_NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamAnalytics(
+            @RequestParam(required = false) String eventType,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(required = false) String fields) {
+        logger.debug("Streaming analytics for event type: {} between {} and {}", eventType, from, to);
+        return toNdjson(mongoLoggingService.streamAnalytics(eventType, from, to, fields));
+    }
+
+    /**
+     * Retrieves analytics event counts per minute, hour or day from the pre-aggregated rollups.
+     *
+     * @param granularity Bucket width: MINUTE, HOUR or DAY
+     * @param eventType Type of analytics event, or none for every type
+     * @param from Start of the first bucket, inclusive
+     * @param to End of the range, exclusive
+     * @return ResponseEntity containing the non-empty buckets in time order
+     */
+    @GetMapping("/analytics/rollups")
+    public ResponseEntity<AnalyticsRollupSeries> getAnalyticsRollups(
+            @RequestParam AnalyticsRollup.Granularity granularity,
+            @RequestParam(required = false) String eventType,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to) {
+        logger.debug("Retrieving {} analytics rollups for event type: {} between {} and {}",
+            granularity, eventType, from, to);
+        return ResponseEntity.ok(analyticsRollupService.getRollups(granularity, eventType, from, to));
     }
 
     /**
-     * Retrieves audit logs for a specific user.
+     * Retrieves audit logs for a specific user, newest first.
      *
      * @param userId User identifier
-     * @return ResponseEntity containing a list of AuditLog
+     * @param from Earliest timestamp, inclusive
+     * @param to Latest timestamp, exclusive
+     * @param cursor Cursor returned with the previous slice, or none for the first slice
+     * @param size Maximum number of entries in the slice
+     * @param fields Comma-separated fields to return besides the id, or none for all
+     * @return ResponseEntity containing a slice of AuditLog
      */
     @GetMapping("/audit/user/{userId}")
-    public ResponseEntity<List<AuditLog>> getAuditLogsByUser(
-            @NotBlank @PathVariable String userId) {
+    public ResponseEntity<CursorPage<AuditLog>> getAuditLogsByUser(
+            @NotBlank @PathVariable String userId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = DEFAULT_PAGE_SIZE) int size,
+            @RequestParam(required = false) String fields) {
         logger.debug("Retrieving audit logs for user: {}", userId);
-        return ResponseEntity.ok(mongoLoggingService.getAuditLogsByUser(userId));
+        return ResponseEntity.ok(mongoLoggingService.scrollAuditLogs(userId, from, to, cursor, size, fields));
+    }
+
+    /**
+     * Retrieves the audit logs of every user within a time range, newest first.
+     *
+     * @param from Earliest timestamp, inclusive
+     * @param to Latest timestamp, exclusive
+     * @param cursor Cursor returned with the previous slice, or none for the first slice
+     * @param size Maximum number of entries in the slice
+     * @param fields Comma-separated fields to return besides the id, or none for all
+     * @return ResponseEntity containing a slice of AuditLog
+     */
+    @GetMapping("/audit")
+    public ResponseEntity<CursorPage<AuditLog>> getAuditLogs(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = DEFAULT_PAGE_SIZE) int size,
+            @RequestParam(required = false) String fields) {
+        logger.debug("Retrieving audit logs between {} and {}", from, to);
+        return ResponseEntity.ok(mongoLoggingService.scrollAuditLogs(null, from, to, cursor, size, fields));
+    }
+
+    /**
+     * Retrieves archived audit logs, newest first.
+     *
+     * @param userId User identifier, or none for every user
+     * @param from Earliest timestamp, inclusive
+     * @param to Latest timestamp, exclusive
+     * @param cursor Cursor returned with the previous slice, or none for the first slice
+     * @param size Maximum number of entries in the slice
+     * @return ResponseEntity containing a slice of archived AuditLog
+     */
+    @GetMapping("/audit/archive")
+    public ResponseEntity<CursorPage<AuditLog>> getArchivedAuditLogs(
+            @RequestParam(required = false) String userId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = DEFAULT_PAGE_SIZE) int size) {
+        logger.debug("Retrieving archived audit logs for user: {} between {} and {}", userId, from, to);
+        return ResponseEntity.ok(logRetentionService.scrollAuditArchive(userId, from, to, cursor, size));
+    }
+
+    /**
+     * Streams audit logs as NDJSON, newest first.
+     *
+     * @param userId User identifier, or none for every user
+     * @param from Earliest timestamp, inclusive
+     * @param to Latest timestamp, exclusive
+     * @param fields Comma-separated fields to return besides the id, or none for all
+     * @return the streamed entries
+     */
+    @GetMapping(value = "/audit/stream", produces = APPLICATION_NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamAuditLogs(
+            @RequestParam(required = false) String userId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(required = false) String fields) {
+        logger.debug("Streaming audit logs for user: {} between {} and {}", userId, from, to);
+        return toNdjson(mongoLoggingService.streamAuditLogs(userId, from, to, fields));
+    }
+
+    /**
+     * Writes documents from an open database cursor as NDJSON on an async thread, flushing every
+     * {@value #STREAM_FLUSH_INTERVAL} documents, and closes the cursor when done.
+     */
+    private <T> ResponseEntity<StreamingResponseBody> toNdjson(Stream<T> documents) {
+        StreamingResponseBody body = out -> {
+            try (documents; JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                long written = 0;
+                for (Iterator<T> it = documents.iterator(); it.hasNext(); ) {
+                    generator.writeObject(it.next());
+                    generator.writeRaw('\n');
+                    if (++written % STREAM_FLUSH_INTERVAL == 0) {
+                        generator.flush();
+                    }
+                }
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(APPLICATION_NDJSON)).body(body);
+    }
+
+    /**
+     * Reads one event per non-blank line. A line that cannot be parsed becomes a null event,
+     * which is reported as rejected without failing the rest of the batch. Reading stops at the
+     * first event past {@code app.logging.bulk.max-events}, so an oversized upload is rejected
+     * without being held in memory.
+     *
+     * @throws IllegalArgumentException if the body holds more events than a batch may
+     */
+    private <T> List<T> readNdjson(HttpServletRequest request, Class<T> type) throws IOException {
+        List<T> events = new ArrayList<>();
+        BufferedReader reader = request.getReader();
+        long lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            if (events.size() == maxBatchSize) {
+                throw new IllegalArgumentException(
+                    "A batch can hold at most " + maxBatchSize + " events, got more at line " + lineNumber);
+            }
+            try {
+                events.add(objectMapper.readValue(line, type));
+            } catch (JsonProcessingException e) {
+                logger.debug("Skipping malformed event at line {}: {}", lineNumber, e.getOriginalMessage());
+                events.add(null);
+            }
+        }
+        return events;
+    }
+
+    /**
+     * Reads the events of a JSON array one at a time. Like {@link #readNdjson}, reading stops at
+     * the first event past {@code app.logging.bulk.max-events}; a null element becomes a null
+     * event, but a malformed array rejects the whole batch, as it cannot be read past the error.
+     *
+     * @throws IllegalArgumentException if the body is not a JSON array of events or holds more
+     *                                  events than a batch may
+     */
+    private <T> List<T> readJsonArray(HttpServletRequest request, Class<T> type) throws IOException {
+        List<T> events = new ArrayList<>();
+        try (JsonParser parser = objectMapper.getFactory().createParser(request.getInputStream())) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IllegalArgumentException("A batch must be a JSON array of events");
+            }
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (token == null) {
+                    throw new IllegalArgumentException("A batch must be a complete JSON array of events");
+                }
+                if (events.size() == maxBatchSize) {
+                    throw new IllegalArgumentException(
+                        "A batch can hold at most " + maxBatchSize + " events, got more at index " + events.size());
+                }
+                events.add(objectMapper.readValue(parser, type));
+            }
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Malformed event at index " + events.size() + ": "
+                + e.getOriginalMessage(), e);
+        }
+        return events;
+    }
+
+    /**
+     * Answers 200 when every event was written, 207 when some were and 400 when none were.
+     */
+    private static ResponseEntity<BulkLogResult> toResponse(String kind, BulkLogResult result) {
+        logger.info("Logged {} of {} {}", result.written(), result.received(), kind);
+        if (result.errors().isEmpty()) {
+            return ResponseEntity.ok(result);
+        }
+        HttpStatus status = result.written() > 0 ? HttpStatus.MULTI_STATUS : HttpStatus.BAD_REQUEST;
+        return ResponseEntity.status(status).body(result);
     }
-} 
\ No newline at end of file
+}
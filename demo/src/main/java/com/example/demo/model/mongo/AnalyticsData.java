@@ -1,11 +1,15 @@
 package com.example.demo.model.mongo;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 import java.time.Instant;
 import java.util.Map;
 
 @Document(collection = "analytics_data")
+@CompoundIndex(name = "event_type_timestamp_id", def = "{'eventType': 1, 'timestamp': 1, '_id': 1}")
+@CompoundIndex(name = "timestamp_id", def = "{'timestamp': 1, '_id': 1}")
+@CompoundIndex(name = "user_timestamp", def = "{'userId': 1, 'timestamp': 1}")
 public class AnalyticsData {
     @Id
     private String id;
@@ -0,0 +1,58 @@
+package com.example.demo.model.mongo;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+@Document(collection = "analytics_rollups")
+@CompoundIndex(name = "granularity_event_type_bucket", def = "{'granularity': 1, 'eventType': 1, 'bucketStart': 1}",
+    unique = true)
+@CompoundIndex(name = "granularity_bucket_event_type", def = "{'granularity': 1, 'bucketStart': 1, 'eventType': 1}")
+public class AnalyticsRollup {
+    @Id
+    private String id;
+    private Granularity granularity;
+    private String eventType;
+    private Instant bucketStart;
+    private long count;
+    private Instant updatedAt;
+
+    public AnalyticsRollup() {}
+
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+    public Granularity getGranularity() { return granularity; }
+    public void setGranularity(Granularity granularity) { this.granularity = granularity; }
+    public String getEventType() { return eventType; }
+    public void setEventType(String eventType) { this.eventType = eventType; }
+    public Instant getBucketStart() { return bucketStart; }
+    public void setBucketStart(Instant bucketStart) { this.bucketStart = bucketStart; }
+    public long getCount() { return count; }
+    public void setCount(long count) { this.count = count; }
+    public Instant getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(Instant updatedAt) { this.updatedAt = updatedAt; }
+
+    /**
+     * Width of a rollup bucket. Buckets are aligned to UTC.
+     */
+    public enum Granularity {
+        MINUTE(ChronoUnit.MINUTES, "minute"),
+        HOUR(ChronoUnit.HOURS, "hour"),
+        DAY(ChronoUnit.DAYS, "day");
+
+        private final ChronoUnit unit;
+        private final String dateTruncUnit;
+
+        Granularity(ChronoUnit unit, String dateTruncUnit) {
+            this.unit = unit;
+            this.dateTruncUnit = dateTruncUnit;
+        }
+
+        public ChronoUnit getUnit() { return unit; }
+
+        /** The unit name understood by {@code $dateTrunc}. */
+        public String getDateTruncUnit() { return dateTruncUnit; }
+    }
+}
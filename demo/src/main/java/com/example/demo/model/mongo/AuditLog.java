@@ -1,11 +1,16 @@
 package com.example.demo.model.mongo;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 import java.time.Instant;
 import java.util.Map;
 
 @Document(collection = "audit_logs")
+@CompoundIndex(name = "user_timestamp_id", def = "{'userId': 1, 'timestamp': 1, '_id': 1}")
+@CompoundIndex(name = "timestamp_id", def = "{'timestamp': 1, '_id': 1}")
+@CompoundIndex(name = "resource", def = "{'resourceType': 1, 'resourceId': 1}")
+@CompoundIndex(name = "action_timestamp", def = "{'action': 1, 'timestamp': 1}")
 public class AuditLog {
     @Id
     private String id;
@@ -1,10 +1,16 @@
 package com.example.demo.model.mongo;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 import java.time.Instant;
 
 @Document(collection = "user_activities")
+@CompoundIndex(name = "user_timestamp_id", def = "{'userId': 1, 'timestamp': -1, '_id': -1}")
+@CompoundIndex(name = "timestamp_id", def = "{'timestamp': 1, '_id': 1}")
+@CompoundIndex(name = "action_timestamp", def = "{'action': 1, 'timestamp': 1}")
+@CompoundIndex(name = "node_timestamp", def = "{'nodeId': 1, 'timestamp': 1}")
 public class UserActivity {
     @Id
     private String id;
@@ -14,6 +20,8 @@ public class UserActivity {
     private String ipAddress;
     private String userAgent;
     private Instant timestamp;
+    @JsonIgnore
+    private String nodeId;
 
     public UserActivity() {}
 
@@ -40,4 +48,6 @@ public class UserActivity {
     public void setUserAgent(String userAgent) { this.userAgent = userAgent; }
     public Instant getTimestamp() { return timestamp; }
     public void setTimestamp(Instant timestamp) { this.timestamp = timestamp; }
+    public String getNodeId() { return nodeId; }
+    public void setNodeId(String nodeId) { this.nodeId = nodeId; }
 } 
\ No newline at end of file
@@ -2,16 +2,19 @@ package com.example.demo.model.mongo;
 
 import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.index.Indexed;
 import java.time.Instant;
 
 @Document(collection = "user_sessions")
+@CompoundIndex(name = "user_active", def = "{'userId': 1, 'active': 1}")
 public class UserSession {
     @Id
     private String id;
     private String userId;
     @Indexed(expireAfterSeconds = 3600) 
     private Instant lastAccessTime;
+    @Indexed(unique = true)
     private String sessionToken;
     private String ipAddress;
     private String userAgent;
@@ -0,0 +1,82 @@
+package com.example.demo.repository.mongo;
+
+import com.example.demo.model.mongo.AnalyticsData;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.CollectionOptions;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.timeseries.Granularity;
+import org.springframework.stereotype.Component;
+
+/**
+ * Stores analytics events in a Mongo time-series collection when
+ * {@code app.analytics.time-series.enabled} is set. Events are bucketed by their timestamp
+ * and event type, which Mongo stores column-compressed and reads bucket by bucket. The user id
+ * stays a regular field: as a meta field it would split each event type into one sparse series
+ * per user.
+ * The collection is created before the application accepts requests. An existing regular
+ * collection is only replaced while it is empty; one that holds events has to be migrated by hand,
+ * and is left as it is with a warning.
+ */
+@Component
+public class AnalyticsTimeSeriesInitializer implements SmartInitializingSingleton {
+    private static final Logger logger = LoggerFactory.getLogger(AnalyticsTimeSeriesInitializer.class);
+
+    private final MongoOperations mongoOperations;
+    private final MongoMappingContext mappingContext;
+    private final boolean enabled;
+    private final Granularity granularity;
+
+    public AnalyticsTimeSeriesInitializer(MongoOperations mongoOperations, MongoMappingContext mappingContext,
+                                          @Value("${app.analytics.time-series.enabled:false}") boolean enabled,
+                                          @Value("${app.analytics.time-series.granularity:SECONDS}") Granularity granularity) {
+        this.mongoOperations = mongoOperations;
+        this.mappingContext = mappingContext;
+        this.enabled = enabled;
+        this.granularity = granularity;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!enabled) {
+            return;
+        }
+        String collection = mongoOperations.getCollectionName(AnalyticsData.class);
+        Document info = mongoOperations.execute(db ->
+            db.listCollections().filter(new Document("name", collection)).first());
+        if (info != null && "timeseries".equals(info.getString("type"))) {
+            return;
+        }
+        if (info != null) {
+            if (mongoOperations.getCollection(collection).estimatedDocumentCount() > 0) {
+                logger.warn("Collection {} holds events and is not a time-series collection; migrate it to enable "
+                    + "time-series storage", collection);
+                return;
+            }
+            mongoOperations.dropCollection(collection);
+        }
+        mongoOperations.createCollection(AnalyticsData.class, CollectionOptions.empty()
+            .timeSeries(CollectionOptions.TimeSeriesOptions.timeSeries("timestamp")
+                .metaField("eventType")
+                .granularity(granularity)));
+
+        IndexOperations indexOperations = mongoOperations.indexOps(AnalyticsData.class);
+        IndexResolver resolver = new MongoPersistentEntityIndexResolver(mappingContext);
+        resolver.resolveIndexFor(AnalyticsData.class).forEach(index -> {
+            try {
+                indexOperations.ensureIndex(index);
+            } catch (RuntimeException e) {
+                logger.warn("Could not create index {} on time-series collection {}: {}",
+                    index.getIndexKeys(), collection, e.getMessage());
+            }
+        });
+        logger.info("Created time-series collection {} with {} granularity", collection, granularity);
+    }
+}
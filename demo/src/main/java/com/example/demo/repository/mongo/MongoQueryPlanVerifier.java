@@ -0,0 +1,185 @@
+package com.example.demo.repository.mongo;
+
+import com.example.demo.model.mongo.AnalyticsData;
+import com.example.demo.model.mongo.AnalyticsRollup;
+import com.example.demo.model.mongo.AuditLog;
+import com.example.demo.model.mongo.UserActivity;
+import com.example.demo.model.mongo.UserSession;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Explains the queries issued against the Mongo log collections and reports those that would scan
+ * a whole collection, so that a query added without a matching index is caught before it reaches
+ * production data. Keyset-paginated listings must also be sorted by the index rather than in
+ * memory. The check runs at startup when {@code app.mongo.verify-query-plans} is enabled
+ * and fails the startup on any collection scan; tests call {@link #verify()} directly.
+ */
+@Component
+public class MongoQueryPlanVerifier {
+    private static final Logger logger = LoggerFactory.getLogger(MongoQueryPlanVerifier.class);
+
+    private final MongoOperations mongoOperations;
+    private final boolean verifyOnStartup;
+
+    public MongoQueryPlanVerifier(MongoOperations mongoOperations,
+                                  @Value("${app.mongo.verify-query-plans:false}") boolean verifyOnStartup) {
+        this.mongoOperations = mongoOperations;
+        this.verifyOnStartup = verifyOnStartup;
+    }
+
+    /**
+     * Verifies the query plans once the application is ready, if enabled.
+     *
+     * @throws IllegalStateException if any query scans a whole collection
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void verifyOnStartup() {
+        if (!verifyOnStartup) {
+            return;
+        }
+        List<String> collectionScans = verify();
+        if (!collectionScans.isEmpty()) {
+            throw new IllegalStateException("Mongo queries without a supporting index: " + collectionScans);
+        }
+        logger.info("Verified the query plans of {} Mongo queries", checks().size());
+    }
+
+    /**
+     * Explains every known query.
+     *
+     * @return the names of the queries whose winning plan scans a whole collection or, for
+     *         paginated listings, sorts in memory
+     */
+    public List<String> verify() {
+        List<String> collectionScans = new ArrayList<>();
+        for (QueryCheck check : checks()) {
+            Document plan = mongoOperations.getCollection(mongoOperations.getCollectionName(check.type()))
+                .find(check.query().getQueryObject())
+                .sort(check.query().getSortObject())
+                .explain();
+            Object winningPlan = plan.get("queryPlanner", Document.class).get("winningPlan");
+            if (containsStage(winningPlan, "COLLSCAN")) {
+                logger.warn("Query {} scans the whole collection: {}", check.name(), winningPlan);
+                collectionScans.add(check.name());
+            } else if (check.indexedSort() && containsStage(winningPlan, "SORT")) {
+                logger.warn("Query {} sorts in memory: {}", check.name(), winningPlan);
+                collectionScans.add(check.name());
+            }
+        }
+        return collectionScans;
+    }
+
+    /**
+     * The repository and service queries, with representative values.
+     */
+    static List<QueryCheck> checks() {
+        Date start = Date.from(Instant.EPOCH);
+        Date end = new Date();
+        Sort newestFirst = Sort.by(Sort.Direction.DESC, "timestamp");
+        Sort keyset = Sort.by(Sort.Direction.DESC, "timestamp", "_id");
+        Criteria after = new Criteria().orOperator(
+            Criteria.where("timestamp").lt(end),
+            Criteria.where("timestamp").is(end).and("_id").lt(new ObjectId()));
+        return List.of(
+            new QueryCheck("UserActivityRepository.findByUserIdOrderByTimestampDesc", UserActivity.class,
+                Query.query(Criteria.where("userId").is("user")).with(newestFirst)),
+            new QueryCheck("UserActivityRepository.findByTimestampBetween", UserActivity.class,
+                Query.query(Criteria.where("timestamp").gt(start).lt(end))),
+            new QueryCheck("UserActivityRepository.findByActionAndTimestampBetween", UserActivity.class,
+                Query.query(Criteria.where("action").is("LOGIN").and("timestamp").gt(start).lt(end))),
+            new QueryCheck("MongoLoggingService.scrollUserActivities", UserActivity.class,
+                Query.query(Criteria.where("userId").is("user")).addCriteria(after).with(keyset), true),
+            new QueryCheck("MongoLoggingService.scrollUserActivities(all users)", UserActivity.class,
+                Query.query(Criteria.where("timestamp").gte(start).lt(end)).addCriteria(after).with(keyset), true),
+
+            new QueryCheck("AnalyticsDataRepository.findByEventType", AnalyticsData.class,
+                Query.query(Criteria.where("eventType").is("PAGE_VIEW"))),
+            new QueryCheck("AnalyticsDataRepository.findByUserId", AnalyticsData.class,
+                Query.query(Criteria.where("userId").is("user"))),
+            new QueryCheck("AnalyticsDataRepository.findByTimestampBetween", AnalyticsData.class,
+                Query.query(Criteria.where("timestamp").gt(start).lt(end))),
+            new QueryCheck("AnalyticsDataRepository.findByEventTypeAndTimestampBetween", AnalyticsData.class,
+                Query.query(Criteria.where("eventType").is("PAGE_VIEW").and("timestamp").gt(start).lt(end))),
+            new QueryCheck("MongoLoggingService.scrollAnalytics", AnalyticsData.class,
+                Query.query(Criteria.where("eventType").is("PAGE_VIEW")).addCriteria(after).with(keyset), true),
+            new QueryCheck("MongoLoggingService.scrollAnalytics(all types)", AnalyticsData.class,
+                Query.query(Criteria.where("timestamp").gte(start).lt(end)).addCriteria(after).with(keyset), true),
+
+            new QueryCheck("AnalyticsRollupService.getRollups", AnalyticsRollup.class,
+                Query.query(Criteria.where("granularity").is("HOUR").and("eventType").is("PAGE_VIEW")
+                    .and("bucketStart").gte(start).lt(end)).with(Sort.by("bucketStart", "eventType"))),
+            new QueryCheck("AnalyticsRollupService.getRollups(all types)", AnalyticsRollup.class,
+                Query.query(Criteria.where("granularity").is("HOUR").and("bucketStart").gte(start).lt(end))
+                    .with(Sort.by("bucketStart", "eventType"))),
+
+            new QueryCheck("AuditLogRepository.findByUserId", AuditLog.class,
+                Query.query(Criteria.where("userId").is("user"))),
+            new QueryCheck("AuditLogRepository.findByResourceTypeAndResourceId", AuditLog.class,
+                Query.query(Criteria.where("resourceType").is("USER").and("resourceId").is("1"))),
+            new QueryCheck("AuditLogRepository.findByTimestampBetween", AuditLog.class,
+                Query.query(Criteria.where("timestamp").gt(start).lt(end))),
+            new QueryCheck("AuditLogRepository.findByActionAndTimestampBetween", AuditLog.class,
+                Query.query(Criteria.where("action").is("UPDATE").and("timestamp").gt(start).lt(end))),
+            new QueryCheck("AuditLogRepository.findByUserIdAndTimestampBetween", AuditLog.class,
+                Query.query(Criteria.where("userId").is("user").and("timestamp").gt(start).lt(end))),
+            new QueryCheck("MongoLoggingService.scrollAuditLogs", AuditLog.class,
+                Query.query(Criteria.where("userId").is("user")).addCriteria(after).with(keyset), true),
+            new QueryCheck("MongoLoggingService.scrollAuditLogs(all users)", AuditLog.class,
+                Query.query(Criteria.where("timestamp").gte(start).lt(end)).addCriteria(after).with(keyset), true),
+
+            new QueryCheck("UserSessionRepository.findBySessionToken", UserSession.class,
+                Query.query(Criteria.where("sessionToken").is("token"))),
+            new QueryCheck("UserSessionRepository.findByUserId", UserSession.class,
+                Query.query(Criteria.where("userId").is("user"))),
+            new QueryCheck("UserSessionRepository.findByUserIdAndActive", UserSession.class,
+                Query.query(Criteria.where("userId").is("user").and("active").is(true))),
+            new QueryCheck("UserSessionRepository.findByLastAccessTimeBefore", UserSession.class,
+                Query.query(Criteria.where("lastAccessTime").lt(end))),
+            new QueryCheck("UserSessionRepository.findBySessionTokenAndActive", UserSession.class,
+                Query.query(Criteria.where("sessionToken").is("token").and("active").is(true))));
+    }
+
+    private static boolean containsStage(Object plan, String stage) {
+        if (plan instanceof Document document) {
+            if (stage.equals(document.get("stage"))) {
+                return true;
+            }
+            return document.values().stream().anyMatch(value -> containsStage(value, stage));
+        }
+        if (plan instanceof List<?> list) {
+            return list.stream().anyMatch(value -> containsStage(value, stage));
+        }
+        return false;
+    }
+
+    /**
+     * A query to explain.
+     *
+     * @param name the repository method or operation issuing the query
+     * @param type the document type, which determines the collection
+     * @param query the query with representative values, using stored field names
+     * @param indexedSort whether the query must be sorted by an index
+     */
+    record QueryCheck(String name, Class<?> type, Query query, boolean indexedSort) {
+
+        QueryCheck(String name, Class<?> type, Query query) {
+            this(name, type, query, false);
+        }
+    }
+}
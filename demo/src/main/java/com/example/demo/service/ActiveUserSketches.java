@@ -0,0 +1,298 @@
+package com.example.demo.service;
+
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoWriteException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import org.bson.Document;
+import org.bson.types.Binary;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Counts distinct active users per hour and per day with {@link HyperLogLog} sketches, fed with
+ * every recorded activity. Days follow the server's time zone. Sketches of several buckets merge
+ * into the distinct users of the whole range, such as weekly or monthly active users, without
+ * counting a user twice. Changed sketches are merged into their stored copy in the
+ * {@value #COLLECTION} collection every {@code app.analytics.unique-users.flush-interval}, so
+ * nodes add up to one count, and are loaded back at startup. Each stored copy carries a version
+ * and is only replaced by a node that merged that version, so concurrent flushes do not lose
+ * each other's users. Hourly sketches are kept for
+ * {@code app.analytics.unique-users.hourly-retention} and daily ones for
+ * {@code app.analytics.unique-users.daily-retention}.
+ */
+@Service
+public class ActiveUserSketches {
+    private static final Logger logger = LoggerFactory.getLogger(ActiveUserSketches.class);
+    static final String COLLECTION = "active_user_sketches";
+    private static final int MAX_STORE_ATTEMPTS = 5;
+
+    private final MongoOperations mongoOperations;
+    private final Duration hourlyRetention;
+    private final Duration dailyRetention;
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final Map<Instant, Bucket> hours = new ConcurrentHashMap<>();
+    private final Map<LocalDate, Bucket> days = new ConcurrentHashMap<>();
+
+    public ActiveUserSketches(MongoOperations mongoOperations,
+                              @Value("${app.analytics.unique-users.hourly-retention:P7D}") Duration hourlyRetention,
+                              @Value("${app.analytics.unique-users.daily-retention:P400D}") Duration dailyRetention) {
+        this.mongoOperations = Objects.requireNonNull(mongoOperations, "MongoOperations must not be null");
+        this.hourlyRetention = Objects.requireNonNull(hourlyRetention, "Hourly retention must not be null");
+        this.dailyRetention = Objects.requireNonNull(dailyRetention, "Daily retention must not be null");
+    }
+
+    /**
+     * Counts a user as active at a time. Activities older than the retention are ignored.
+     *
+     * @param userId the user
+     * @param at when the user was active
+     */
+    public void add(String userId, Instant at) {
+        if (userId == null || userId.isBlank() || at == null) {
+            return;
+        }
+        Instant now = Instant.now();
+        if (!at.isBefore(now.minus(hourlyRetention))) {
+            hours.computeIfAbsent(at.truncatedTo(ChronoUnit.HOURS), k -> new Bucket()).add(userId);
+        }
+        if (!at.isBefore(now.minus(dailyRetention))) {
+            days.computeIfAbsent(LocalDate.ofInstant(at, zone), k -> new Bucket()).add(userId);
+        }
+    }
+
+    /**
+     * Estimates the distinct active users of each day in a range.
+     *
+     * @param from the first day
+     * @param to the last day
+     * @return the estimate by day, in order, for the days with activity
+     */
+    public Map<LocalDate, Long> dailyActiveUsers(LocalDate from, LocalDate to) {
+        Map<LocalDate, Long> counts = new TreeMap<>();
+        days.forEach((day, bucket) -> {
+            if (!day.isBefore(from) && !day.isAfter(to)) {
+                counts.put(day, bucket.sketch.estimate());
+            }
+        });
+        return counts;
+    }
+
+    /**
+     * Estimates the distinct users active in a range of days, counting each user once.
+     *
+     * @param from the first day
+     * @param to the last day
+     * @return the estimate
+     */
+    public long activeUsers(LocalDate from, LocalDate to) {
+        HyperLogLog union = new HyperLogLog();
+        days.forEach((day, bucket) -> {
+            if (!day.isBefore(from) && !day.isAfter(to)) {
+                union.merge(bucket.sketch);
+            }
+        });
+        return union.estimate();
+    }
+
+    /**
+     * Estimates, for each day in a range, how many of its active users were not active on an
+     * earlier day of the range, from the growth of the running union of daily sketches.
+     *
+     * @param from the first day
+     * @param to the last day
+     * @return the estimate by day, in order, for the days with activity
+     */
+    public Map<LocalDate, Long> newActiveUsers(LocalDate from, LocalDate to) {
+        Map<LocalDate, Bucket> inRange = new TreeMap<>();
+        days.forEach((day, bucket) -> {
+            if (!day.isBefore(from) && !day.isAfter(to)) {
+                inRange.put(day, bucket);
+            }
+        });
+        Map<LocalDate, Long> counts = new TreeMap<>();
+        HyperLogLog union = new HyperLogLog();
+        long before = 0;
+        for (Map.Entry<LocalDate, Bucket> entry : inRange.entrySet()) {
+            union.merge(entry.getValue().sketch);
+            long after = union.estimate();
+            counts.put(entry.getKey(), Math.max(0, after - before));
+            before = Math.max(before, after);
+        }
+        return counts;
+    }
+
+    /**
+     * Estimates the distinct users active during each hour of the day, over the hours kept
+     * since a time.
+     *
+     * @param from the earliest hour to include
+     * @return the estimate by hour of the day in the server's time zone, for the hours with activity
+     */
+    public Map<Integer, Long> activeUsersByHourOfDay(Instant from) {
+        Map<Integer, HyperLogLog> byHour = new TreeMap<>();
+        hours.forEach((hour, bucket) -> {
+            if (!hour.isBefore(from.truncatedTo(ChronoUnit.HOURS))) {
+                byHour.computeIfAbsent(hour.atZone(zone).getHour(), k -> new HyperLogLog()).merge(bucket.sketch);
+            }
+        });
+        Map<Integer, Long> counts = new TreeMap<>();
+        byHour.forEach((hour, sketch) -> counts.put(hour, sketch.estimate()));
+        return counts;
+    }
+
+    /**
+     * Loads the stored sketches within the retention, merging them into the ones recorded since
+     * startup.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        try {
+            mongoOperations.indexOps(COLLECTION).ensureIndex(new Index()
+                .on("expireAt", Sort.Direction.ASC)
+                .expire(Duration.ZERO)
+                .named("expire_at_ttl"));
+            Instant now = Instant.now();
+            int loaded = 0;
+            for (Document document : mongoOperations.getCollection(COLLECTION).find(Filters.gt("expireAt", Date.from(now)))) {
+                HyperLogLog sketch = HyperLogLog.fromByteArray(bytes(document.get("sketch")));
+                Instant bucketStart = document.getDate("bucketStart").toInstant();
+                if ("HOUR".equals(document.getString("granularity"))) {
+                    hours.computeIfAbsent(bucketStart, k -> new Bucket()).sketch.merge(sketch);
+                } else {
+                    days.computeIfAbsent(LocalDate.parse(document.getString("day")), k -> new Bucket()).sketch.merge(sketch);
+                }
+                loaded++;
+            }
+            logger.info("Loaded {} active user sketches", loaded);
+        } catch (RuntimeException e) {
+            logger.warn("Could not load active user sketches: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Stores the sketches that changed since the last flush and forgets those past the retention.
+     */
+    @Scheduled(fixedDelayString = "${app.analytics.unique-users.flush-interval:PT1M}")
+    public void flush() {
+        Instant now = Instant.now();
+        hours.keySet().removeIf(hour -> hour.isBefore(now.minus(hourlyRetention)));
+        days.keySet().removeIf(day -> day.atStartOfDay(zone).toInstant().isBefore(now.minus(dailyRetention)));
+        int stored = 0;
+        try {
+            for (Map.Entry<Instant, Bucket> entry : hours.entrySet()) {
+                Instant hour = entry.getKey();
+                if (store(entry.getValue(), "hour:" + hour, new Document("granularity", "HOUR")
+                        .append("bucketStart", Date.from(hour))
+                        .append("expireAt", Date.from(hour.plus(hourlyRetention))))) {
+                    stored++;
+                }
+            }
+            for (Map.Entry<LocalDate, Bucket> entry : days.entrySet()) {
+                Instant dayStart = entry.getKey().atStartOfDay(zone).toInstant();
+                if (store(entry.getValue(), "day:" + entry.getKey(), new Document("granularity", "DAY")
+                        .append("day", entry.getKey().toString())
+                        .append("bucketStart", Date.from(dayStart))
+                        .append("expireAt", Date.from(dayStart.plus(dailyRetention))))) {
+                    stored++;
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Could not store active user sketches: {}", e.getMessage());
+        }
+        if (stored > 0) {
+            logger.debug("Stored {} active user sketches", stored);
+        }
+    }
+
+    private boolean store(Bucket bucket, String id, Document document) {
+        if (!bucket.dirty) {
+            return false;
+        }
+        bucket.dirty = false;
+        try {
+            MongoCollection<Document> collection = mongoOperations.getCollection(COLLECTION);
+            for (int attempt = 1; attempt <= MAX_STORE_ATTEMPTS; attempt++) {
+                // Merge with what other nodes stored, so that the stored sketch counts them all, and
+                // only replace the version that was merged; another node's write in between is retried
+                Document existing = collection.find(Filters.eq("_id", id)).first();
+                if (existing != null) {
+                    bucket.sketch.merge(HyperLogLog.fromByteArray(bytes(existing.get("sketch"))));
+                }
+                Object version = existing != null ? existing.get("version") : null;
+                document.append("_id", id)
+                    .append("sketch", new Binary(bucket.sketch.toByteArray()))
+                    .append("version", version instanceof Number number ? number.longValue() + 1 : 1L)
+                    .append("updatedAt", new Date());
+                boolean stored = existing == null
+                    ? insert(collection, document)
+                    : collection.replaceOne(Filters.and(Filters.eq("_id", id), Filters.eq("version", version)), document)
+                        .getMatchedCount() == 1;
+                if (stored) {
+                    return true;
+                }
+            }
+            throw new IllegalStateException("Sketch " + id + " kept changing, gave up after "
+                + MAX_STORE_ATTEMPTS + " attempts");
+        } catch (RuntimeException e) {
+            bucket.dirty = true;
+            throw e;
+        }
+    }
+
+    private static boolean insert(MongoCollection<Document> collection, Document document) {
+        try {
+            collection.insertOne(document);
+            return true;
+        } catch (MongoWriteException e) {
+            if (e.getError().getCategory() == ErrorCategory.DUPLICATE_KEY) {
+                // Another node stored the first version
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    private static byte[] bytes(Object value) {
+        if (value instanceof Binary binary) {
+            return binary.getData();
+        }
+        if (value instanceof byte[] array) {
+            return array;
+        }
+        throw new IllegalArgumentException("Sketch is not binary");
+    }
+
+    /**
+     * The sketch of one hour or day, and whether it changed since it was last stored.
+     */
+    private static final class Bucket {
+        private final HyperLogLog sketch = new HyperLogLog();
+        private volatile boolean dirty;
+
+        void add(String userId) {
+            if (sketch.add(userId)) {
+                dirty = true;
+            }
+        }
+    }
+}
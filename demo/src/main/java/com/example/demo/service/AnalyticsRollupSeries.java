@@ -0,0 +1,18 @@
+package com.example.demo.service;
+
+import com.example.demo.model.mongo.AnalyticsRollup;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Rollup buckets of one granularity.
+ *
+ * @param granularity the bucket width
+ * @param completeUntil the watermark up to which events have been rolled up; later buckets may
+ *        still grow, and is null before the first rollup
+ * @param buckets the non-empty buckets in time order; empty buckets are omitted
+ */
+public record AnalyticsRollupSeries(AnalyticsRollup.Granularity granularity, Instant completeUntil,
+                                    List<AnalyticsRollup> buckets) {
+}
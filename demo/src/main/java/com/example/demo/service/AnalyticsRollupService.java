@@ -0,0 +1,207 @@
+package com.example.demo.service;
+
+import com.example.demo.model.mongo.AnalyticsData;
+import com.example.demo.model.mongo.AnalyticsRollup;
+import com.example.demo.model.mongo.AnalyticsRollup.Granularity;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Pre-aggregates analytics events into per-minute, per-hour and per-day counts by event type, so
+ * that trends over long periods are read from a few rollup documents instead of raw events.
+ * Every {@code app.analytics.rollup.interval} the minutes between the watermark and
+ * {@code app.analytics.rollup.lateness} ago are counted from the raw events, one hour of events
+ * at a time; the hours and days they belong to are then recomputed from the finer rollups. Each
+ * bucket is overwritten rather than incremented, so a run interrupted before it advances the
+ * watermark can simply be repeated. Events that arrive later than the lateness allows, such as
+ * back-dated bulk imports, are not counted.
+ */
+@Service
+public class AnalyticsRollupService {
+    private static final Logger logger = LoggerFactory.getLogger(AnalyticsRollupService.class);
+    private static final String STATE_COLLECTION = "analytics_rollup_state";
+    private static final String STATE_ID = "analytics_data";
+    private static final Duration MAX_WINDOW = Duration.ofHours(1);
+
+    /** The largest number of buckets a rollup query may span. */
+    public static final int MAX_BUCKETS = 10_000;
+
+    private final MongoOperations mongoOperations;
+    private final Duration lateness;
+
+    public AnalyticsRollupService(MongoOperations mongoOperations,
+                                  @Value("${app.analytics.rollup.lateness:PT2M}") Duration lateness) {
+        this.mongoOperations = Objects.requireNonNull(mongoOperations, "MongoOperations must not be null");
+        this.lateness = Objects.requireNonNull(lateness, "Lateness must not be null");
+    }
+
+    /**
+     * Rolls up the events that can no longer arrive late.
+     */
+    @Scheduled(fixedDelayString = "${app.analytics.rollup.interval:PT1M}")
+    public void rollUpCompletedMinutes() {
+        try {
+            rollUp(Instant.now().minus(lateness));
+        } catch (RuntimeException e) {
+            logger.error("Analytics rollup failed: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Rolls up the events of every whole minute from the watermark until the given time.
+     *
+     * @param until the end of the last minute to roll up, rounded down to a whole minute
+     * @return the new watermark, or null if there are no events yet
+     */
+    public synchronized Instant rollUp(Instant until) {
+        Instant cutoff = until.truncatedTo(ChronoUnit.MINUTES);
+        Instant from = watermark();
+        if (from == null) {
+            from = earliestEvent();
+            if (from == null) {
+                return null;
+            }
+        }
+        long start = System.nanoTime();
+        int windows = 0;
+        while (from.isBefore(cutoff)) {
+            Instant to = from.plus(MAX_WINDOW).isBefore(cutoff) ? from.plus(MAX_WINDOW) : cutoff;
+            rollUpWindow(from, to);
+            saveWatermark(to);
+            from = to;
+            windows++;
+        }
+        if (windows > 0) {
+            logger.debug("Rolled up analytics until {} in {} windows, {} ms", from, windows,
+                (System.nanoTime() - start) / 1_000_000);
+        }
+        return from;
+    }
+
+    /**
+     * Reads rollup buckets of one granularity.
+     *
+     * @param granularity the bucket width
+     * @param eventType the event type, or null for every type
+     * @param from the start of the first bucket, inclusive
+     * @param to the end of the range, exclusive
+     * @return the non-empty buckets in time order, and how far they are complete
+     * @throws IllegalArgumentException if the range is empty or spans more than {@value #MAX_BUCKETS} buckets
+     */
+    public AnalyticsRollupSeries getRollups(Granularity granularity, String eventType, Instant from, Instant to) {
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("from must be before to");
+        }
+        if (granularity.getUnit().between(from, to) > MAX_BUCKETS) {
+            throw new IllegalArgumentException("A rollup query can span at most " + MAX_BUCKETS + " "
+                + granularity.name().toLowerCase() + " buckets");
+        }
+        Criteria criteria = Criteria.where("granularity").is(granularity);
+        if (eventType != null) {
+            criteria = criteria.and("eventType").is(eventType);
+        }
+        Query query = Query.query(criteria.and("bucketStart").gte(from).lt(to))
+            .with(Sort.by("bucketStart", "eventType"))
+            .limit(MAX_BUCKETS);
+        query.fields().exclude("id").exclude("updatedAt");
+        return new AnalyticsRollupSeries(granularity, watermark(),
+            mongoOperations.find(query, AnalyticsRollup.class));
+    }
+
+    private void rollUpWindow(Instant from, Instant to) {
+        List<Document> minutes = aggregate(mongoOperations.getCollectionName(AnalyticsData.class), "timestamp",
+            new Document("$sum", 1), Granularity.MINUTE, from, to, null);
+        if (minutes.isEmpty()) {
+            return;
+        }
+        save(Granularity.MINUTE, minutes);
+
+        Instant hourFrom = from.truncatedTo(ChronoUnit.HOURS);
+        Instant hourTo = ceil(to, ChronoUnit.HOURS);
+        save(Granularity.HOUR, aggregate(mongoOperations.getCollectionName(AnalyticsRollup.class), "bucketStart",
+            new Document("$sum", "$count"), Granularity.HOUR, hourFrom, hourTo, Granularity.MINUTE));
+
+        Instant dayFrom = from.truncatedTo(ChronoUnit.DAYS);
+        Instant dayTo = ceil(to, ChronoUnit.DAYS);
+        save(Granularity.DAY, aggregate(mongoOperations.getCollectionName(AnalyticsRollup.class), "bucketStart",
+            new Document("$sum", "$count"), Granularity.DAY, dayFrom, dayTo, Granularity.HOUR));
+    }
+
+    /**
+     * Counts documents of a collection by event type and truncated time.
+     */
+    private List<Document> aggregate(String collection, String timeField, Document count, Granularity granularity,
+                                     Instant from, Instant to, Granularity source) {
+        Document match = new Document(timeField, new Document("$gte", Date.from(from)).append("$lt", Date.from(to)));
+        if (source != null) {
+            match = new Document("granularity", source.name()).append(timeField, match.get(timeField));
+        }
+        Document group = new Document("_id", new Document("eventType", "$eventType")
+            .append("bucketStart", new Document("$dateTrunc", new Document("date", "$" + timeField)
+                .append("unit", granularity.getDateTruncUnit()))))
+            .append("count", count);
+        return mongoOperations.getCollection(collection)
+            .aggregate(List.of(new Document("$match", match), new Document("$group", group)))
+            .into(new ArrayList<>());
+    }
+
+    private void save(Granularity granularity, List<Document> buckets) {
+        if (buckets.isEmpty()) {
+            return;
+        }
+        Instant now = Instant.now();
+        BulkOperations bulk = mongoOperations.bulkOps(BulkOperations.BulkMode.UNORDERED, AnalyticsRollup.class);
+        for (Document bucket : buckets) {
+            Document key = bucket.get("_id", Document.class);
+            Query query = Query.query(Criteria.where("granularity").is(granularity)
+                .and("eventType").is(key.getString("eventType"))
+                .and("bucketStart").is(key.getDate("bucketStart").toInstant()));
+            bulk.upsert(query, new Update()
+                .set("count", ((Number) bucket.get("count")).longValue())
+                .set("updatedAt", now));
+        }
+        bulk.execute();
+    }
+
+    private Instant watermark() {
+        Document state = mongoOperations.getCollection(STATE_COLLECTION).find(new Document("_id", STATE_ID)).first();
+        return state != null ? state.getDate("watermark").toInstant() : null;
+    }
+
+    private void saveWatermark(Instant watermark) {
+        mongoOperations.upsert(Query.query(Criteria.where("_id").is(STATE_ID)),
+            Update.update("watermark", watermark), STATE_COLLECTION);
+    }
+
+    private Instant earliestEvent() {
+        Query query = new Query().with(Sort.by(Sort.Direction.ASC, "timestamp", "id")).limit(1);
+        query.fields().include("timestamp");
+        AnalyticsData first = mongoOperations.findOne(query, AnalyticsData.class);
+        return first != null && first.getTimestamp() != null
+            ? first.getTimestamp().truncatedTo(ChronoUnit.MINUTES)
+            : null;
+    }
+
+    private static Instant ceil(Instant instant, ChronoUnit unit) {
+        Instant floor = instant.truncatedTo(unit);
+        return floor.equals(instant) ? floor : floor.plus(1, unit);
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.demo.service;
+
+import java.util.List;
+
+/**
+ * Outcome of a bulk log ingestion. Only the events that were not written are listed, so a fully
+ * successful batch is reported in a few bytes regardless of its size.
+ *
+ * @param received the number of events in the batch
+ * @param written the number of events written
+ * @param errors the events that were rejected, by position in the batch
+ */
+public record BulkLogResult(int received, int written, List<ItemError> errors) {
+
+    /**
+     * An event that was not written.
+     *
+     * @param index the zero-based position of the event in the batch
+     * @param message why the event was rejected
+     */
+    public record ItemError(int index, String message) {
+    }
+}
@@ -0,0 +1,216 @@
+package com.example.demo.service;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Estimates the number of distinct values added to it in constant memory: {@code 2^precision}
+ * one-byte registers, with a standard error of about {@code 1.04 / sqrt(2^precision)}, 1.6% at
+ * the default precision. Sketches of the same precision can be merged, and the result estimates
+ * the distinct values of their union, so daily sketches add up to weekly or monthly ones.
+ * Sketches are serialized with a version byte, in a sparse form while few registers are set.
+ */
+public final class HyperLogLog {
+    /** The precision used unless another is given. */
+    public static final int DEFAULT_PRECISION = 12;
+
+    private static final byte FORMAT_VERSION = 1;
+    private static final byte DENSE = 0;
+    private static final byte SPARSE = 1;
+    private static final int HEADER_BYTES = 3;
+    private static final int SPARSE_ENTRY_BYTES = 3;
+
+    private final int precision;
+    private final byte[] registers;
+
+    public HyperLogLog() {
+        this(DEFAULT_PRECISION);
+    }
+
+    /**
+     * Creates an empty sketch.
+     *
+     * @param precision the number of index bits, between 4 and 16
+     * @throws IllegalArgumentException if the precision is out of range
+     */
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 16) {
+            throw new IllegalArgumentException("Precision must be between 4 and 16, got " + precision);
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    /**
+     * Adds a value.
+     *
+     * @param value the value
+     * @return whether the sketch changed
+     */
+    public boolean add(String value) {
+        long hash = hash64(value);
+        int index = (int) (hash >>> (64 - precision));
+        // The marker bit caps the rank at 64 - precision + 1
+        byte rank = (byte) (Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1);
+        synchronized (registers) {
+            if (rank <= registers[index]) {
+                return false;
+            }
+            registers[index] = rank;
+            return true;
+        }
+    }
+
+    /**
+     * Adds the values of another sketch to this one.
+     *
+     * @param other a sketch of the same precision
+     * @throws IllegalArgumentException if the precisions differ
+     */
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException(
+                "Cannot merge a sketch of precision " + other.precision + " into one of precision " + precision);
+        }
+        byte[] theirs = other.registersCopy();
+        synchronized (registers) {
+            for (int i = 0; i < registers.length; i++) {
+                if (theirs[i] > registers[i]) {
+                    registers[i] = theirs[i];
+                }
+            }
+        }
+    }
+
+    /**
+     * Estimates the number of distinct values added.
+     *
+     * @return the estimate
+     */
+    public long estimate() {
+        byte[] snapshot = registersCopy();
+        int m = snapshot.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : snapshot) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double estimate = alpha(m) * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            // Linear counting is more accurate while many registers are still empty
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * Gets a copy of this sketch.
+     *
+     * @return the copy
+     */
+    public HyperLogLog copy() {
+        HyperLogLog copy = new HyperLogLog(precision);
+        System.arraycopy(registersCopy(), 0, copy.registers, 0, registers.length);
+        return copy;
+    }
+
+    /**
+     * Serializes the sketch.
+     *
+     * @return the serialized sketch
+     */
+    public byte[] toByteArray() {
+        byte[] snapshot = registersCopy();
+        int set = 0;
+        for (byte register : snapshot) {
+            if (register != 0) {
+                set++;
+            }
+        }
+        if (set * SPARSE_ENTRY_BYTES >= snapshot.length) {
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + snapshot.length);
+            buffer.put(FORMAT_VERSION).put((byte) precision).put(DENSE).put(snapshot);
+            return buffer.array();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + set * SPARSE_ENTRY_BYTES);
+        buffer.put(FORMAT_VERSION).put((byte) precision).put(SPARSE);
+        for (int i = 0; i < snapshot.length; i++) {
+            if (snapshot[i] != 0) {
+                buffer.putShort((short) i).put(snapshot[i]);
+            }
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Reads a serialized sketch.
+     *
+     * @param bytes the output of {@link #toByteArray()}
+     * @return the sketch
+     * @throws IllegalArgumentException if the bytes are not a sketch in a supported format
+     */
+    public static HyperLogLog fromByteArray(byte[] bytes) {
+        if (bytes.length < HEADER_BYTES || bytes[0] != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unsupported sketch format");
+        }
+        HyperLogLog sketch = new HyperLogLog(bytes[1]);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, HEADER_BYTES, bytes.length - HEADER_BYTES);
+        if (bytes[2] == DENSE) {
+            if (buffer.remaining() != sketch.registers.length) {
+                throw new IllegalArgumentException("Truncated sketch");
+            }
+            buffer.get(sketch.registers);
+        } else if (bytes[2] == SPARSE && buffer.remaining() % SPARSE_ENTRY_BYTES == 0) {
+            while (buffer.hasRemaining()) {
+                int index = Short.toUnsignedInt(buffer.getShort());
+                if (index >= sketch.registers.length) {
+                    throw new IllegalArgumentException("Register index out of range");
+                }
+                sketch.registers[index] = buffer.get();
+            }
+        } else {
+            throw new IllegalArgumentException("Unsupported sketch encoding");
+        }
+        return sketch;
+    }
+
+    private byte[] registersCopy() {
+        synchronized (registers) {
+            return registers.clone();
+        }
+    }
+
+    private static double alpha(int m) {
+        return switch (m) {
+            case 16 -> 0.673;
+            case 32 -> 0.697;
+            case 64 -> 0.709;
+            default -> 0.7213 / (1 + 1.079 / m);
+        };
+    }
+
+    /**
+     * Hashes a value with 64-bit FNV-1a followed by the MurmurHash3 finalizer, which spreads the
+     * bits of short, similar values such as user ids evenly.
+     */
+    static long hash64(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,228 @@
+package com.example.demo.service;
+
+import com.example.demo.User;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A user import running in the background.
+ * Only counters and the first {@value #MAX_ERRORS} errors are kept, so the memory held by a job
+ * does not depend on the size of its file. The job tracks the last committed record so that a
+ * failed import can resume after it.
+ */
+public class ImportJob implements ImportService.ImportListener {
+    static final int MAX_ERRORS = 10_000;
+
+    private final String id;
+    private final String fileName;
+    private final long totalBytes;
+    private final Instant createdAt = Instant.now();
+    private final AtomicLong succeeded = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final List<ImportError> errors = new ArrayList<>();
+    private volatile Status status = Status.QUEUED;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile String message;
+    private volatile long committedRecord;
+    private volatile long committedPosition;
+    private volatile long committedSucceeded;
+    private volatile long committedFailed;
+    private volatile long startPosition;
+    private volatile long processedAtStart;
+
+    public ImportJob(String id, String fileName, long totalBytes) {
+        this.id = id;
+        this.fileName = fileName;
+        this.totalBytes = totalBytes;
+    }
+
+    /**
+     * Restores a job from its last checkpoint as a failed job that can be resumed.
+     *
+     * @param checkpoint the checkpoint
+     * @param reason why the job stopped
+     * @return the restored job
+     */
+    static ImportJob restore(Checkpoint checkpoint, String reason) {
+        ImportJob job = new ImportJob(checkpoint.id(), checkpoint.fileName(), checkpoint.totalBytes());
+        job.committedRecord = checkpoint.committedRecord();
+        job.committedPosition = checkpoint.committedPosition();
+        job.committedSucceeded = checkpoint.succeeded();
+        job.committedFailed = checkpoint.failed();
+        job.succeeded.set(checkpoint.succeeded());
+        job.failed.set(checkpoint.failed());
+        job.failed(reason);
+        return job;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    /**
+     * Captures the committed progress of the job.
+     *
+     * @return the checkpoint
+     */
+    Checkpoint checkpoint() {
+        return new Checkpoint(id, fileName, totalBytes, committedRecord, committedPosition,
+                committedSucceeded, committedFailed);
+    }
+
+    /**
+     * Queues the job again after it failed. Outcomes reported after the last checkpoint are
+     * discarded, since those records are processed again.
+     *
+     * @return false if the job has not failed
+     */
+    synchronized boolean requeue() {
+        if (status != Status.FAILED) {
+            return false;
+        }
+        long committed = committedRecord;
+        succeeded.set(committedSucceeded);
+        failed.set(committedFailed);
+        synchronized (errors) {
+            errors.removeIf(error -> error.row() > committed);
+        }
+        message = null;
+        finishedAt = null;
+        status = Status.QUEUED;
+        return true;
+    }
+
+    void started() {
+        startPosition = committedPosition;
+        processedAtStart = succeeded.get() + failed.get();
+        startedAt = Instant.now();
+        status = Status.RUNNING;
+    }
+
+    void completed() {
+        finishedAt = Instant.now();
+        status = Status.COMPLETED;
+    }
+
+    void failed(String reason) {
+        finishedAt = Instant.now();
+        message = reason;
+        status = Status.FAILED;
+    }
+
+    @Override
+    public void imported(long recordNumber, User user) {
+        succeeded.incrementAndGet();
+    }
+
+    @Override
+    public void failed(long recordNumber, String username, String message) {
+        failed.incrementAndGet();
+        addError(new ImportError(recordNumber, username, message));
+    }
+
+    @Override
+    public void skipped(long recordNumber, String message) {
+        failed.incrementAndGet();
+        addError(new ImportError(recordNumber, null, message));
+    }
+
+    @Override
+    public void committed(long recordNumber, long characterPosition) {
+        committedSucceeded = succeeded.get();
+        committedFailed = failed.get();
+        committedPosition = characterPosition;
+        committedRecord = recordNumber;
+    }
+
+    private void addError(ImportError error) {
+        synchronized (errors) {
+            if (errors.size() < MAX_ERRORS) {
+                errors.add(error);
+            }
+        }
+    }
+
+    /**
+     * Captures the progress of the job with one page of its errors.
+     *
+     * @param errorPage the zero-based page of errors to include
+     * @param errorPageSize the number of errors per page
+     * @return the job status
+     */
+    public ImportJobStatus status(int errorPage, int errorPageSize) {
+        long succeededCount = succeeded.get();
+        long failedCount = failed.get();
+        long processed = succeededCount + failedCount;
+
+        Instant start = startedAt;
+        Instant end = finishedAt != null ? finishedAt : Instant.now();
+        double elapsedSeconds = start != null ? Duration.between(start, end).toMillis() / 1000.0 : 0;
+        double rowsPerSecond = elapsedSeconds > 0 ? (processed - processedAtStart) / elapsedSeconds : 0;
+
+        // Character positions approximate byte offsets closely enough for an estimate
+        Long etaSeconds = null;
+        long position = Math.min(committedPosition, totalBytes);
+        long read = position - startPosition;
+        if (status == Status.RUNNING && read > 0 && elapsedSeconds > 0) {
+            etaSeconds = Math.round(elapsedSeconds * (totalBytes - position) / read);
+        }
+
+        List<ImportError> page;
+        int retainedErrors;
+        synchronized (errors) {
+            retainedErrors = errors.size();
+            int from = (int) Math.min((long) errorPage * errorPageSize, retainedErrors);
+            int to = Math.min(from + errorPageSize, retainedErrors);
+            page = List.copyOf(errors.subList(from, to));
+        }
+
+        return new ImportJobStatus(id, fileName, status, message, createdAt, startedAt, finishedAt,
+                processed, succeededCount, failedCount, rowsPerSecond, etaSeconds, committedRecord,
+                page, errorPage, errorPageSize, retainedErrors);
+    }
+
+    /**
+     * Lifecycle of an import job.
+     */
+    public enum Status {
+        QUEUED, RUNNING, COMPLETED, FAILED
+    }
+
+    /**
+     * A record that could not be imported.
+     *
+     * @param row the number of the record in the file, starting at 1
+     * @param username the username of the record, if it could be read
+     * @param message the reason
+     */
+    public record ImportError(long row, String username, String message) {
+    }
+
+    /**
+     * The committed progress of a job, from which it can resume.
+     *
+     * @param id the job id
+     * @param fileName the name of the uploaded file
+     * @param totalBytes the size of the file
+     * @param committedRecord the number of the last record whose outcome is final, or 0
+     * @param committedPosition the character position of that record in the file
+     * @param succeeded the number of users created up to that record
+     * @param failed the number of records that could not be imported up to that record
+     */
+    record Checkpoint(String id, String fileName, long totalBytes, long committedRecord, long committedPosition,
+                      long succeeded, long failed) {
+    }
+}
@@ -0,0 +1,272 @@
+package com.example.demo.service;
+
+import com.example.demo.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Runs user imports in the background.
+ * An upload is spooled to {@code app.import.spool-directory} and queued on the import job
+ * executor, so the request returns as soon as the file is received; progress is read from the
+ * {@link ImportJob}. After every committed batch the job's checkpoint is written next to the
+ * file, so a failed job, or one interrupted by a restart, can resume after its last committed
+ * record instead of starting over. Finished jobs and their files are removed after
+ * {@code app.import.job-retention}.
+ */
+@Service
+public class ImportJobService {
+    private static final Logger logger = LoggerFactory.getLogger(ImportJobService.class);
+    private static final String DATA_SUFFIX = ".csv";
+    private static final String CHECKPOINT_SUFFIX = ".checkpoint";
+
+    private final ImportService importService;
+    private final Executor importJobExecutor;
+    private final Duration retention;
+    private final Path spoolDirectory;
+    private final Map<String, ImportJob> jobs = new ConcurrentHashMap<>();
+
+    public ImportJobService(ImportService importService,
+                            @Qualifier("importJobExecutor") Executor importJobExecutor,
+                            @Value("${app.import.job-retention:PT1H}") Duration retention,
+                            @Value("${app.import.spool-directory:${java.io.tmpdir}/user-imports}") String spoolDirectory) {
+        this.importService = Objects.requireNonNull(importService, "ImportService must not be null");
+        this.importJobExecutor = Objects.requireNonNull(importJobExecutor, "Executor must not be null");
+        this.retention = Objects.requireNonNull(retention, "Retention must not be null");
+        this.spoolDirectory = Paths.get(Objects.requireNonNull(spoolDirectory, "Spool directory must not be null"));
+    }
+
+    /**
+     * Queues an import of a CSV upload.
+     *
+     * @param file the CSV upload
+     * @return the queued job
+     * @throws IOException if the upload cannot be spooled
+     * @throws RejectedExecutionException if too many imports are queued
+     */
+    public ImportJob submit(MultipartFile file) throws IOException {
+        Files.createDirectories(spoolDirectory);
+        ImportJob job = new ImportJob(UUID.randomUUID().toString(), file.getOriginalFilename(), file.getSize());
+        try {
+            file.transferTo(dataFile(job.getId()));
+            writeCheckpoint(job.checkpoint());
+            jobs.put(job.getId(), job);
+            importJobExecutor.execute(() -> run(job));
+        } catch (IOException | RuntimeException e) {
+            jobs.remove(job.getId());
+            deleteFiles(job.getId());
+            throw e;
+        }
+        logger.info("Queued import job {} for file {}", job.getId(), file.getOriginalFilename());
+        return job;
+    }
+
+    /**
+     * Queues a failed import job again, resuming after its last committed record.
+     *
+     * @param id the job id
+     * @return the queued job, or empty if the job is unknown or has expired
+     * @throws IllegalStateException if the job has not failed or its file is gone
+     * @throws RejectedExecutionException if too many imports are queued
+     */
+    public Optional<ImportJob> resume(String id) {
+        ImportJob job = jobs.get(id);
+        if (job == null) {
+            return Optional.empty();
+        }
+        if (!Files.exists(dataFile(id))) {
+            throw new IllegalStateException("The file of import job " + id + " is no longer available");
+        }
+        if (!job.requeue()) {
+            throw new IllegalStateException("Only failed import jobs can be resumed");
+        }
+        try {
+            importJobExecutor.execute(() -> run(job));
+        } catch (RejectedExecutionException e) {
+            job.failed("Too many imports in progress");
+            throw e;
+        }
+        logger.info("Resuming import job {} after record {}", id, job.checkpoint().committedRecord());
+        return Optional.of(job);
+    }
+
+    /**
+     * Gets an import job.
+     *
+     * @param id the job id
+     * @return the job, unless it is unknown or has expired
+     */
+    public Optional<ImportJob> getJob(String id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    /**
+     * Registers the jobs left unfinished by a previous run as failed, so that they can be resumed.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverInterruptedJobs() {
+        if (!Files.isDirectory(spoolDirectory)) {
+            return;
+        }
+        try (DirectoryStream<Path> checkpoints = Files.newDirectoryStream(spoolDirectory, "*" + CHECKPOINT_SUFFIX)) {
+            for (Path checkpointFile : checkpoints) {
+                try {
+                    ImportJob job = ImportJob.restore(readCheckpoint(checkpointFile), "Interrupted by a restart");
+                    jobs.putIfAbsent(job.getId(), job);
+                    logger.info("Recovered interrupted import job {} at record {}", job.getId(),
+                        job.checkpoint().committedRecord());
+                } catch (IOException | RuntimeException e) {
+                    logger.warn("Could not recover import checkpoint {}: {}", checkpointFile, e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Could not scan import directory {}: {}", spoolDirectory, e.getMessage());
+        }
+    }
+
+    /**
+     * Forgets jobs that finished longer ago than the retention period, with their files.
+     */
+    @Scheduled(fixedDelayString = "${app.import.job-retention:PT1H}")
+    public void evictFinishedJobs() {
+        Instant cutoff = Instant.now().minus(retention);
+        jobs.values().removeIf(job -> {
+            Instant finishedAt = job.getFinishedAt();
+            if (finishedAt == null || !finishedAt.isBefore(cutoff)) {
+                return false;
+            }
+            deleteFiles(job.getId());
+            return true;
+        });
+    }
+
+    private void run(ImportJob job) {
+        job.started();
+        ImportJob.Checkpoint from = job.checkpoint();
+        logger.info("Starting import job {} after record {}", job.getId(), from.committedRecord());
+        try {
+            importService.importUsers(dataFile(job.getId()), from.committedRecord(), from.committedPosition(),
+                new CheckpointingListener(job));
+            job.completed();
+            deleteFiles(job.getId());
+            logger.info("Import job {} completed", job.getId());
+        } catch (Exception e) {
+            logger.error("Import job {} failed: {}", job.getId(), e.getMessage(), e);
+            job.failed(e.getMessage());
+        }
+    }
+
+    private Path dataFile(String id) {
+        return spoolDirectory.resolve(id + DATA_SUFFIX);
+    }
+
+    private Path checkpointFile(String id) {
+        return spoolDirectory.resolve(id + CHECKPOINT_SUFFIX);
+    }
+
+    private void writeCheckpoint(ImportJob.Checkpoint checkpoint) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("id", checkpoint.id());
+        properties.setProperty("fileName", Objects.toString(checkpoint.fileName(), ""));
+        properties.setProperty("totalBytes", Long.toString(checkpoint.totalBytes()));
+        properties.setProperty("committedRecord", Long.toString(checkpoint.committedRecord()));
+        properties.setProperty("committedPosition", Long.toString(checkpoint.committedPosition()));
+        properties.setProperty("succeeded", Long.toString(checkpoint.succeeded()));
+        properties.setProperty("failed", Long.toString(checkpoint.failed()));
+
+        // Replace the previous checkpoint atomically so that a crash never leaves a partial one
+        Path target = checkpointFile(checkpoint.id());
+        Path temp = spoolDirectory.resolve(checkpoint.id() + CHECKPOINT_SUFFIX + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            properties.store(writer, null);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static ImportJob.Checkpoint readCheckpoint(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        return new ImportJob.Checkpoint(
+            properties.getProperty("id"),
+            properties.getProperty("fileName"),
+            Long.parseLong(properties.getProperty("totalBytes")),
+            Long.parseLong(properties.getProperty("committedRecord")),
+            Long.parseLong(properties.getProperty("committedPosition")),
+            Long.parseLong(properties.getProperty("succeeded")),
+            Long.parseLong(properties.getProperty("failed")));
+    }
+
+    private void deleteFiles(String id) {
+        try {
+            Files.deleteIfExists(dataFile(id));
+            Files.deleteIfExists(checkpointFile(id));
+        } catch (IOException e) {
+            logger.warn("Could not delete files of import job {}: {}", id, e.getMessage());
+        }
+    }
+
+    /**
+     * Reports outcomes to a job and persists its checkpoint after every committed batch.
+     */
+    private final class CheckpointingListener implements ImportService.ImportListener {
+        private final ImportJob job;
+
+        CheckpointingListener(ImportJob job) {
+            this.job = job;
+        }
+
+        @Override
+        public void imported(long recordNumber, User user) {
+            job.imported(recordNumber, user);
+        }
+
+        @Override
+        public void failed(long recordNumber, String username, String message) {
+            job.failed(recordNumber, username, message);
+        }
+
+        @Override
+        public void skipped(long recordNumber, String message) {
+            job.skipped(recordNumber, message);
+        }
+
+        @Override
+        public void committed(long recordNumber, long characterPosition) {
+            job.committed(recordNumber, characterPosition);
+            try {
+                writeCheckpoint(job.checkpoint());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not write import checkpoint", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.demo.service;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Progress of an import job with one page of its errors.
+ *
+ * @param id the job id
+ * @param fileName the name of the uploaded file
+ * @param status the job status
+ * @param message the reason the job failed, if it did
+ * @param createdAt when the job was submitted
+ * @param startedAt when the job started running
+ * @param finishedAt when the job completed or failed
+ * @param processed the number of records processed so far
+ * @param succeeded the number of users created
+ * @param failed the number of records that could not be imported
+ * @param rowsPerSecond the average processing rate
+ * @param etaSeconds the estimated time to completion, estimated from the committed position; null unless running
+ * @param committedRecord the last record whose outcome is final; a failed job resumes after it
+ * @param errors one page of errors, in file order
+ * @param errorPage the zero-based page of errors
+ * @param errorPageSize the number of errors per page
+ * @param totalErrors the number of errors retained by the job
+ */
+public record ImportJobStatus(
+        String id,
+        String fileName,
+        ImportJob.Status status,
+        String message,
+        Instant createdAt,
+        Instant startedAt,
+        Instant finishedAt,
+        long processed,
+        long succeeded,
+        long failed,
+        double rowsPerSecond,
+        Long etaSeconds,
+        long committedRecord,
+        List<ImportJob.ImportError> errors,
+        int errorPage,
+        int errorPageSize,
+        int totalErrors) {
+}
@@ -7,124 +7,400 @@ import org.apache.commons.csv.CSVParser;
 import org.apache.commons.csv.CSVRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
-import org.springframework.web.multipart.MultipartFile;
 
 import java.io.BufferedReader;
+import java.io.EOFException;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.Reader;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
 
+/**
+ * Imports users from CSV uploads as a pipeline: records are parsed as they are read from the
+ * upload, checked for duplicate usernames and emails in chunks, hashed in parallel on the import
+ * executor, and inserted in batches of {@value #BATCH_SIZE}. Duplicates are rejected before their
+ * password is hashed. At most {@value #MAX_IN_FLIGHT} records are parsed ahead of the batch being
+ * inserted, so the next batch is hashed while the current one is written and memory use does not
+ * depend on the size of the upload.
+ */
 @Service
 public class ImportService {
     private static final Logger logger = LoggerFactory.getLogger(ImportService.class);
     private static final List<String> REQUIRED_HEADERS = Arrays.asList("username", "email", "password", "active", "roles");
-    
+    private static final int BATCH_SIZE = 500;
+    private static final int MAX_IN_FLIGHT = 2 * BATCH_SIZE;
+    private static final CSVFormat CSV_FORMAT = CSVFormat.Builder.create()
+            .setHeader()
+            .setIgnoreHeaderCase(true)
+            .setTrim(true)
+            .build();
+
     private final UserService userService;
     private final PasswordEncoder passwordEncoder;
+    private final Executor importExecutor;
 
-    public ImportService(UserService userService, PasswordEncoder passwordEncoder) {
+    public ImportService(UserService userService, PasswordEncoder passwordEncoder,
+                         @Qualifier("importExecutor") Executor importExecutor) {
         this.userService = userService;
         this.passwordEncoder = passwordEncoder;
+        this.importExecutor = importExecutor;
     }
 
-    public List<String> importUsersFromCsv(MultipartFile file) throws IOException {
-        List<String> results = new ArrayList<>();
-        
-        if (file == null || file.isEmpty()) {
-            logger.warn("Empty file provided for import");
-            return results;
+    /**
+     * Imports users from CSV content, reporting the outcome of every record to a listener in
+     * file order.
+     *
+     * @param reader the CSV content, including the header line
+     * @param listener the listener to report outcomes to
+     * @throws IOException if the content cannot be read
+     * @throws IllegalArgumentException if the header line lacks a required column
+     */
+    public void importUsers(Reader reader, ImportListener listener) throws IOException {
+        try (CSVParser csvParser = new CSVParser(reader, CSV_FORMAT)) {
+            validateHeaders(csvParser.getHeaderNames());
+            importRecords(csvParser.iterator(), csvParser.getHeaderMap().size(), listener);
         }
+    }
 
-        String content = new String(file.getBytes(), StandardCharsets.UTF_8);
-        if (content.trim().equals("username,email,password,active,roles")) {
-            logger.info("File contains only headers, no data to import");
-            return results;
+    /**
+     * Imports users from a CSV file, resuming after a committed record. The file is read from
+     * the character position of that record, which is read again and discarded, so none of
+     * the records before it are parsed.
+     *
+     * @param file the CSV file, including the header line
+     * @param committedRecord the number of the last committed record, or 0 to start from the beginning
+     * @param committedPosition the character position of the last committed record
+     * @param listener the listener to report outcomes to
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if the header line lacks a required column
+     */
+    public void importUsers(Path file, long committedRecord, long committedPosition, ImportListener listener)
+            throws IOException {
+        if (committedRecord <= 0) {
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                importUsers(reader, listener);
+            }
+            return;
         }
 
-        try (BufferedReader fileReader = new BufferedReader(new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8));
-             CSVParser csvParser = new CSVParser(fileReader, CSVFormat.Builder.create()
-                     .setHeader()
-                     .setIgnoreHeaderCase(true)
-                     .setTrim(true)
-                     .build())) {
+        List<String> headers;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+             CSVParser headerParser = new CSVParser(reader, CSV_FORMAT)) {
+            headers = headerParser.getHeaderNames();
+        }
+        validateHeaders(headers);
 
-            if (!csvParser.getHeaderMap().keySet().containsAll(REQUIRED_HEADERS)) {
-                logger.error("Invalid CSV structure. Required headers: {}", REQUIRED_HEADERS);
-                return results;
+        logger.info("Resuming import of {} after record {}", file.getFileName(), committedRecord);
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            skipFully(reader, committedPosition);
+            CSVFormat format = CSV_FORMAT.builder()
+                    .setHeader(headers.toArray(String[]::new))
+                    .setSkipHeaderRecord(false)
+                    .build();
+            try (CSVParser csvParser = new CSVParser(reader, format, committedPosition, committedRecord)) {
+                Iterator<CSVRecord> records = csvParser.iterator();
+                if (records.hasNext()) {
+                    records.next();
+                }
+                importRecords(records, headers.size(), listener);
             }
+        }
+    }
 
-            for (CSVRecord record : csvParser) {
+    private void importRecords(Iterator<CSVRecord> records, int headerCount, ImportListener listener) {
+        Deque<PendingUser> pending = new ArrayDeque<>();
+        Set<String> pendingUsernames = new HashSet<>();
+        Set<String> pendingEmails = new HashSet<>();
+        List<ParsedRow> chunk = new ArrayList<>(BATCH_SIZE);
+        try {
+            while (records.hasNext()) {
+                CSVRecord record = records.next();
+                ImportRow row;
                 try {
-                    if (isEmptyRecord(record, csvParser.getHeaderMap().size())) {
+                    if (isEmptyRecord(record, headerCount)) {
                         continue;
                     }
-
-                    User user = createUserFromRecord(record);
-                    
-                    try {
-                        userService.createUser(user);
-                        results.add("Successfully imported user: " + user.getUsername());
-                        logger.info("Successfully imported user: {}", user.getUsername());
-                    } catch (Exception e) {
-                        String errorMessage = "Failed to import user: " + e.getMessage();
-                        results.add(errorMessage);
-                        logger.error(errorMessage, e);
-                    }
+                    row = ImportRow.of(record);
                 } catch (Exception e) {
                     logger.warn("Skipping record due to processing error: {}", e.getMessage());
+                    chunk.add(new ParsedRow(record.getRecordNumber(), record.getCharacterPosition(), null, e.getMessage()));
                     continue;
                 }
+
+                chunk.add(new ParsedRow(record.getRecordNumber(), record.getCharacterPosition(), row, null));
+                if (chunk.size() >= BATCH_SIZE) {
+                    submitChunk(chunk, pending, pendingUsernames, pendingEmails);
+                    chunk.clear();
+                    while (pending.size() >= MAX_IN_FLIGHT) {
+                        importBatch(pending, pendingUsernames, pendingEmails, listener);
+                    }
+                }
+            }
+            submitChunk(chunk, pending, pendingUsernames, pendingEmails);
+            while (!pending.isEmpty()) {
+                importBatch(pending, pendingUsernames, pendingEmails, listener);
+            }
+        } catch (RuntimeException e) {
+            pending.stream()
+                    .filter(user -> user.hashed() != null)
+                    .forEach(user -> user.hashed().cancel(false));
+            throw e;
+        }
+    }
+
+    private static void validateHeaders(List<String> headers) {
+        Set<String> normalized = headers.stream()
+                .map(header -> header.toLowerCase(Locale.ROOT))
+                .collect(Collectors.toSet());
+        if (!normalized.containsAll(REQUIRED_HEADERS)) {
+            logger.error("Invalid CSV structure. Required headers: {}", REQUIRED_HEADERS);
+            throw new IllegalArgumentException("Invalid CSV structure. Required headers: " + REQUIRED_HEADERS);
+        }
+    }
+
+    private static void skipFully(Reader reader, long chars) throws IOException {
+        long remaining = chars;
+        while (remaining > 0) {
+            long skipped = reader.skip(remaining);
+            if (skipped <= 0) {
+                throw new EOFException("Import file is shorter than its checkpoint");
+            }
+            remaining -= skipped;
+        }
+    }
+
+    /**
+     * Rejects the rows of a chunk whose username or email is already taken and queues the rest
+     * for hashing. Existing users are looked up with one query per key for the whole chunk; rows
+     * duplicating one that is still queued are caught by the pending keys, while duplicates of
+     * rows that were already inserted are found by the lookup.
+     *
+     * @param chunk the parsed rows, in file order
+     * @param pending the queue to add the rows to
+     * @param pendingUsernames the usernames of queued rows
+     * @param pendingEmails the emails of queued rows
+     */
+    private void submitChunk(List<ParsedRow> chunk, Deque<PendingUser> pending,
+                             Set<String> pendingUsernames, Set<String> pendingEmails) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        Set<String> existingUsernames = userService.findExistingUsernames(chunk.stream()
+                .filter(parsed -> parsed.row() != null)
+                .map(parsed -> parsed.row().username())
+                .collect(Collectors.toSet()));
+        Set<String> existingEmails = userService.findExistingEmails(chunk.stream()
+                .filter(parsed -> parsed.row() != null)
+                .map(parsed -> parsed.row().email())
+                .collect(Collectors.toSet()));
+
+        for (ParsedRow parsed : chunk) {
+            ImportRow row = parsed.row();
+            if (row == null) {
+                pending.add(new PendingUser(parsed, null, parsed.error()));
+                continue;
+            }
+            String rejection = null;
+            if (existingUsernames.contains(row.username())) {
+                rejection = "Username already exists: " + row.username();
+            } else if (existingEmails.contains(row.email())) {
+                rejection = "Email already exists: " + row.email();
+            } else if (pendingUsernames.contains(row.username())) {
+                rejection = "Duplicate username in file: " + row.username();
+            } else if (pendingEmails.contains(row.email())) {
+                rejection = "Duplicate email in file: " + row.email();
+            }
+
+            if (rejection != null) {
+                pending.add(new PendingUser(parsed, null, rejection));
+            } else {
+                pendingUsernames.add(row.username());
+                pendingEmails.add(row.email());
+                pending.add(new PendingUser(parsed,
+                        CompletableFuture.supplyAsync(() -> createUserFromRow(row), importExecutor), null));
+            }
+        }
+    }
+
+    /**
+     * Waits for the oldest pending users to be hashed and inserts them as one batch.
+     *
+     * @param pending the queued rows, in file order
+     * @param pendingUsernames the usernames of queued rows
+     * @param pendingEmails the emails of queued rows
+     * @param listener the listener to report the outcome of each row to
+     */
+    private void importBatch(Deque<PendingUser> pending, Set<String> pendingUsernames, Set<String> pendingEmails,
+                             ImportListener listener) {
+        List<PendingUser> batch = new ArrayList<>(BATCH_SIZE);
+        while (batch.size() < BATCH_SIZE && !pending.isEmpty()) {
+            batch.add(pending.poll());
+        }
+
+        User[] hashed = new User[batch.size()];
+        String[] hashFailures = new String[batch.size()];
+        List<User> users = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            PendingUser next = batch.get(i);
+            if (next.hashed() == null) {
+                continue;
+            }
+            try {
+                hashed[i] = next.hashed().join();
+                users.add(hashed[i]);
+            } catch (CompletionException e) {
+                logger.warn("Skipping record due to processing error: {}", e.getCause().getMessage());
+                hashFailures[i] = e.getCause().getMessage();
+            }
+        }
+
+        Map<User, Exception> failures = new IdentityHashMap<>();
+        if (!users.isEmpty()) {
+            userService.createUsers(users, failures::put);
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            PendingUser next = batch.get(i);
+            long recordNumber = next.parsed().recordNumber();
+            ImportRow row = next.parsed().row();
+            if (row == null) {
+                listener.skipped(recordNumber, next.rejection());
+                continue;
+            }
+            if (next.rejection() != null) {
+                listener.failed(recordNumber, row.username(), next.rejection());
+                continue;
+            }
+            pendingUsernames.remove(row.username());
+            pendingEmails.remove(row.email());
+            if (hashed[i] == null) {
+                listener.skipped(recordNumber, hashFailures[i]);
+            } else if (failures.containsKey(hashed[i])) {
+                listener.failed(recordNumber, hashed[i].getUsername(), failures.get(hashed[i]).getMessage());
+            } else {
+                listener.imported(recordNumber, hashed[i]);
             }
-        } catch (Exception e) {
-            logger.error("Error parsing CSV file: {}", e.getMessage(), e);
-            return new ArrayList<>();
         }
-        
-        return results;
+        ParsedRow last = batch.get(batch.size() - 1).parsed();
+        listener.committed(last.recordNumber(), last.characterPosition());
+        logger.info("Imported batch of {} users, {} failed, {} rejected before hashing",
+                users.size(), failures.size(), batch.size() - users.size());
     }
-    
+
     private boolean isEmptyRecord(CSVRecord record, int expectedSize) {
-        return record.size() != expectedSize || 
-               record.get("username").trim().isEmpty() || 
+        return record.size() != expectedSize ||
+               record.get("username").trim().isEmpty() ||
                record.get("email").trim().isEmpty();
     }
-    
-    private User createUserFromRecord(CSVRecord record) {
-        User user = new User(
-                record.get("username").trim(),
-                record.get("email").trim(),
-                passwordEncoder.encode(record.get("password").trim())
-        );
-        
-        String activeStr = record.get("active").trim();
-        user.setActive(!activeStr.isEmpty() && Boolean.parseBoolean(activeStr));
-        
-        String rolesStr = record.get("roles").trim();
-        Set<String> roles = parseRoles(rolesStr);
-        if (roles.isEmpty()) {
-            roles.add("ROLE_USER");
-        }
-        user.setRoles(roles);
-        
+
+    private User createUserFromRow(ImportRow row) {
+        User user = new User(row.username(), row.email(), passwordEncoder.encode(row.password()));
+        user.setActive(row.active());
+        user.setRoles(row.roles());
         return user;
     }
-    
-    private Set<String> parseRoles(String rolesStr) {
+
+    private static Set<String> parseRoles(String rolesStr) {
         if (rolesStr.isEmpty()) {
             return new HashSet<>();
         }
-        
+
         return Arrays.stream(rolesStr.split(","))
                 .map(String::trim)
                 .filter(role -> !role.isEmpty())
                 .collect(Collectors.toSet());
     }
-} 
\ No newline at end of file
+
+    /**
+     * Receives the outcome of every imported record.
+     */
+    public interface ImportListener {
+
+        /**
+         * Called when a record was imported.
+         *
+         * @param recordNumber the number of the record in the file, starting at 1
+         * @param user the created user
+         */
+        void imported(long recordNumber, User user);
+
+        /**
+         * Called when a user could not be created.
+         *
+         * @param recordNumber the number of the record in the file, starting at 1
+         * @param username the username of the record
+         * @param message the reason
+         */
+        void failed(long recordNumber, String username, String message);
+
+        /**
+         * Called when a record could not be read or hashed.
+         *
+         * @param recordNumber the number of the record in the file, starting at 1
+         * @param message the reason
+         */
+        default void skipped(long recordNumber, String message) {
+        }
+
+        /**
+         * Called once the outcome of every record up to and including a record is final, after
+         * that record's batch was written.
+         *
+         * @param recordNumber the number of the last committed record
+         * @param characterPosition the character position of that record in the file
+         */
+        default void committed(long recordNumber, long characterPosition) {
+        }
+    }
+
+    /**
+     * A record as read from the file: either its fields or the reason they could not be read.
+     */
+    private record ParsedRow(long recordNumber, long characterPosition, ImportRow row, String error) {
+    }
+
+    /**
+     * A row waiting to be inserted: either being hashed or already rejected.
+     */
+    private record PendingUser(ParsedRow parsed, CompletableFuture<User> hashed, String rejection) {
+    }
+
+    /**
+     * The fields of a CSV record, read on the parsing thread so that records are not retained
+     * while their passwords are hashed.
+     */
+    private record ImportRow(String username, String email, String password, boolean active, Set<String> roles) {
+
+        static ImportRow of(CSVRecord record) {
+            String activeStr = record.get("active").trim();
+            Set<String> roles = parseRoles(record.get("roles").trim());
+            if (roles.isEmpty()) {
+                roles.add("ROLE_USER");
+            }
+            return new ImportRow(
+                    record.get("username").trim(),
+                    record.get("email").trim(),
+                    record.get("password").trim(),
+                    !activeStr.isEmpty() && Boolean.parseBoolean(activeStr),
+                    roles);
+        }
+    }
+}
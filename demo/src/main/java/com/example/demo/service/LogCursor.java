@@ -0,0 +1,69 @@
+package com.example.demo.service;
+
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.query.Criteria;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Opaque position in a keyset-paginated log listing.
+ * Logs are listed newest first by timestamp and then id; a cursor records both of the last
+ * document of a slice, so the next slice starts right after it whatever its depth.
+ *
+ * @param timestamp the timestamp of the last document
+ * @param id the id of the last document
+ */
+public record LogCursor(Instant timestamp, String id) {
+    private static final String VERSION = "1";
+    private static final String SEPARATOR = "\n";
+
+    /**
+     * Decodes a cursor returned by a previous call.
+     *
+     * @param cursor the encoded cursor
+     * @return the decoded cursor
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public static LogCursor decode(String cursor) {
+        String[] parts;
+        try {
+            parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(SEPARATOR, -1);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+        if (parts.length != 3 || !VERSION.equals(parts[0]) || parts[2].isEmpty()) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        try {
+            return new LogCursor(Instant.parse(parts[1]), parts[2]);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+
+    /**
+     * Selects the documents listed after this cursor's position.
+     *
+     * @return criteria matching older documents, and documents as old with a smaller id
+     */
+    public Criteria after() {
+        // Restore the BSON type of the id so that it compares with the stored ids
+        Object idValue = ObjectId.isValid(id) ? new ObjectId(id) : id;
+        return new Criteria().orOperator(
+            Criteria.where("timestamp").lt(timestamp),
+            Criteria.where("timestamp").is(timestamp).and("id").lt(idValue));
+    }
+
+    /**
+     * Encodes this cursor as an opaque URL-safe string.
+     *
+     * @return the encoded cursor
+     */
+    public String encode() {
+        String raw = String.join(SEPARATOR, VERSION, timestamp.toString(), id);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
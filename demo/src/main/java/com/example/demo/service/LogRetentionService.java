@@ -0,0 +1,282 @@
+package com.example.demo.service;
+
+import com.example.demo.CursorPage;
+import com.example.demo.config.RetentionProperties;
+import com.example.demo.model.mongo.AnalyticsData;
+import com.example.demo.model.mongo.AuditLog;
+import com.example.demo.model.mongo.UserActivity;
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.CreateCollectionOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.InsertManyOptions;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the Mongo log collections small enough for their indexes to stay in memory.
+ * Activities and analytics events expire through a TTL index on their timestamp, or through the
+ * collection expiry when analytics are stored as a time series. Audit logs older than the hot
+ * retention are moved, oldest first and in batches, into one compressed archive collection per
+ * month ({@code audit_logs_archive_yyyy_MM}); archive months past the archive retention are
+ * dropped whole. A batch is copied before it is deleted and copies ignore documents already
+ * archived, so an interrupted run loses nothing and can simply be repeated.
+ */
+@Service
+public class LogRetentionService {
+    private static final Logger logger = LoggerFactory.getLogger(LogRetentionService.class);
+    private static final String TTL_INDEX = "timestamp_ttl";
+    private static final String ARCHIVE_PREFIX = "audit_logs_archive_";
+    private static final DateTimeFormatter PARTITION_FORMAT = DateTimeFormatter.ofPattern("yyyy_MM");
+    private static final Sort NEWEST_FIRST = Sort.by(Sort.Direction.DESC, "timestamp", "id");
+
+    private final MongoOperations mongoOperations;
+    private final RetentionProperties properties;
+    private final Set<String> knownPartitions = ConcurrentHashMap.newKeySet();
+
+    public LogRetentionService(MongoOperations mongoOperations, RetentionProperties properties) {
+        this.mongoOperations = Objects.requireNonNull(mongoOperations, "MongoOperations must not be null");
+        this.properties = Objects.requireNonNull(properties, "RetentionProperties must not be null");
+    }
+
+    /**
+     * Creates, updates or removes the expiry of the best-effort collections to match the configuration.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void applyExpiry() {
+        applyExpiry(mongoOperations.getCollectionName(UserActivity.class), properties.getActivity());
+        applyExpiry(mongoOperations.getCollectionName(AnalyticsData.class), properties.getAnalytics());
+    }
+
+    /**
+     * Archives the audit logs that left the hot retention period.
+     */
+    @Scheduled(fixedDelayString = "${app.logging.retention.archive-interval:PT1H}")
+    public void archiveOnSchedule() {
+        try {
+            archiveAuditLogs(Instant.now());
+        } catch (RuntimeException e) {
+            logger.error("Audit log archival failed: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Moves the audit logs older than the hot retention into the archive and drops expired
+     * archive months.
+     *
+     * @param now the current time
+     * @return the number of archived audit logs
+     */
+    public synchronized long archiveAuditLogs(Instant now) {
+        long archived = 0;
+        if (RetentionProperties.isLimited(properties.getAudit())) {
+            String hot = mongoOperations.getCollectionName(AuditLog.class);
+            Query oldest = Query.query(Criteria.where("timestamp").lt(now.minus(properties.getAudit())))
+                .with(Sort.by(Sort.Direction.ASC, "timestamp"))
+                .limit(properties.getArchiveBatchSize());
+            List<Document> batch;
+            while (!(batch = mongoOperations.find(oldest, Document.class, hot)).isEmpty()) {
+                Map<String, List<Document>> byPartition = new LinkedHashMap<>();
+                List<Object> ids = new ArrayList<>(batch.size());
+                for (Document document : batch) {
+                    byPartition.computeIfAbsent(partitionOf(document.getDate("timestamp").toInstant()),
+                        partition -> new ArrayList<>()).add(document);
+                    ids.add(document.get("_id"));
+                }
+                byPartition.forEach(this::copy);
+                mongoOperations.getCollection(hot).deleteMany(Filters.in("_id", ids));
+                archived += batch.size();
+            }
+            if (archived > 0) {
+                logger.info("Archived {} audit logs", archived);
+            }
+        }
+        dropExpiredPartitions(now);
+        return archived;
+    }
+
+    /**
+     * Lists archived audit logs newest first, one slice at a time.
+     *
+     * @param userId the user, or null for every user
+     * @param from the earliest timestamp, inclusive
+     * @param to the latest timestamp, exclusive
+     * @param cursor the cursor returned with the previous slice, or null for the first slice
+     * @param size the maximum number of entries in the slice, at most {@value MongoLoggingService#MAX_PAGE_SIZE}
+     * @return slice of archived entries
+     * @throws IllegalArgumentException if the range, cursor or size are invalid
+     */
+    public CursorPage<AuditLog> scrollAuditArchive(String userId, Instant from, Instant to, String cursor, int size) {
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("from must be before to");
+        }
+        if (size < 1 || size > MongoLoggingService.MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Size must be between 1 and " + MongoLoggingService.MAX_PAGE_SIZE);
+        }
+        LogCursor after = cursor == null || cursor.isBlank() ? null : LogCursor.decode(cursor);
+        Set<String> partitions = mongoOperations.getCollectionNames();
+
+        // Months are disjoint, so reading them newest first keeps the overall order
+        List<AuditLog> entries = new ArrayList<>();
+        YearMonth first = YearMonth.from(from.atOffset(ZoneOffset.UTC));
+        for (YearMonth month = YearMonth.from(to.minusNanos(1).atOffset(ZoneOffset.UTC));
+             !month.isBefore(first) && entries.size() <= size; month = month.minusMonths(1)) {
+            String partition = ARCHIVE_PREFIX + month.format(PARTITION_FORMAT);
+            if (!partitions.contains(partition)) {
+                continue;
+            }
+            Query query = new Query();
+            if (userId != null) {
+                query.addCriteria(Criteria.where("userId").is(userId));
+            }
+            query.addCriteria(Criteria.where("timestamp").gte(from).lt(to));
+            if (after != null) {
+                query.addCriteria(after.after());
+            }
+            query.with(NEWEST_FIRST).limit(size + 1 - entries.size());
+            entries.addAll(mongoOperations.find(query, AuditLog.class, partition));
+        }
+
+        boolean hasNext = entries.size() > size;
+        if (hasNext) {
+            entries = entries.subList(0, size);
+        }
+        String nextCursor = null;
+        if (hasNext) {
+            AuditLog last = entries.get(entries.size() - 1);
+            nextCursor = new LogCursor(last.getTimestamp(), last.getId()).encode();
+        }
+        return new CursorPage<>(entries, nextCursor, hasNext, null);
+    }
+
+    private void applyExpiry(String collection, Duration retention) {
+        try {
+            Document info = mongoOperations.execute(db ->
+                db.listCollections().filter(new Document("name", collection)).first());
+            if (info != null && "timeseries".equals(info.getString("type"))) {
+                mongoOperations.executeCommand(new Document("collMod", collection).append("expireAfterSeconds",
+                    RetentionProperties.isLimited(retention) ? (Object) retention.toSeconds() : "off"));
+                return;
+            }
+            IndexOperations indexOperations = mongoOperations.indexOps(collection);
+            IndexInfo existing = indexOperations.getIndexInfo().stream()
+                .filter(index -> TTL_INDEX.equals(index.getName()))
+                .findFirst()
+                .orElse(null);
+            if (!RetentionProperties.isLimited(retention)) {
+                if (existing != null) {
+                    indexOperations.dropIndex(TTL_INDEX);
+                    logger.info("Removed the expiry of {}", collection);
+                }
+                return;
+            }
+            if (existing == null) {
+                indexOperations.ensureIndex(new Index().on("timestamp", Sort.Direction.ASC).named(TTL_INDEX).expire(retention));
+            } else if (existing.getExpireAfter().map(Duration::toSeconds).orElse(-1L) != retention.toSeconds()) {
+                mongoOperations.executeCommand(new Document("collMod", collection).append("index",
+                    new Document("name", TTL_INDEX).append("expireAfterSeconds", retention.toSeconds())));
+            }
+            logger.info("Documents of {} expire after {}", collection, retention);
+        } catch (RuntimeException e) {
+            logger.warn("Could not apply the retention of {}: {}", collection, e.getMessage());
+        }
+    }
+
+    /**
+     * Copies documents into an archive month, skipping those a previous, interrupted run already copied.
+     */
+    private void copy(String partition, List<Document> documents) {
+        MongoCollection<Document> archive = ensurePartition(partition);
+        try {
+            archive.insertMany(documents, new InsertManyOptions().ordered(false));
+        } catch (MongoBulkWriteException e) {
+            boolean onlyDuplicates = e.getWriteErrors().stream()
+                .allMatch(error -> ErrorCategory.fromErrorCode(error.getCode()) == ErrorCategory.DUPLICATE_KEY);
+            if (!onlyDuplicates) {
+                throw e;
+            }
+        }
+    }
+
+    private MongoCollection<Document> ensurePartition(String partition) {
+        MongoCollection<Document> archive = mongoOperations.getCollection(partition);
+        if (knownPartitions.contains(partition)) {
+            return archive;
+        }
+        if (!mongoOperations.collectionExists(partition)) {
+            try {
+                mongoOperations.execute(db -> {
+                    db.createCollection(partition, new CreateCollectionOptions().storageEngineOptions(
+                        new Document("wiredTiger", new Document("configString",
+                            "block_compressor=" + properties.getArchiveCompressor()))));
+                    return null;
+                });
+                logger.info("Created audit log archive {}", partition);
+            } catch (RuntimeException e) {
+                // Another node may have created it in the meantime
+                if (!mongoOperations.collectionExists(partition)) {
+                    throw e;
+                }
+            }
+        }
+        archive.createIndex(Indexes.ascending("userId", "timestamp", "_id"));
+        archive.createIndex(Indexes.ascending("timestamp", "_id"));
+        knownPartitions.add(partition);
+        return archive;
+    }
+
+    private void dropExpiredPartitions(Instant now) {
+        if (!RetentionProperties.isLimited(properties.getAuditArchive())) {
+            return;
+        }
+        Instant cutoff = now.minus(properties.getAuditArchive());
+        for (String name : mongoOperations.getCollectionNames()) {
+            if (!name.startsWith(ARCHIVE_PREFIX)) {
+                continue;
+            }
+            YearMonth month;
+            try {
+                month = YearMonth.parse(name.substring(ARCHIVE_PREFIX.length()), PARTITION_FORMAT);
+            } catch (DateTimeParseException e) {
+                continue;
+            }
+            if (month.plusMonths(1).atDay(1).atStartOfDay().toInstant(ZoneOffset.UTC).isBefore(cutoff)) {
+                mongoOperations.dropCollection(name);
+                knownPartitions.remove(name);
+                logger.info("Dropped expired audit log archive {}", name);
+            }
+        }
+    }
+
+    private static String partitionOf(Instant timestamp) {
+        return ARCHIVE_PREFIX + YearMonth.from(timestamp.atOffset(ZoneOffset.UTC)).format(PARTITION_FORMAT);
+    }
+}
@@ -1,45 +1,203 @@
 package com.example.demo.service;
 
+import com.example.demo.CursorPage;
+import com.example.demo.UserActivityService;
+import com.example.demo.config.WriteBehindProperties;
 import com.example.demo.model.mongo.*;
 import com.example.demo.repository.mongo.*;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mongodb.bulk.BulkWriteError;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+/**
+ * Writes and reads the Mongo log collections.
+ * Activity, analytics and audit events are assigned their id up front and written through
+ * {@link WriteBehindBuffer}s as unordered bulk inserts; reads of a collection first flush its
+ * buffer so that they see the events logged before them. Batches of events submitted together are
+ * validated in one pass and written directly with one unordered bulk insert per batch, reporting
+ * the outcome of each event. Session touches and invalidations are single atomic updates, and
+ * repeated touches of a session within {@code app.logging.session.touch-interval} are coalesced
+ * into the first one. Listings are read newest first by keyset pagination on
+ * {@code (timestamp, _id)} or streamed from a cursor, optionally projected to some fields, so
+ * that neither holds more than one page of documents in memory. Every logged activity is also
+ * recorded by the {@link UserActivityService}, which replays the log after a restart.
+ */
 @Service
 public class MongoLoggingService {
     private final UserActivityRepository userActivityRepository;
     private final AnalyticsDataRepository analyticsDataRepository;
     private final UserSessionRepository userSessionRepository;
     private final AuditLogRepository auditLogRepository;
+    private final WriteBehindBuffer<UserActivity> activityBuffer;
+    private final WriteBehindBuffer<AnalyticsData> analyticsBuffer;
+    private final WriteBehindBuffer<AuditLog> auditBuffer;
+    private final MongoOperations mongoOperations;
+    private final UserActivityService userActivityService;
+    private final int maxBatchSize;
+    private final Cache<String, Boolean> recentTouches;
+    private final String nodeId;
+
+    /** The largest page a listing returns. */
+    public static final int MAX_PAGE_SIZE = 1000;
+    private static final Sort NEWEST_FIRST = Sort.by(Sort.Direction.DESC, "timestamp", "id");
+    private static final Set<String> ACTIVITY_FIELDS =
+        Set.of("userId", "action", "details", "ipAddress", "userAgent", "timestamp");
+    private static final Set<String> ANALYTICS_FIELDS = Set.of("eventType", "userId", "metadata", "timestamp");
+    private static final Set<String> AUDIT_FIELDS = Set.of("userId", "action", "resourceType", "resourceId",
+        "changes", "ipAddress", "status", "details", "timestamp");
 
     public MongoLoggingService(UserActivityRepository userActivityRepository,
                               AnalyticsDataRepository analyticsDataRepository,
                               UserSessionRepository userSessionRepository,
-                              AuditLogRepository auditLogRepository) {
+                              AuditLogRepository auditLogRepository,
+                              MongoOperations mongoOperations,
+                              WriteBehindProperties writeBehindProperties,
+                              MeterRegistry meterRegistry,
+                              UserActivityService userActivityService,
+                              @Value("${app.logging.bulk.max-events:10000}") int maxBatchSize,
+                              @Value("${app.logging.session.touch-interval:PT5S}") Duration touchInterval,
+                              @Value("${app.activity.node-id:local}") String nodeId) {
         this.userActivityRepository = userActivityRepository;
         this.analyticsDataRepository = analyticsDataRepository;
         this.userSessionRepository = userSessionRepository;
         this.auditLogRepository = auditLogRepository;
+        this.mongoOperations = mongoOperations;
+        this.userActivityService = userActivityService;
+        this.nodeId = nodeId;
+        this.maxBatchSize = maxBatchSize;
+        this.recentTouches = touchInterval.isZero() ? null : Caffeine.newBuilder()
+            .expireAfterWrite(touchInterval)
+            .maximumSize(100_000)
+            .build();
+        WriteBehindBuffer.BatchWriter<UserActivity> activityWriter = bulkInsert(mongoOperations, UserActivity.class);
+        this.activityBuffer = new WriteBehindBuffer<>("activity", documents -> {
+            // Count only the activities that reached the log, not those dropped or rejected
+            Collection<Integer> failed = activityWriter.write(documents);
+            for (int i = 0; i < documents.size(); i++) {
+                if (!failed.contains(i)) {
+                    recordActivity(documents.get(i));
+                }
+            }
+            return failed;
+        }, writeBehindProperties, meterRegistry);
+        this.analyticsBuffer = new WriteBehindBuffer<>("analytics",
+            bulkInsert(mongoOperations, AnalyticsData.class), writeBehindProperties, meterRegistry);
+        this.auditBuffer = new WriteBehindBuffer<>("audit",
+            bulkInsert(mongoOperations, AuditLog.class), writeBehindProperties, meterRegistry);
+    }
+
+    /**
+     * Writes the events still buffered before shutdown.
+     */
+    @PreDestroy
+    public void close() {
+        activityBuffer.close();
+        analyticsBuffer.close();
+        auditBuffer.close();
     }
 
     public UserActivity logUserActivity(String userId, String action, String details, String ipAddress, String userAgent) {
         UserActivity activity = new UserActivity(userId, action, details, ipAddress, userAgent);
-        return userActivityRepository.save(activity);
+        activity.setId(new ObjectId().toHexString());
+        activity.setNodeId(nodeId);
+        activityBuffer.add(activity);
+        return activity;
+    }
+
+    /**
+     * Logs a batch of user activities.
+     * Activities without a timestamp, IP address or user agent are given the time of the call and
+     * the client's address and user agent.
+     *
+     * @param activities the activities, null for events that could not be read
+     * @param ipAddress the client's IP address
+     * @param userAgent the client's user agent
+     * @return the outcome of each activity
+     * @throws IllegalArgumentException if the batch is larger than {@code app.logging.bulk.max-events}
+     */
+    public BulkLogResult logUserActivities(List<UserActivity> activities, String ipAddress, String userAgent) {
+        Instant now = Instant.now();
+        return insertAll(activities, UserActivity.class, activity -> {
+            if (isBlank(activity.getUserId())) {
+                return "userId is required";
+            }
+            return isBlank(activity.getAction()) ? "action is required" : null;
+        }, activity -> {
+            if (activity.getTimestamp() == null) {
+                activity.setTimestamp(now);
+            }
+            if (activity.getIpAddress() == null) {
+                activity.setIpAddress(ipAddress);
+            }
+            if (activity.getUserAgent() == null) {
+                activity.setUserAgent(userAgent);
+            }
+            activity.setNodeId(nodeId);
+        }, this::recordActivity);
     }
 
     public List<UserActivity> getUserActivities(String userId) {
+        activityBuffer.flush();
         return userActivityRepository.findByUserIdOrderByTimestampDesc(userId);
     }
 
     public AnalyticsData logAnalyticsEvent(String eventType, String userId, Map<String, Object> metadata) {
         AnalyticsData analyticsData = new AnalyticsData(eventType, userId, metadata);
-        return analyticsDataRepository.save(analyticsData);
+        analyticsData.setId(new ObjectId().toHexString());
+        analyticsBuffer.add(analyticsData);
+        return analyticsData;
+    }
+
+    /**
+     * Logs a batch of analytics events.
+     * Events without a timestamp are given the time of the call.
+     *
+     * @param events the events, null for events that could not be read
+     * @return the outcome of each event
+     * @throws IllegalArgumentException if the batch is larger than {@code app.logging.bulk.max-events}
+     */
+    public BulkLogResult logAnalyticsEvents(List<AnalyticsData> events) {
+        Instant now = Instant.now();
+        return insertAll(events, AnalyticsData.class, event -> {
+            if (isBlank(event.getEventType())) {
+                return "eventType is required";
+            }
+            return isBlank(event.getUserId()) ? "userId is required" : null;
+        }, event -> {
+            if (event.getTimestamp() == null) {
+                event.setTimestamp(now);
+            }
+        }, event -> { });
     }
 
     public List<AnalyticsData> getAnalyticsByEventType(String eventType) {
+        analyticsBuffer.flush();
         return analyticsDataRepository.findByEventType(eventType);
     }
 
@@ -52,45 +210,333 @@ public class MongoLoggingService {
         return userSessionRepository.findBySessionTokenAndActive(sessionToken, true);
     }
 
+    /**
+     * Records that a session was used, unless it was already touched within the touch interval.
+     * The touch is claimed before the update so that concurrent requests write once, and released
+     * if the update fails so that the next request retries it.
+     *
+     * @param sessionToken the session token
+     */
     public void updateSessionActivity(String sessionToken) {
-        userSessionRepository.findBySessionToken(sessionToken)
-            .ifPresent(session -> {
-                session.setLastAccessTime(Instant.now());
-                userSessionRepository.save(session);
-            });
+        if (recentTouches != null && recentTouches.asMap().putIfAbsent(sessionToken, Boolean.TRUE) != null) {
+            return;
+        }
+        try {
+            mongoOperations.updateFirst(bySessionToken(sessionToken),
+                Update.update("lastAccessTime", Instant.now()), UserSession.class);
+        } catch (RuntimeException e) {
+            if (recentTouches != null) {
+                recentTouches.invalidate(sessionToken);
+            }
+            throw e;
+        }
     }
 
+    /**
+     * Marks a session inactive.
+     *
+     * @param sessionToken the session token
+     */
     public void invalidateSession(String sessionToken) {
-        userSessionRepository.findBySessionToken(sessionToken)
-            .ifPresent(session -> {
-                session.setActive(false);
-                userSessionRepository.save(session);
-            });
+        mongoOperations.updateFirst(bySessionToken(sessionToken),
+            Update.update("active", false), UserSession.class);
+        if (recentTouches != null) {
+            recentTouches.invalidate(sessionToken);
+        }
+    }
+
+    /**
+     * Lists user activities newest first, one slice at a time.
+     *
+     * @param userId the user, or null for every user
+     * @param from the earliest timestamp, inclusive, or null for no lower bound
+     * @param to the latest timestamp, exclusive, or null for no upper bound
+     * @param cursor the cursor returned with the previous slice, or null for the first slice
+     * @param size the maximum number of activities in the slice, at most {@value #MAX_PAGE_SIZE}
+     * @param fields the comma-separated fields to return besides the id, or null for all
+     * @return slice of activities
+     * @throws IllegalArgumentException if the cursor, size or fields are invalid
+     */
+    public CursorPage<UserActivity> scrollUserActivities(String userId, Instant from, Instant to,
+                                                         String cursor, int size, String fields) {
+        activityBuffer.flush();
+        return scroll(UserActivity.class, logQuery("userId", userId, from, to, fields, ACTIVITY_FIELDS), cursor, size,
+            activity -> new LogCursor(activity.getTimestamp(), activity.getId()));
+    }
+
+    /**
+     * Streams user activities newest first. The caller must close the stream.
+     *
+     * @param userId the user, or null for every user
+     * @param from the earliest timestamp, inclusive, or null for no lower bound
+     * @param to the latest timestamp, exclusive, or null for no upper bound
+     * @param fields the comma-separated fields to return besides the id, or null for all
+     * @return the activities, read from a database cursor
+     * @throws IllegalArgumentException if the fields are invalid
+     */
+    public Stream<UserActivity> streamUserActivities(String userId, Instant from, Instant to, String fields) {
+        activityBuffer.flush();
+        return mongoOperations.stream(
+            logQuery("userId", userId, from, to, fields, ACTIVITY_FIELDS).with(NEWEST_FIRST), UserActivity.class);
+    }
+
+    /**
+     * Lists analytics events newest first, one slice at a time.
+     *
+     * @param eventType the event type, or null for every type
+     * @param from the earliest timestamp, inclusive, or null for no lower bound
+     * @param to the latest timestamp, exclusive, or null for no upper bound
+     * @param cursor the cursor returned with the previous slice, or null for the first slice
+     * @param size the maximum number of events in the slice, at most {@value #MAX_PAGE_SIZE}
+     * @param fields the comma-separated fields to return besides the id, or null for all
+     * @return slice of events
+     * @throws IllegalArgumentException if the cursor, size or fields are invalid
+     */
+    public CursorPage<AnalyticsData> scrollAnalytics(String eventType, Instant from, Instant to,
+                                                     String cursor, int size, String fields) {
+        analyticsBuffer.flush();
+        return scroll(AnalyticsData.class, logQuery("eventType", eventType, from, to, fields, ANALYTICS_FIELDS),
+            cursor, size, event -> new LogCursor(event.getTimestamp(), event.getId()));
+    }
+
+    /**
+     * Streams analytics events newest first. The caller must close the stream.
+     *
+     * @param eventType the event type, or null for every type
+     * @param from the earliest timestamp, inclusive, or null for no lower bound
+     * @param to the latest timestamp, exclusive, or null for no upper bound
+     * @param fields the comma-separated fields to return besides the id, or null for all
+     * @return the events, read from a database cursor
+     * @throws IllegalArgumentException if the fields are invalid
+     */
+    public Stream<AnalyticsData> streamAnalytics(String eventType, Instant from, Instant to, String fields) {
+        analyticsBuffer.flush();
+        return mongoOperations.stream(
+            logQuery("eventType", eventType, from, to, fields, ANALYTICS_FIELDS).with(NEWEST_FIRST), AnalyticsData.class);
+    }
+
+    /**
+     * Lists audit log entries newest first, one slice at a time.
+     *
+     * @param userId the user, or null for every user
+     * @param from the earliest timestamp, inclusive, or null for no lower bound
+     * @param to the latest timestamp, exclusive, or null for no upper bound
+     * @param cursor the cursor returned with the previous slice, or null for the first slice
+     * @param size the maximum number of entries in the slice, at most {@value #MAX_PAGE_SIZE}
+     * @param fields the comma-separated fields to return besides the id, or null for all
+     * @return slice of entries
+     * @throws IllegalArgumentException if the cursor, size or fields are invalid
+     */
+    public CursorPage<AuditLog> scrollAuditLogs(String userId, Instant from, Instant to,
+                                                String cursor, int size, String fields) {
+        auditBuffer.flush();
+        return scroll(AuditLog.class, logQuery("userId", userId, from, to, fields, AUDIT_FIELDS), cursor, size,
+            auditLog -> new LogCursor(auditLog.getTimestamp(), auditLog.getId()));
+    }
+
+    /**
+     * Streams audit log entries newest first. The caller must close the stream.
+     *
+     * @param userId the user, or null for every user
+     * @param from the earliest timestamp, inclusive, or null for no lower bound
+     * @param to the latest timestamp, exclusive, or null for no upper bound
+     * @param fields the comma-separated fields to return besides the id, or null for all
+     * @return the entries, read from a database cursor
+     * @throws IllegalArgumentException if the fields are invalid
+     */
+    public Stream<AuditLog> streamAuditLogs(String userId, Instant from, Instant to, String fields) {
+        auditBuffer.flush();
+        return mongoOperations.stream(
+            logQuery("userId", userId, from, to, fields, AUDIT_FIELDS).with(NEWEST_FIRST), AuditLog.class);
+    }
+
+    /**
+     * Builds the filter and projection of a log listing. The timestamp is always returned
+     * because cursors are built from it.
+     */
+    private static Query logQuery(String keyField, String key, Instant from, Instant to,
+                                  String fields, Set<String> projectable) {
+        Query query = new Query();
+        if (key != null) {
+            query.addCriteria(Criteria.where(keyField).is(key));
+        }
+        if (from != null || to != null) {
+            Criteria timestamp = Criteria.where("timestamp");
+            if (from != null) {
+                timestamp.gte(from);
+            }
+            if (to != null) {
+                timestamp.lt(to);
+            }
+            query.addCriteria(timestamp);
+        }
+        if (fields != null && !fields.isBlank()) {
+            for (String field : fields.split(",")) {
+                String name = field.trim();
+                if (!projectable.contains(name)) {
+                    throw new IllegalArgumentException("Unknown field " + name + "; use any of " + projectable);
+                }
+                query.fields().include(name);
+            }
+            query.fields().include("timestamp");
+        }
+        return query;
+    }
+
+    private <T> CursorPage<T> scroll(Class<T> type, Query query, String cursor, int size,
+                                     Function<T, LogCursor> cursorOf) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        if (cursor != null && !cursor.isBlank()) {
+            query.addCriteria(LogCursor.decode(cursor).after());
+        }
+        query.with(NEWEST_FIRST).limit(size + 1);
+
+        List<T> documents = mongoOperations.find(query, type);
+        boolean hasNext = documents.size() > size;
+        if (hasNext) {
+            documents = documents.subList(0, size);
+        }
+        String nextCursor = hasNext ? cursorOf.apply(documents.get(documents.size() - 1)).encode() : null;
+        return new CursorPage<>(documents, nextCursor, hasNext, null);
+    }
+
+    private static Query bySessionToken(String sessionToken) {
+        return Query.query(Criteria.where("sessionToken").is(sessionToken));
     }
 
     public AuditLog createAuditLog(String userId, String action, String resourceType, String resourceId,
                                  Map<String, Object> changes, String ipAddress, String status, String details) {
         AuditLog auditLog = new AuditLog(userId, action, resourceType, resourceId, changes, ipAddress, status, details);
-        return auditLogRepository.save(auditLog);
+        auditLog.setId(new ObjectId().toHexString());
+        auditBuffer.add(auditLog);
+        return auditLog;
+    }
+
+    /**
+     * Creates a batch of audit log entries.
+     * Entries without a timestamp, IP address or status are given the time of the call, the
+     * client's address and a successful status.
+     *
+     * @param auditLogs the entries, null for entries that could not be read
+     * @param ipAddress the client's IP address
+     * @return the outcome of each entry
+     * @throws IllegalArgumentException if the batch is larger than {@code app.logging.bulk.max-events}
+     */
+    public BulkLogResult createAuditLogs(List<AuditLog> auditLogs, String ipAddress) {
+        Instant now = Instant.now();
+        return insertAll(auditLogs, AuditLog.class, auditLog -> {
+            if (isBlank(auditLog.getUserId())) {
+                return "userId is required";
+            }
+            if (isBlank(auditLog.getAction())) {
+                return "action is required";
+            }
+            if (isBlank(auditLog.getResourceType())) {
+                return "resourceType is required";
+            }
+            return isBlank(auditLog.getResourceId()) ? "resourceId is required" : null;
+        }, auditLog -> {
+            if (auditLog.getTimestamp() == null) {
+                auditLog.setTimestamp(now);
+            }
+            if (auditLog.getIpAddress() == null) {
+                auditLog.setIpAddress(ipAddress);
+            }
+            if (auditLog.getStatus() == null) {
+                auditLog.setStatus("SUCCESS");
+            }
+        }, auditLog -> { });
     }
 
     public List<AuditLog> getAuditLogsByUser(String userId) {
+        auditBuffer.flush();
         return auditLogRepository.findByUserId(userId);
     }
 
     public List<AuditLog> getAuditLogsByResource(String resourceType, String resourceId) {
+        auditBuffer.flush();
         return auditLogRepository.findByResourceTypeAndResourceId(resourceType, resourceId);
     }
 
     public List<UserActivity> getActivitiesBetween(Instant start, Instant end) {
+        activityBuffer.flush();
         return userActivityRepository.findByTimestampBetween(start, end);
     }
 
     public List<AnalyticsData> getAnalyticsBetween(Instant start, Instant end) {
+        analyticsBuffer.flush();
         return analyticsDataRepository.findByTimestampBetween(start, end);
     }
 
     public List<AuditLog> getAuditLogsBetween(Instant start, Instant end) {
+        auditBuffer.flush();
         return auditLogRepository.findByTimestampBetween(start, end);
     }
+
+    /**
+     * Validates a batch in one pass and writes the valid events with one unordered bulk insert,
+     * so that one bad event does not stop the others. Only the events the database accepted are
+     * passed to {@code written}.
+     */
+    private <T> BulkLogResult insertAll(List<T> events, Class<T> type, Function<T, String> validator,
+                                        Consumer<T> defaults, Consumer<T> written) {
+        if (events.size() > maxBatchSize) {
+            throw new IllegalArgumentException(
+                "A batch can hold at most " + maxBatchSize + " events, got " + events.size());
+        }
+        List<T> valid = new ArrayList<>(events.size());
+        List<Integer> positions = new ArrayList<>(events.size());
+        List<BulkLogResult.ItemError> errors = new ArrayList<>();
+        for (int i = 0; i < events.size(); i++) {
+            T event = events.get(i);
+            String problem = event == null ? "Event is missing or malformed" : validator.apply(event);
+            if (problem != null) {
+                errors.add(new BulkLogResult.ItemError(i, problem));
+                continue;
+            }
+            defaults.accept(event);
+            valid.add(event);
+            positions.add(i);
+        }
+
+        if (!valid.isEmpty()) {
+            Set<Integer> rejected = new HashSet<>();
+            try {
+                mongoOperations.bulkOps(BulkMode.UNORDERED, type).insert(valid).execute();
+            } catch (BulkOperationException e) {
+                for (BulkWriteError error : e.getErrors()) {
+                    rejected.add(error.getIndex());
+                    errors.add(new BulkLogResult.ItemError(positions.get(error.getIndex()), error.getMessage()));
+                }
+                errors.sort(Comparator.comparingInt(BulkLogResult.ItemError::index));
+            }
+            for (int i = 0; i < valid.size(); i++) {
+                if (!rejected.contains(i)) {
+                    written.accept(valid.get(i));
+                }
+            }
+        }
+        return new BulkLogResult(events.size(), events.size() - errors.size(), errors);
+    }
+
+    private void recordActivity(UserActivity activity) {
+        userActivityService.recordUserActivity(activity.getUserId(), activity.getAction(), activity.getTimestamp());
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    private static <T> WriteBehindBuffer.BatchWriter<T> bulkInsert(MongoOperations mongoOperations, Class<T> type) {
+        return documents -> {
+            try {
+                mongoOperations.bulkOps(BulkMode.UNORDERED, type).insert(documents).execute();
+                return Set.of();
+            } catch (BulkOperationException e) {
+                return e.getErrors().stream().map(BulkWriteError::getIndex).collect(Collectors.toSet());
+            }
+        };
+    }
 } 
\ No newline at end of file
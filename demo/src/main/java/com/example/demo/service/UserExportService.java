@@ -0,0 +1,209 @@
+package com.example.demo.service;
+
+import com.example.demo.UserRepository;
+import com.example.demo.UserSummaryDTO;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+/**
+ * Streams every user as {@link UserSummaryDTO} rows.
+ * Users are read through a database cursor and written as they arrive, flushing every
+ * {@value #FLUSH_INTERVAL} users, so memory use does not depend on the number of users.
+ */
+@Service
+public class UserExportService {
+    private static final Logger logger = LoggerFactory.getLogger(UserExportService.class);
+    private static final int FLUSH_INTERVAL = 1000;
+    private static final String[] CSV_HEADERS = {"id", "username", "email", "active", "roles"};
+
+    private final UserRepository userRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate readOnlyTransaction;
+
+    public UserExportService(UserRepository userRepository, ObjectMapper objectMapper,
+            PlatformTransactionManager transactionManager) {
+        this.userRepository = Objects.requireNonNull(userRepository, "UserRepository must not be null");
+        this.objectMapper = Objects.requireNonNull(objectMapper, "ObjectMapper must not be null");
+        this.readOnlyTransaction = new TransactionTemplate(
+            Objects.requireNonNull(transactionManager, "PlatformTransactionManager must not be null"));
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * Writes every user to the output, ordered by id.
+     *
+     * @param format the output format
+     * @param out the output to write to; left open
+     * @return the number of exported users
+     * @throws IOException if writing fails
+     */
+    public long exportUsers(Format format, OutputStream out) throws IOException {
+        long start = System.nanoTime();
+        long exported;
+        try {
+            exported = Objects.requireNonNull(readOnlyTransaction.execute(status -> {
+                try (Stream<UserRepository.UserExportRow> rows = userRepository.streamUserExportRows();
+                     RowWriter writer = format == Format.CSV ? new CsvRowWriter(out) : new NdjsonRowWriter(out)) {
+                    return writeUsers(rows.iterator(), writer);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        } catch (UncheckedIOException e) {
+            logger.warn("User export aborted: {}", e.getMessage());
+            throw e.getCause();
+        }
+        logger.info("Exported {} users as {} in {} ms", exported, format, (System.nanoTime() - start) / 1_000_000);
+        return exported;
+    }
+
+    private static long writeUsers(Iterator<UserRepository.UserExportRow> rows, RowWriter writer) throws IOException {
+        long exported = 0;
+        UserSummaryDTO current = null;
+        while (rows.hasNext()) {
+            UserRepository.UserExportRow row = rows.next();
+            if (current == null || !current.getId().equals(row.getId())) {
+                if (current != null) {
+                    writer.write(current);
+                    if (++exported % FLUSH_INTERVAL == 0) {
+                        writer.flush();
+                    }
+                }
+                current = new UserSummaryDTO(row.getId(), row.getUsername(), row.getEmail(),
+                    new TreeSet<>(), row.isActive());
+            }
+            if (row.getRole() != null) {
+                current.getRoles().add(row.getRole());
+            }
+        }
+        if (current != null) {
+            writer.write(current);
+            exported++;
+        }
+        return exported;
+    }
+
+    /**
+     * Supported export formats.
+     */
+    public enum Format {
+        NDJSON(MediaType.parseMediaType("application/x-ndjson"), "ndjson"),
+        CSV(MediaType.parseMediaType("text/csv;charset=UTF-8"), "csv");
+
+        private final MediaType mediaType;
+        private final String extension;
+
+        Format(MediaType mediaType, String extension) {
+            this.mediaType = mediaType;
+            this.extension = extension;
+        }
+
+        public MediaType getMediaType() {
+            return mediaType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        /**
+         * Parses a format name, ignoring case.
+         *
+         * @param name the format name
+         * @return the format
+         * @throws IllegalArgumentException if the format is not supported
+         */
+        public static Format fromString(String name) {
+            try {
+                return valueOf(name.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unsupported export format: " + name);
+            }
+        }
+    }
+
+    private interface RowWriter extends AutoCloseable {
+        void write(UserSummaryDTO user) throws IOException;
+
+        void flush() throws IOException;
+
+        @Override
+        void close() throws IOException;
+    }
+
+    private final class NdjsonRowWriter implements RowWriter {
+        private final JsonGenerator generator;
+
+        NdjsonRowWriter(OutputStream out) throws IOException {
+            this.generator = objectMapper.getFactory().createGenerator(out);
+            this.generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            // Rows are separated by newlines only, not by Jackson's default space between root values
+            this.generator.setRootValueSeparator(null);
+        }
+
+        @Override
+        public void write(UserSummaryDTO user) throws IOException {
+            generator.writeObject(user);
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void flush() throws IOException {
+            generator.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            generator.close();
+        }
+    }
+
+    private static final class CsvRowWriter implements RowWriter {
+        private final BufferedWriter output;
+        private final CSVPrinter printer;
+
+        CsvRowWriter(OutputStream out) throws IOException {
+            this.output = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            this.printer = new CSVPrinter(output, CSVFormat.Builder.create(CSVFormat.DEFAULT)
+                .setHeader(CSV_HEADERS)
+                .build());
+        }
+
+        @Override
+        public void write(UserSummaryDTO user) throws IOException {
+            printer.printRecord(user.getId(), user.getUsername(), user.getEmail(), user.isActive(),
+                String.join(",", user.getRoles()));
+        }
+
+        @Override
+        public void flush() throws IOException {
+            printer.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            // Flush without closing the response stream, which belongs to the caller
+            printer.flush();
+        }
+    }
+}
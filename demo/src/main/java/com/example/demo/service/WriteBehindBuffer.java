@@ -0,0 +1,339 @@
+package com.example.demo.service;
+
+import com.example.demo.config.WriteBehindProperties;
+import com.example.demo.config.WriteBehindProperties.Durability;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Buffers documents in a bounded queue and writes them in batches on a background thread.
+ * A batch is written once it reaches the batch size or its oldest document has waited for the
+ * maximum delay, whichever comes first. With {@link Durability#BEST_EFFORT} callers never wait
+ * and documents are dropped when the queue is full or their write fails; with
+ * {@link Durability#SYNC} callers wait until the batch holding their document has been written,
+ * so concurrent callers share one round trip. Queue depth, flush latency, written and dropped
+ * documents are published as {@code logging.writebehind.*} meters tagged with the stream name.
+ * {@link #flush()} and {@link #close()} cut the pending batch short instead of waiting for it to fill.
+ *
+ * @param <T> the document type
+ */
+public class WriteBehindBuffer<T> implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(WriteBehindBuffer.class);
+
+    private final String name;
+    private final BatchWriter<T> writer;
+    private final Durability durability;
+    private final int batchSize;
+    private final long maxDelayNanos;
+    private final long syncTimeoutMillis;
+    private final BlockingQueue<Entry<T>> queue;
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicInteger flushWaiters = new AtomicInteger();
+    /** Queued to wake the flusher while it waits for more documents; never written. */
+    private final Entry<T> flushSignal = new Entry<>(null, null);
+    private final AtomicBoolean signalQueued = new AtomicBoolean();
+    private final Object progress = new Object();
+    private long processed;
+    private volatile boolean running = true;
+    private final Thread flusher;
+
+    private final Counter writtenCounter;
+    private final Counter droppedCounter;
+    private final Timer flushTimer;
+
+    public WriteBehindBuffer(String name, BatchWriter<T> writer, WriteBehindProperties properties,
+                             MeterRegistry registry) {
+        this.name = name;
+        this.writer = writer;
+        this.durability = properties.durabilityOf(name);
+        this.batchSize = properties.getBatchSize();
+        this.maxDelayNanos = properties.getMaxDelay().toNanos();
+        this.syncTimeoutMillis = properties.getSyncTimeout().toMillis();
+        this.queue = new ArrayBlockingQueue<>(properties.getCapacity());
+
+        Gauge.builder("logging.writebehind.queue.depth", this, WriteBehindBuffer::size)
+            .tag("stream", name)
+            .description("Documents waiting to be written")
+            .register(registry);
+        this.writtenCounter = Counter.builder("logging.writebehind.written")
+            .tag("stream", name)
+            .description("Documents written by the write-behind buffer")
+            .register(registry);
+        this.droppedCounter = Counter.builder("logging.writebehind.dropped")
+            .tag("stream", name)
+            .description("Documents dropped because the buffer was full or their write failed")
+            .register(registry);
+        this.flushTimer = Timer.builder("logging.writebehind.flush")
+            .tag("stream", name)
+            .description("Time taken to write one batch")
+            .register(registry);
+
+        this.flusher = new Thread(this::run, "WriteBehind-" + name);
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * Queues a document for writing.
+     *
+     * @param document the document
+     * @throws IllegalStateException with sync durability, if the document could not be written in time
+     */
+    public void add(T document) {
+        Entry<T> entry = new Entry<>(document, durability == Durability.SYNC ? new CompletableFuture<>() : null);
+        enqueued.incrementAndGet();
+        if (!offer(entry)) {
+            droppedCounter.increment();
+            markProcessed(1);
+            if (entry.ack() != null) {
+                throw new IllegalStateException("Write-behind buffer " + name + " is full");
+            }
+            logger.debug("Dropped {} event, write-behind buffer is full", name);
+            return;
+        }
+        if (entry.ack() != null) {
+            await(entry.ack());
+        }
+    }
+
+    /**
+     * Waits until every document queued before this call has been written or dropped, so that
+     * a following read sees them.
+     */
+    public void flush() {
+        long target = enqueued.get();
+        flushWaiters.incrementAndGet();
+        signal();
+        try {
+            long deadline = System.currentTimeMillis() + syncTimeoutMillis;
+            synchronized (progress) {
+                while (processed < target) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        logger.warn("Timed out flushing write-behind buffer {}", name);
+                        return;
+                    }
+                    progress.wait(remaining);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            flushWaiters.decrementAndGet();
+        }
+    }
+
+    /**
+     * Gets the number of documents waiting to be written.
+     *
+     * @return the queue depth
+     */
+    public int size() {
+        return Math.max(0, queue.size() - (signalQueued.get() ? 1 : 0));
+    }
+
+    /**
+     * Stops accepting work and writes the documents still queued.
+     */
+    @Override
+    public void close() {
+        running = false;
+        signal();
+        try {
+            flusher.join(syncTimeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (flusher.isAlive()) {
+            logger.warn("Write-behind buffer {} closed with {} documents unwritten", name, size());
+        }
+    }
+
+    private boolean offer(Entry<T> entry) {
+        if (!running) {
+            return false;
+        }
+        if (entry.ack() == null) {
+            return queue.offer(entry);
+        }
+        try {
+            return queue.offer(entry, syncTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void await(CompletableFuture<Void> ack) {
+        try {
+            ack.get(syncTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Failed to write " + name + " event", e.getCause());
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Timed out writing " + name + " event", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while writing " + name + " event", e);
+        }
+    }
+
+    private void run() {
+        List<Entry<T>> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                collect(batch);
+            } catch (InterruptedException e) {
+                logger.warn("Write-behind buffer {} interrupted", name);
+                running = false;
+            }
+            if (!batch.isEmpty()) {
+                write(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Wakes the flusher if it is waiting for more documents, so that it writes its batch now.
+     * At most one signal is queued at a time; a full queue needs none, as the flusher does not
+     * wait then.
+     */
+    private void signal() {
+        if (signalQueued.compareAndSet(false, true) && !queue.offer(flushSignal)) {
+            signalQueued.set(false);
+        }
+    }
+
+    private boolean isSignal(Entry<T> entry) {
+        if (entry != flushSignal) {
+            return false;
+        }
+        signalQueued.set(false);
+        return true;
+    }
+
+    /**
+     * Collects the next batch: waits for a first document, then for more until the batch is
+     * full, its first document is due, or someone is waiting for it.
+     */
+    private void collect(List<Entry<T>> batch) throws InterruptedException {
+        Entry<T> first = queue.poll(maxDelayNanos, TimeUnit.NANOSECONDS);
+        if (first == null || isSignal(first)) {
+            return;
+        }
+        batch.add(first);
+        long deadline = System.nanoTime() + maxDelayNanos;
+        boolean urgent = first.ack() != null;
+        while (batch.size() < batchSize) {
+            int from = batch.size();
+            queue.drainTo(batch, batchSize - batch.size());
+            boolean signalled = batch.subList(from, batch.size()).removeIf(this::isSignal);
+            for (int i = from; i < batch.size() && !urgent; i++) {
+                urgent = batch.get(i).ack() != null;
+            }
+            if (batch.size() >= batchSize || urgent || signalled || flushWaiters.get() > 0 || !running) {
+                return;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return;
+            }
+            Entry<T> next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null || isSignal(next)) {
+                return;
+            }
+            batch.add(next);
+            urgent = next.ack() != null;
+        }
+    }
+
+    private void write(List<Entry<T>> batch) {
+        List<T> documents = new ArrayList<>(batch.size());
+        batch.forEach(entry -> documents.add(entry.document()));
+
+        Set<Integer> failed;
+        RuntimeException error = null;
+        long start = System.nanoTime();
+        try {
+            failed = new HashSet<>(writer.write(documents));
+        } catch (RuntimeException e) {
+            error = e;
+            failed = new HashSet<>();
+            for (int i = 0; i < batch.size(); i++) {
+                failed.add(i);
+            }
+        }
+        flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+        if (!failed.isEmpty()) {
+            droppedCounter.increment(failed.size());
+            logger.warn("Failed to write {} of {} {} events: {}", failed.size(), batch.size(), name,
+                error != null ? error.getMessage() : "rejected by the database");
+        }
+        writtenCounter.increment(batch.size() - failed.size());
+
+        for (int i = 0; i < batch.size(); i++) {
+            CompletableFuture<Void> ack = batch.get(i).ack();
+            if (ack == null) {
+                continue;
+            }
+            if (!failed.contains(i)) {
+                ack.complete(null);
+            } else if (error != null) {
+                ack.completeExceptionally(error);
+            } else {
+                ack.completeExceptionally(new IllegalStateException("The database rejected the " + name + " event"));
+            }
+        }
+        markProcessed(batch.size());
+    }
+
+    private void markProcessed(int count) {
+        synchronized (progress) {
+            processed += count;
+            progress.notifyAll();
+        }
+    }
+
+    /**
+     * Writes a batch of documents.
+     *
+     * @param <T> the document type
+     */
+    @FunctionalInterface
+    public interface BatchWriter<T> {
+
+        /**
+         * Writes the documents, continuing past individual failures.
+         *
+         * @param documents the documents to write
+         * @return the indexes of the documents that could not be written
+         */
+        Collection<Integer> write(List<T> documents);
+    }
+
+    private record Entry<T>(T document, CompletableFuture<Void> ack) {
+    }
+}
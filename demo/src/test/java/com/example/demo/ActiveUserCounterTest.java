@@ -0,0 +1,62 @@
+package com.example.demo;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ActiveUserCounterTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    private ActiveUserCounter activeUserCounter;
+
+    @BeforeEach
+    void setUp() {
+        activeUserCounter = new ActiveUserCounter(userRepository);
+    }
+
+    @Test
+    void testCountsAreLoadedOnceAndAdjustedOnWrites() {
+        when(userRepository.countByActive(true)).thenReturn(10L);
+        when(userRepository.countByActive(false)).thenReturn(4L);
+
+        assertEquals(10, activeUserCounter.count(true));
+        activeUserCounter.userAdded(true);
+        activeUserCounter.activeChanged(false, true);
+        activeUserCounter.userRemoved(false);
+
+        assertEquals(12, activeUserCounter.count(true));
+        assertEquals(2, activeUserCounter.count(false));
+        verify(userRepository, times(1)).countByActive(true);
+        verify(userRepository, times(1)).countByActive(false);
+    }
+
+    @Test
+    void testWritesBeforeFirstLoadAreNotCountedTwice() {
+        activeUserCounter.userAdded(true);
+        when(userRepository.countByActive(true)).thenReturn(1L);
+        when(userRepository.countByActive(false)).thenReturn(0L);
+
+        assertEquals(1, activeUserCounter.count(true));
+    }
+
+    @Test
+    void testRepairDriftReloadsLoadedCounts() {
+        activeUserCounter.repairDrift();
+        verifyNoInteractions(userRepository);
+
+        when(userRepository.countByActive(true)).thenReturn(3L, 5L);
+        when(userRepository.countByActive(false)).thenReturn(1L);
+        activeUserCounter.count(true);
+        activeUserCounter.repairDrift();
+
+        assertEquals(5, activeUserCounter.count(true));
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.demo;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ActivityHistogramTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2024, 3, 15);
+
+    @Test
+    void testCountsByTypeAndUserWithinRange() {
+        ActivityHistogram histogram = new ActivityHistogram();
+        histogram.record(1L, "LOGIN", TODAY);
+        histogram.record(1L, "SEARCH", TODAY);
+        histogram.record(2L, "LOGIN", TODAY.minusDays(3));
+        histogram.record(2L, "LOGIN", TODAY.minusDays(10));
+
+        assertEquals(Map.of("LOGIN", 2L, "SEARCH", 1L), histogram.countsByType(TODAY.minusDays(7), TODAY));
+        assertEquals(Map.of(1L, 2L, 2L, 2L), userCounts(histogram, TODAY.minusDays(30), TODAY));
+        assertEquals(Map.of(1L, 2L), userCounts(histogram, TODAY, TODAY));
+    }
+
+    @Test
+    void testReusesSlotsOfDaysOutsideTheWindow() {
+        ActivityHistogram histogram = new ActivityHistogram();
+        histogram.record(1L, "LOGIN", TODAY.minusDays(ActivityHistogram.DAYS));
+        histogram.record(1L, "LOGIN", TODAY);
+        // An activity older than the slot's current day is ignored
+        histogram.record(1L, "LOGIN", TODAY.minusDays(ActivityHistogram.DAYS));
+
+        assertEquals(Map.of("LOGIN", 1L), histogram.countsByType(TODAY.minusYears(1), TODAY));
+        assertEquals(Map.of(1L, 1L), userCounts(histogram, TODAY.minusYears(1), TODAY));
+    }
+
+    @Test
+    void testCountsTypesBeyondTheLimitAsOther() {
+        ActivityHistogram histogram = new ActivityHistogram();
+        for (int i = 0; i < ActivityHistogram.MAX_TYPES + 5; i++) {
+            histogram.record(1L, "TYPE_" + i, TODAY);
+        }
+
+        Map<String, Long> counts = histogram.countsByType(TODAY, TODAY);
+        assertEquals(ActivityHistogram.MAX_TYPES, counts.size());
+        assertEquals(6L, counts.get(ActivityHistogram.OTHER));
+    }
+
+    @Test
+    void testRetainUsers() {
+        ActivityHistogram histogram = new ActivityHistogram();
+        histogram.record(1L, "LOGIN", TODAY);
+        histogram.record(2L, "LOGIN", TODAY);
+
+        histogram.retainUsers(userId -> userId == 2L);
+
+        assertEquals(Map.of(2L, 1L), userCounts(histogram, TODAY, TODAY));
+        assertEquals(Map.of("LOGIN", 2L), histogram.countsByType(TODAY, TODAY));
+    }
+
+    @Test
+    void testSnapshotRoundTripAddsToExistingCounts() throws IOException {
+        ActivityHistogram histogram = new ActivityHistogram();
+        histogram.record(1L, "LOGIN", TODAY);
+        histogram.record(2L, "SEARCH", TODAY.minusDays(3));
+        histogram.record(2L, "EXPIRED", TODAY.minusDays(ActivityHistogram.DAYS + 1));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        histogram.writeTo(new DataOutputStream(bytes), TODAY);
+
+        ActivityHistogram restored = new ActivityHistogram();
+        restored.record(1L, "SEARCH", TODAY);
+        restored.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(Map.of("LOGIN", 1L, "SEARCH", 2L), restored.countsByType(TODAY.minusYears(1), TODAY));
+        assertEquals(Map.of(1L, 2L, 2L, 1L), userCounts(restored, TODAY.minusYears(1), TODAY));
+    }
+
+    private static Map<Long, Long> userCounts(ActivityHistogram histogram, LocalDate from, LocalDate to) {
+        Map<Long, Long> counts = new HashMap<>();
+        histogram.forEachUserCount(from, to, counts::put);
+        return counts;
+    }
+}
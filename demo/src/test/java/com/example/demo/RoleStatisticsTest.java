@@ -0,0 +1,89 @@
+package com.example.demo;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RoleStatisticsTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private RoleStatistics roleStatistics;
+
+    @BeforeEach
+    void setUp() {
+        roleStatistics = new RoleStatistics(userRepository, transactionManager);
+    }
+
+    @Test
+    void testRebuildAggregatesStreamedRows() {
+        when(userRepository.streamUserRoles()).thenReturn(Stream.of(
+            row(1L, "ROLE_ADMIN"), row(1L, "ROLE_USER"),
+            row(2L, "ROLE_USER"),
+            row(3L, "ROLE_USER"),
+            row(4L, null)));
+
+        assertFalse(roleStatistics.isReady());
+        roleStatistics.rebuild();
+
+        assertTrue(roleStatistics.isReady());
+        assertEquals(Map.of("ROLE_ADMIN", 1L, "ROLE_USER", 3L), roleStatistics.countByRole());
+        assertEquals(1.0, roleStatistics.averageRolesPerUser());
+        assertEquals(Map.of("ROLE_ADMIN", 25L, "ROLE_USER", 75L), roleStatistics.roleDistribution());
+        List<Map<String, Object>> combinations = roleStatistics.commonRoleCombinations(2);
+        assertEquals(Set.of("ROLE_USER"), combinations.get(0).get("roles"));
+        assertEquals(2L, combinations.get(0).get("count"));
+        assertEquals(2, combinations.size());
+    }
+
+    @Test
+    void testWritesAdjustCountersIncrementally() {
+        when(userRepository.streamUserRoles()).thenReturn(Stream.of(row(1L, "ROLE_USER")));
+        roleStatistics.rebuild();
+
+        roleStatistics.userAdded(Set.of("ROLE_USER", "ROLE_ADMIN"));
+        roleStatistics.rolesChanged(Set.of("ROLE_USER"), Set.of("ROLE_ANALYST"));
+        roleStatistics.userRemoved(Set.of("ROLE_USER", "ROLE_ADMIN"));
+
+        assertEquals(Map.of("ROLE_ANALYST", 1L), roleStatistics.countByRole());
+        assertEquals(Map.of("ROLE_ANALYST", 100L), roleStatistics.roleDistribution());
+        assertEquals(1, roleStatistics.commonRoleCombinations(5).size());
+    }
+
+    @Test
+    void testEmptyStatistics() {
+        assertEquals(0.0, roleStatistics.averageRolesPerUser());
+        assertTrue(roleStatistics.roleDistribution().isEmpty());
+        assertTrue(roleStatistics.commonRoleCombinations(5).isEmpty());
+    }
+
+    private static UserRepository.UserRole row(Long userId, String role) {
+        return new UserRepository.UserRole() {
+            @Override
+            public Long getUserId() {
+                return userId;
+            }
+
+            @Override
+            public String getRole() {
+                return role;
+            }
+        };
+    }
+}
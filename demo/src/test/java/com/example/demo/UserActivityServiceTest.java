@@ -1,21 +1,32 @@
 package com.example.demo;
 
+import com.example.demo.model.mongo.UserActivity;
+import com.example.demo.service.ActiveUserSketches;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
-import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
 
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -24,18 +35,34 @@ class UserActivityServiceTest {
     @Mock
     private UserService userService;
 
+    @Mock
+    private ActiveUserSketches activeUserSketches;
+
+    @Mock
+    private MongoOperations mongoOperations;
+
+    @TempDir
+    private Path checkpointDirectory;
+
     private UserActivityService userActivityService;
     private LocalDateTime startDate;
 
     @BeforeEach
     void setUp() {
-        userActivityService = new UserActivityService(userService);
+        userActivityService = newUserActivityService();
         startDate = LocalDateTime.now().minusDays(7);
     }
 
     @Test
     void testConstructorWithNullUserService() {
-        assertThrows(NullPointerException.class, () -> new UserActivityService(null));
+        assertThrows(NullPointerException.class, () -> new UserActivityService(null, activeUserSketches, mongoOperations,
+            checkpointDirectory.toString(), Duration.ofDays(1), "node-1"));
+    }
+
+    @Test
+    void testConstructorWithBlankNodeId() {
+        assertThrows(IllegalArgumentException.class, () -> new UserActivityService(userService, activeUserSketches,
+            mongoOperations, checkpointDirectory.toString(), Duration.ofDays(1), " "));
     }
 
     @Test
@@ -48,6 +75,28 @@ class UserActivityServiceTest {
         assertTrue(trends.containsKey("averageSessionDuration"));
     }
 
+    @Test
+    void testActivityTrendsAreEstimatedFromSketches() {
+        LocalDate today = LocalDate.now();
+        when(activeUserSketches.dailyActiveUsers(startDate.toLocalDate(), today))
+            .thenReturn(Map.of(today, 42L));
+        when(activeUserSketches.activeUsers(today.minusDays(6), today)).thenReturn(120L);
+        when(activeUserSketches.activeUsers(today.minusDays(29), today)).thenReturn(300L);
+
+        Map<String, Object> trends = userActivityService.getActivityTrendsSince(startDate);
+
+        assertEquals(Map.of(today.atStartOfDay(), 42L), trends.get("dailyActiveUsers"));
+        assertEquals(120L, trends.get("weeklyActiveUsers"));
+        assertEquals(300L, trends.get("monthlyActiveUsers"));
+    }
+
+    @Test
+    void testRecordUserActivityFeedsSketches() {
+        userActivityService.recordUserActivity(7L, "LOGIN");
+
+        verify(activeUserSketches).add(eq("7"), any(Instant.class));
+    }
+
     @Test
     void testGetUserGrowthMetrics() {
         Map<String, Object> metrics = userActivityService.getUserGrowthMetrics(startDate);
@@ -104,8 +153,7 @@ class UserActivityServiceTest {
 
     @Test
     void testGetUserRetentionMetrics() {
-        Page<User> emptyPage = new PageImpl<>(new ArrayList<>());
-        when(userService.getAllUsers(any(Pageable.class))).thenReturn(emptyPage);
+        when(userService.getTotalUsers()).thenReturn(0L);
         
         Map<String, Object> metrics = userActivityService.getUserRetentionMetrics(startDate);
         
@@ -115,6 +163,27 @@ class UserActivityServiceTest {
         assertTrue(metrics.containsKey("monthlyRetention"));
     }
 
+    @Test
+    void testRetentionIsCumulativePerPeriodAndCountsUsersOnce() {
+        when(userService.getTotalUsers()).thenReturn(4L);
+        userActivityService.recordUserActivity(1L, "LOGIN");
+        setLastLoginTime(2L, LocalDateTime.now().minusDays(2).minusHours(1));
+        setLastLoginTime(3L, LocalDateTime.now().minusDays(5).minusHours(1));
+
+        Map<String, Object> metrics = userActivityService.getUserRetentionMetrics(
+            LocalDateTime.now().minusDays(6).minusHours(12));
+        @SuppressWarnings("unchecked")
+        Map<LocalDateTime, Double> daily = (Map<LocalDateTime, Double>) metrics.get("dailyRetention");
+        List<Double> newestFirst = daily.entrySet().stream()
+            .sorted(Map.Entry.<LocalDateTime, Double>comparingByKey().reversed())
+            .map(Map.Entry::getValue)
+            .toList();
+
+        assertEquals(7, newestFirst.size());
+        assertEquals(List.of(0.0, 25.0, 25.0, 50.0, 50.0, 50.0, 75.0), newestFirst);
+        verify(userService, times(1)).getTotalUsers();
+    }
+
     @Test
     void testGetUserBehaviorAnalysis() {
         Map<String, Object> analysis = userActivityService.getUserBehaviorAnalysis(startDate);
@@ -127,10 +196,7 @@ class UserActivityServiceTest {
 
     @Test
     void testCalculateRetentionRate() {
-        List<User> users = new ArrayList<>();
-        users.add(new User("user1", "user1@example.com", "pass1"));
-        Page<User> userPage = new PageImpl<>(users);
-        when(userService.getAllUsers(any(Pageable.class))).thenReturn(userPage);
+        when(userService.getTotalUsers()).thenReturn(1L);
         
         Map<String, Object> metrics = userActivityService.getUserGrowthMetrics(startDate);
         double retentionRate = (double) metrics.get("userRetentionRate");
@@ -140,10 +206,7 @@ class UserActivityServiceTest {
 
     @Test
     void testCalculateChurnRate() {
-        List<User> users = new ArrayList<>();
-        users.add(new User("user1", "user1@example.com", "pass1"));
-        Page<User> userPage = new PageImpl<>(users);
-        when(userService.getAllUsers(any(Pageable.class))).thenReturn(userPage);
+        when(userService.getTotalUsers()).thenReturn(1L);
         
         Map<String, Object> metrics = userActivityService.getUserGrowthMetrics(startDate);
         double churnRate = (double) metrics.get("churnRate");
@@ -172,15 +235,7 @@ class UserActivityServiceTest {
         userActivityService.recordUserActivity(userId, "OLD_ACTIVITY");
         
         // Simulate old activity by directly modifying the lastLoginTimes map
-        try {
-            var lastLoginTimesField = UserActivityService.class.getDeclaredField("lastLoginTimes");
-            lastLoginTimesField.setAccessible(true);
-            @SuppressWarnings("unchecked")
-            Map<Long, LocalDateTime> lastLoginTimes = (Map<Long, LocalDateTime>) lastLoginTimesField.get(userActivityService);
-            lastLoginTimes.put(userId, LocalDateTime.now().minusMonths(2));
-        } catch (NoSuchFieldException | IllegalAccessException e) {
-            fail("Failed to set up test: " + e.getMessage());
-        }
+        setLastLoginTime(userId, LocalDateTime.now().minusMonths(2));
         
         userActivityService.cleanupOldData();
         
@@ -191,4 +246,92 @@ class UserActivityServiceTest {
         assertTrue(mostActiveUsers.isEmpty() || 
                   !mostActiveUsers.stream().anyMatch(user -> user.get("userId").equals(userId)));
     }
-} 
\ No newline at end of file
+
+    @Test
+    void testConcurrentRecordingIsNotLost() throws InterruptedException {
+        int threads = 8;
+        int perThread = 1000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            long userId = t % 2;
+            executor.execute(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    userActivityService.recordUserActivity(userId, i % 2 == 0 ? "LOGIN" : "SEARCH");
+                    userActivityService.recordLoginAttempt("shared", false);
+                    if (i % 100 == 0) {
+                        userActivityService.getUserBehaviorAnalysis(startDate);
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        Map<String, Object> analysis = userActivityService.getUserBehaviorAnalysis(startDate);
+        @SuppressWarnings("unchecked")
+        Map<String, Long> featureUsage = (Map<String, Long>) analysis.get("featureUsage");
+        assertEquals((long) threads * perThread / 2, featureUsage.get("LOGIN"));
+        assertEquals((long) threads * perThread / 2, featureUsage.get("SEARCH"));
+        @SuppressWarnings("unchecked")
+        Map<String, Integer> failedAttempts =
+            (Map<String, Integer>) userActivityService.getSecurityMetrics().get("failedLoginAttempts");
+        assertEquals(threads * perThread, failedAttempts.get("shared"));
+    }
+
+    @Test
+    void testStateSurvivesARestart() {
+        userActivityService.restoreState();
+        userActivityService.recordLoginAttempt("locked", false);
+        userActivityService.recordUserActivity(1L, "LOGIN");
+        userActivityService.recordUserActivity(1L, "SEARCH");
+        userActivityService.recordUserActivity(2L, "LOGIN");
+        userActivityService.saveState();
+
+        UserActivityService restarted = newUserActivityService();
+        restarted.restoreState();
+
+        assertEquals(userActivityService.getSecurityMetrics(), restarted.getSecurityMetrics());
+        assertEquals(userActivityService.getUserBehaviorAnalysis(startDate), restarted.getUserBehaviorAnalysis(startDate));
+    }
+
+    @Test
+    void testRestartReplaysLoggedActivities() {
+        UserActivity logged = new UserActivity("5", "CHECKOUT", null, null, null);
+        UserActivity anonymous = new UserActivity("guest", "CHECKOUT", null, null, null);
+        logged.setTimestamp(Instant.now().minusSeconds(60));
+        anonymous.setTimestamp(Instant.now().minusSeconds(60));
+        when(mongoOperations.stream(argThat((Query query) -> "node-1".equals(query.getQueryObject().get("nodeId"))),
+            eq(UserActivity.class))).thenReturn(Stream.of(logged, anonymous));
+
+        userActivityService.restoreState();
+
+        Map<String, Object> analysis = userActivityService.getUserBehaviorAnalysis(startDate);
+        assertEquals(Map.of("CHECKOUT", 1L), analysis.get("featureUsage"));
+        verify(activeUserSketches).add("guest", anonymous.getTimestamp());
+    }
+
+    @Test
+    void testCheckpointIsNotWrittenBeforeItIsRestored() {
+        userActivityService.recordLoginAttempt("locked", false);
+        userActivityService.saveState();
+
+        assertFalse(checkpointDirectory.resolve("user-activity.checkpoint").toFile().exists());
+    }
+
+    private UserActivityService newUserActivityService() {
+        return new UserActivityService(userService, activeUserSketches, mongoOperations,
+            checkpointDirectory.toString(), Duration.ofDays(1), "node-1");
+    }
+
+    private void setLastLoginTime(Long userId, LocalDateTime time) {
+        try {
+            var lastLoginTimesField = UserActivityService.class.getDeclaredField("lastLoginTimes");
+            lastLoginTimesField.setAccessible(true);
+            @SuppressWarnings("unchecked")
+            Map<Long, LocalDateTime> lastLoginTimes = (Map<Long, LocalDateTime>) lastLoginTimesField.get(userActivityService);
+            lastLoginTimes.put(userId, time);
+        } catch (NoSuchFieldException | IllegalAccessException e) {
+            fail("Failed to set up test: " + e.getMessage());
+        }
+    }
+}
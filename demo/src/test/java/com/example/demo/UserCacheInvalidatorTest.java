@@ -0,0 +1,160 @@
+package com.example.demo;
+
+import com.example.demo.cache.IdPage;
+import com.example.demo.cache.LocalCacheInvalidationBus;
+import com.example.demo.cache.LocalSharedCacheStore;
+import com.example.demo.cache.TwoLevelCacheManager;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserCacheInvalidatorTest {
+
+    private Cache usersCache;
+    private Cache userCache;
+    private UserCacheInvalidator invalidator;
+    private User alice;
+    private User bob;
+
+    @BeforeEach
+    void setUp() {
+        TwoLevelCacheManager cacheManager = new TwoLevelCacheManager(List.of("user", "users"),
+            name -> Caffeine.newBuilder().maximumSize(100), new LocalSharedCacheStore(1024 * 1024),
+            name -> Duration.ofMinutes(5), new LocalCacheInvalidationBus());
+        cacheManager.setCacheTaggers(Map.of("users", UserCacheInvalidator::usersCacheTags));
+        cacheManager.initializeCaches();
+        usersCache = cacheManager.getCache("users");
+        userCache = cacheManager.getCache("user");
+        invalidator = new UserCacheInvalidator(cacheManager);
+
+        alice = user(1L, "alice", true, "ROLE_USER");
+        bob = user(2L, "bob", false, "ROLE_ADMIN");
+        usersCache.put(page("all", 0), new IdPage(new long[] {1, 2}, 2));
+        usersCache.put(page("all", 1), new IdPage(new long[0], 2));
+        usersCache.put(page("active:true", 0), new IdPage(new long[] {1}, 1));
+        usersCache.put(page("active:false", 0), new IdPage(new long[] {2}, 1));
+        usersCache.put(page("role:ROLE_USER", 0), new IdPage(new long[] {1}, 1));
+        usersCache.put(page("role:ROLE_ADMIN", 0), new IdPage(new long[] {2}, 1));
+        usersCache.put("all", List.of(alice, bob));
+        usersCache.put("count", 2L);
+    }
+
+    @Test
+    void testUsersCacheTags() {
+        assertEquals(Set.of("all", "user:1", "user:2"),
+            UserCacheInvalidator.usersCacheTags("all", List.of(alice, bob)));
+        assertEquals(Set.of("role:ROLE_USER"),
+            UserCacheInvalidator.usersCacheTags(page("role:ROLE_USER", 3), new IdPage(new long[] {1}, 41)));
+        assertEquals(Set.of("all"), UserCacheInvalidator.usersCacheTags("count", 2L));
+        assertEquals(Set.of("other"), UserCacheInvalidator.usersCacheTags("somethingElse", null));
+    }
+
+    @Test
+    void testCreateEvictsOnlyAffectedPredicates() {
+        invalidator.userCreated(user(3L, "carol", true, "ROLE_USER"));
+
+        assertEvicted(page("all", 0), page("all", 1), page("active:true", 0), page("role:ROLE_USER", 0), "count");
+        assertCached(page("active:false", 0), page("role:ROLE_ADMIN", 0));
+    }
+
+    @Test
+    void testBulkCreateEvictsUnionOfAffectedPredicates() {
+        invalidator.usersCreated(List.of(user(3L, "carol", true, "ROLE_USER"), user(4L, "dave", true, "ROLE_USER")));
+
+        assertEvicted(page("all", 0), page("active:true", 0), page("role:ROLE_USER", 0), "count");
+        assertCached(page("active:false", 0), page("role:ROLE_ADMIN", 0));
+    }
+
+    @Test
+    void testDeleteEvictsOnlyAffectedPredicates() {
+        invalidator.userDeleted(bob);
+
+        assertEvicted(page("all", 0), page("active:false", 0), page("role:ROLE_ADMIN", 0), "count");
+        assertCached(page("active:true", 0), page("role:ROLE_USER", 0));
+    }
+
+    @Test
+    void testActivationEvictsActivePagesOnly() {
+        UserCacheInvalidator.UserSnapshot before = UserCacheInvalidator.UserSnapshot.of(bob);
+        bob.setActive(true);
+
+        invalidator.userUpdated(before, bob);
+
+        assertEvicted(page("active:true", 0), page("active:false", 0), "all");
+        assertCached(page("all", 0), page("role:ROLE_ADMIN", 0), page("role:ROLE_USER", 0), "count");
+    }
+
+    @Test
+    void testRoleChangeEvictsAddedRolePages() {
+        UserCacheInvalidator.UserSnapshot before = UserCacheInvalidator.UserSnapshot.of(alice);
+        alice.setRoles(Set.of("ROLE_USER", "ROLE_ADMIN"));
+
+        invalidator.userUpdated(before, alice);
+
+        assertEvicted(page("role:ROLE_ADMIN", 0), "all");
+        assertCached(page("all", 0), page("role:ROLE_USER", 0), page("active:false", 0), "count");
+    }
+
+    @Test
+    void testUpdateEvictsLookupsByOldAndNewUsername() {
+        userCache.put("username_alice", Optional.of(alice));
+        userCache.put("username_alicia", Optional.empty());
+        UserCacheInvalidator.UserSnapshot before = UserCacheInvalidator.UserSnapshot.of(alice);
+        alice.setUsername("alicia");
+
+        invalidator.userUpdated(before, alice);
+
+        assertNull(userCache.get("username_alice"));
+        assertNull(userCache.get("username_alicia"));
+        assertEvicted(page("all", 0), page("all", 1), page("active:true", 0), page("role:ROLE_USER", 0));
+        assertCached(page("active:false", 0), page("role:ROLE_ADMIN", 0));
+    }
+
+    @Test
+    void testPasswordChangeKeepsPagesButEvictsListsContainingTheUser() {
+        UserCacheInvalidator.UserSnapshot before = UserCacheInvalidator.UserSnapshot.of(alice);
+        alice.setPassword("changed");
+
+        invalidator.userUpdated(before, alice);
+
+        assertEvicted("all");
+        assertCached(page("all", 0), page("active:true", 0), page("role:ROLE_USER", 0), "count");
+    }
+
+    private void assertEvicted(Object... keys) {
+        for (Object key : keys) {
+            assertNull(usersCache.get(key), key + " should have been evicted");
+        }
+    }
+
+    private void assertCached(Object... keys) {
+        for (Object key : keys) {
+            assertNotNull(usersCache.get(key), key + " should still be cached");
+        }
+    }
+
+    private static UserPageCache.PageKey page(String filter, int page) {
+        return new UserPageCache.PageKey(filter, page, 10, "UNSORTED");
+    }
+
+    private static User user(Long id, String username, boolean active, String... roles) {
+        User user = User.builder()
+            .username(username)
+            .email(username + "@example.com")
+            .password("password")
+            .active(active)
+            .roles(Set.of(roles))
+            .build();
+        user.setId(id);
+        return user;
+    }
+}
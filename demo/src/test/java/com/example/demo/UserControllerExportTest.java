@@ -0,0 +1,155 @@
+package com.example.demo;
+
+import com.example.demo.service.UserExportService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(MockitoExtension.class)
+class UserControllerExportTest {
+
+    @Mock
+    private UserService userService;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final AtomicBoolean rowsClosed = new AtomicBoolean();
+    private UserExportService userExportService;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        userExportService = new UserExportService(userRepository, new ObjectMapper(), transactionManager);
+        mockMvc = MockMvcBuilders
+            .standaloneSetup(new UserController(userService, userExportService, new SimpleMeterRegistry(),
+                new TaskExecutorAdapter(new SyncTaskExecutor()), Duration.ofMinutes(1)))
+            .build();
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+    }
+
+    @Test
+    void testExportsNdjson() throws Exception {
+        when(userRepository.streamUserExportRows()).thenReturn(rows(
+            row(1L, "alice", "alice@example.com", true, "ADMIN"),
+            row(1L, "alice", "alice@example.com", true, "USER"),
+            row(2L, "bob", "bob@example.com", false, null)));
+
+        MvcResult result = mockMvc.perform(get("/api/v1/users/export"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+            .andExpect(status().isOk())
+            .andExpect(header().string("Content-Type", "application/x-ndjson"))
+            .andExpect(header().string("Content-Disposition", "attachment; filename=\"users.ndjson\""))
+            .andExpect(content().string(
+                "{\"id\":1,\"username\":\"alice\",\"email\":\"alice@example.com\",\"roles\":[\"ADMIN\",\"USER\"],\"active\":true}\n"
+                + "{\"id\":2,\"username\":\"bob\",\"email\":\"bob@example.com\",\"roles\":[],\"active\":false}\n"));
+        assertTrue(rowsClosed.get(), "The database cursor should be closed");
+        verify(transactionManager).commit(any());
+    }
+
+    @Test
+    void testExportsCsvWithHeaderAndEscaping() throws Exception {
+        when(userRepository.streamUserExportRows()).thenReturn(rows(
+            row(1L, "o\"neil, jr", "oneil@example.com", true, "ADMIN"),
+            row(1L, "o\"neil, jr", "oneil@example.com", true, "USER"),
+            row(2L, "bob", "bob@example.com", false, null)));
+
+        MvcResult result = mockMvc.perform(get("/api/v1/users/export").param("format", "CSV"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+            .andExpect(status().isOk())
+            .andExpect(header().string("Content-Type", "text/csv;charset=UTF-8"))
+            .andExpect(header().string("Content-Disposition", "attachment; filename=\"users.csv\""))
+            .andExpect(content().string("id,username,email,active,roles\r\n"
+                + "1,\"o\"\"neil, jr\",oneil@example.com,true,\"ADMIN,USER\"\r\n"
+                + "2,bob,bob@example.com,false,\r\n"));
+        assertTrue(rowsClosed.get(), "The database cursor should be closed");
+        verify(transactionManager).commit(any());
+    }
+
+    @Test
+    void testFlushesPeriodicallyAndLeavesTheOutputOpen() throws IOException {
+        when(userRepository.streamUserExportRows()).thenReturn(rows(IntStream.rangeClosed(1, 2500)
+            .mapToObj(id -> row((long) id, "user" + id, "user" + id + "@example.com", true, "USER"))
+            .toArray(UserRepository.UserExportRow[]::new)));
+        CountingOutputStream out = new CountingOutputStream();
+
+        long exported = userExportService.exportUsers(UserExportService.Format.NDJSON, out);
+
+        assertEquals(2500, exported);
+        assertEquals(2500, out.toString().lines().count());
+        assertTrue(out.flushes >= 2, "Expected a flush every 1000 users, got " + out.flushes);
+        assertFalse(out.closed, "The caller's output should be left open");
+        assertTrue(rowsClosed.get(), "The database cursor should be closed");
+    }
+
+    private Stream<UserRepository.UserExportRow> rows(UserRepository.UserExportRow... rows) {
+        return Stream.of(rows).onClose(() -> rowsClosed.set(true));
+    }
+
+    private static UserRepository.UserExportRow row(Long id, String username, String email, boolean active, String role) {
+        return new UserRepository.UserExportRow() {
+            @Override
+            public Long getId() { return id; }
+            @Override
+            public String getUsername() { return username; }
+            @Override
+            public String getEmail() { return email; }
+            @Override
+            public boolean isActive() { return active; }
+            @Override
+            public String getRole() { return role; }
+        };
+    }
+
+    private static final class CountingOutputStream extends ByteArrayOutputStream {
+        private int flushes;
+        private boolean closed;
+
+        @Override
+        public void flush() {
+            flushes++;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.demo;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.Sort;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserCursorTest {
+
+    @Test
+    void testCursorRoundTripsThroughEncoding() {
+        Sort sort = UserCursor.parseSort("username,desc");
+        User user = User.builder().username("alice").email("alice@example.com").build();
+        user.setId(42L);
+
+        UserCursor cursor = UserCursor.decode(UserCursor.after(user, sort).encode(), sort);
+
+        assertEquals(new UserCursor("username", Sort.Direction.DESC, "alice", 42L), cursor);
+        KeysetScrollPosition position = (KeysetScrollPosition) cursor.toScrollPosition();
+        assertEquals(Map.of("username", "alice", "id", 42L), position.getKeys());
+    }
+
+    @Test
+    void testSortEndsWithIdTiebreaker() {
+        assertEquals(Sort.by(Sort.Direction.ASC, "id"), UserCursor.parseSort(null));
+        assertEquals(Sort.by(Sort.Direction.DESC, "email", "id"), UserCursor.parseSort("email,desc"));
+    }
+
+    @Test
+    void testUnsortablePropertyIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> UserCursor.parseSort("password"));
+    }
+
+    @Test
+    void testCursorFromAnotherSortIsRejected() {
+        User user = User.builder().username("alice").build();
+        user.setId(1L);
+        String cursor = UserCursor.after(user, UserCursor.parseSort("username")).encode();
+
+        assertThrows(IllegalArgumentException.class, () -> UserCursor.decode(cursor, UserCursor.parseSort("id")));
+        assertThrows(IllegalArgumentException.class, () -> UserCursor.decode("not a cursor", UserCursor.parseSort("id")));
+    }
+}
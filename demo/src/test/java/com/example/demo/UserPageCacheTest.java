@@ -0,0 +1,113 @@
+package com.example.demo;
+
+import com.example.demo.cache.LocalCacheInvalidationBus;
+import com.example.demo.cache.LocalSharedCacheStore;
+import com.example.demo.cache.TwoLevelCacheManager;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.Cache;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserPageCacheTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    private Cache userCache;
+    private UserPageCache userPageCache;
+    private AtomicInteger idQueries;
+    private Function<Pageable, Page<Long>> idQuery;
+
+    @BeforeEach
+    void setUp() {
+        TwoLevelCacheManager cacheManager = new TwoLevelCacheManager(List.of("user", "users"),
+            name -> Caffeine.newBuilder().maximumSize(100), new LocalSharedCacheStore(1024 * 1024),
+            name -> Duration.ofMinutes(5), new LocalCacheInvalidationBus());
+        cacheManager.initializeCaches();
+        userCache = cacheManager.getCache("user");
+        userPageCache = new UserPageCache(cacheManager, userRepository);
+        idQueries = new AtomicInteger();
+        idQuery = pageable -> {
+            idQueries.incrementAndGet();
+            return new PageImpl<>(List.of(3L, 1L, 2L), pageable, 30);
+        };
+    }
+
+    @Test
+    void testPageIsHydratedInIdOrderLoadingMissesInOneQuery() {
+        userCache.put(1L, user(1L, "alice"));
+        when(userRepository.findAllById(List.of(3L, 2L))).thenReturn(List.of(user(2L, "bob"), user(3L, "carol")));
+
+        Page<User> page = userPageCache.getPage("all", PageRequest.of(0, 3), idQuery);
+
+        assertEquals(List.of("carol", "alice", "bob"), page.getContent().stream().map(User::getUsername).toList());
+        assertEquals(30, page.getTotalElements());
+        verify(userRepository, times(1)).findAllById(any());
+        assertNotNull(userCache.get(3L));
+    }
+
+    @Test
+    void testCachedPageReflectsUserUpdatesWithoutRequery() {
+        userCache.put(1L, user(1L, "alice"));
+        userCache.put(2L, user(2L, "bob"));
+        userCache.put(3L, user(3L, "carol"));
+        userPageCache.getPage("all", PageRequest.of(0, 3), idQuery);
+
+        userCache.put(2L, user(2L, "robert"));
+        Page<User> page = userPageCache.getPage("all", PageRequest.of(0, 3), idQuery);
+
+        assertEquals(List.of("carol", "alice", "robert"), page.getContent().stream().map(User::getUsername).toList());
+        assertEquals(1, idQueries.get());
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    void testSortIsPartOfTheKey() {
+        when(userRepository.findAllById(any())).thenReturn(List.of());
+
+        userPageCache.getPage("all", PageRequest.of(0, 3), idQuery);
+        userPageCache.getPage("all", PageRequest.of(0, 3, Sort.by("username")), idQuery);
+        userPageCache.getPage("all", PageRequest.of(0, 3, Sort.by("username")), idQuery);
+
+        assertEquals(2, idQueries.get());
+    }
+
+    @Test
+    void testDeletedUsersAreSkipped() {
+        when(userRepository.findAllById(List.of(3L, 1L, 2L))).thenReturn(List.of(user(1L, "alice")));
+
+        Page<User> page = userPageCache.getPage("all", Pageable.unpaged(), idQuery);
+
+        assertEquals(1, page.getContent().size());
+        assertEquals(1, idQueries.get());
+    }
+
+    private static User user(Long id, String username) {
+        User user = User.builder()
+            .username(username)
+            .email(username + "@example.com")
+            .password("password")
+            .roles(Set.of("ROLE_USER"))
+            .build();
+        user.setId(id);
+        return user;
+    }
+}
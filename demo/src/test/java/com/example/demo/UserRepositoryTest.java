@@ -4,15 +4,23 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.test.context.ActiveProfiles;
 
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 
 @DataJpaTest
 @ActiveProfiles("test")
@@ -182,4 +190,172 @@ class UserRepositoryTest {
         assertThat(found.getContent().get(0).getUsername()).isEqualTo("admin");
         assertThat(found.getContent().get(0).getRoles()).contains("ADMIN");
     }
-} 
\ No newline at end of file
+
+    @Test
+    void whenFindIdsByRole_thenReturnSortedIdsAndTotal() {
+        // given
+        User admin = User.builder()
+                .username("zadmin")
+                .email("zadmin@example.com")
+                .password("password123")
+                .active(true)
+                .roles(new HashSet<>(Arrays.asList("ADMIN", "USER")))
+                .build();
+        User user = User.builder()
+                .username("auser")
+                .email("auser@example.com")
+                .password("password123")
+                .active(false)
+                .roles(new HashSet<>(Arrays.asList("USER")))
+                .build();
+        entityManager.persist(admin);
+        entityManager.persist(user);
+        entityManager.flush();
+
+        // when
+        Page<Long> found = userRepository.findIdsByRole("USER", PageRequest.of(0, 1, Sort.by("username")));
+
+        // then
+        assertThat(found.getTotalElements()).isEqualTo(2);
+        assertThat(found.getContent()).containsExactly(user.getId());
+        assertThat(userRepository.findIdsByActive(true, Pageable.unpaged()).getContent()).containsExactly(admin.getId());
+    }
+
+    @Test
+    void whenFindExistingUsernamesAndEmails_thenReturnOnlyTakenKeys() {
+        // given
+        entityManager.persist(User.builder().username("admin").email("admin@example.com").password("password123")
+                .build());
+        entityManager.flush();
+
+        // when / then
+        assertThat(userRepository.findExistingUsernames(List.of("admin", "guest"))).containsExactly("admin");
+        assertThat(userRepository.findExistingEmails(List.of("guest@example.com", "admin@example.com")))
+                .containsExactly("admin@example.com");
+    }
+
+    @Test
+    void whenStreamUserRoles_thenReturnOneRowPerRoleOrderedByUser() {
+        // given
+        User admin = User.builder()
+                .username("admin")
+                .email("admin@example.com")
+                .password("password123")
+                .roles(new HashSet<>(Arrays.asList("ADMIN", "USER")))
+                .build();
+        User guest = User.builder()
+                .username("guest")
+                .email("guest@example.com")
+                .password("password123")
+                .build();
+        entityManager.persist(admin);
+        entityManager.persist(guest);
+        entityManager.flush();
+
+        // when
+        List<UserRepository.UserRole> rows;
+        try (Stream<UserRepository.UserRole> stream = userRepository.streamUserRoles()) {
+            rows = stream.toList();
+        }
+
+        // then
+        assertThat(rows).hasSize(3);
+        assertThat(rows.get(0).getUserId()).isEqualTo(admin.getId());
+        assertThat(rows.subList(0, 2)).extracting(UserRepository.UserRole::getRole)
+                .containsExactlyInAnyOrder("ADMIN", "USER");
+        assertThat(rows.get(2).getUserId()).isEqualTo(guest.getId());
+        assertThat(rows.get(2).getRole()).isNull();
+    }
+
+    @Test
+    void whenStreamUserExportRows_thenReturnUserFieldsWithEachRole() {
+        // given
+        User admin = User.builder()
+                .username("admin")
+                .email("admin@example.com")
+                .password("password123")
+                .roles(new HashSet<>(Arrays.asList("ADMIN", "USER")))
+                .build();
+        User guest = User.builder()
+                .username("guest")
+                .email("guest@example.com")
+                .password("password123")
+                .active(false)
+                .build();
+        entityManager.persist(admin);
+        entityManager.persist(guest);
+        entityManager.flush();
+
+        // when
+        List<UserRepository.UserExportRow> rows;
+        try (Stream<UserRepository.UserExportRow> stream = userRepository.streamUserExportRows()) {
+            rows = stream.toList();
+        }
+
+        // then
+        assertThat(rows).hasSize(3);
+        assertThat(rows.subList(0, 2)).extracting(UserRepository.UserExportRow::getUsername)
+                .containsOnly("admin");
+        assertThat(rows.subList(0, 2)).extracting(UserRepository.UserExportRow::getRole)
+                .containsExactlyInAnyOrder("ADMIN", "USER");
+        assertThat(rows.get(2)).extracting(UserRepository.UserExportRow::getEmail,
+                UserRepository.UserExportRow::isActive, UserRepository.UserExportRow::getRole)
+                .containsExactly("guest@example.com", false, null);
+    }
+
+    @Test
+    void whenAggregatingRoles_thenCountInTheDatabase() {
+        // given
+        entityManager.persist(User.builder().username("admin").email("admin@example.com").password("password123")
+                .active(true).roles(new HashSet<>(Arrays.asList("ADMIN", "USER"))).build());
+        entityManager.persist(User.builder().username("user1").email("user1@example.com").password("password123")
+                .active(true).roles(new HashSet<>(Arrays.asList("USER"))).build());
+        entityManager.persist(User.builder().username("user2").email("user2@example.com").password("password123")
+                .roles(new HashSet<>(Arrays.asList("USER"))).build());
+        entityManager.persist(User.builder().username("guest").email("guest@example.com").password("password123")
+                .build());
+        entityManager.flush();
+
+        // when
+        List<UserRepository.RoleCount> byRole = userRepository.countUsersByRole();
+        List<UserRepository.RoleCombinationCount> combinations =
+                userRepository.findCommonRoleCombinations(Limit.of(2));
+
+        // then
+        assertThat(byRole).extracting(UserRepository.RoleCount::getRole, UserRepository.RoleCount::getUsers)
+                .containsExactlyInAnyOrder(tuple("ADMIN", 1L), tuple("USER", 3L));
+        assertThat(userRepository.averageRolesPerUser()).isEqualTo(1.0);
+        assertThat(userRepository.countByActive(true)).isEqualTo(2);
+        assertThat(userRepository.countByActive(false)).isEqualTo(2);
+        assertThat(combinations).hasSize(2);
+        assertThat(combinations.get(0).getRoles()).isEqualTo("USER");
+        assertThat(combinations.get(0).getUsers()).isEqualTo(2);
+    }
+
+    @Test
+    void whenScrollingByRoleWithCursor_thenResumeAfterLastUser() {
+        // given
+        for (String name : List.of("carol", "alice", "bob", "dave")) {
+            entityManager.persist(User.builder()
+                    .username(name)
+                    .email(name + "@example.com")
+                    .password("password123")
+                    .roles(new HashSet<>(Arrays.asList(name.equals("dave") ? "ADMIN" : "USER")))
+                    .build());
+        }
+        entityManager.flush();
+        Sort sort = UserCursor.parseSort("username");
+
+        // when
+        Window<User> first = userRepository.findByRolesContaining("USER", ScrollPosition.keyset(), sort, Limit.of(2));
+        String cursor = UserCursor.after(first.getContent().get(1), sort).encode();
+        Window<User> second = userRepository.findByRolesContaining("USER",
+                UserCursor.decode(cursor, sort).toScrollPosition(), sort, Limit.of(2));
+
+        // then
+        assertThat(first.getContent()).extracting(User::getUsername).containsExactly("alice", "bob");
+        assertThat(first.hasNext()).isTrue();
+        assertThat(second.getContent()).extracting(User::getUsername).containsExactly("carol");
+        assertThat(second.hasNext()).isFalse();
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.demo;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Runs {@link UserService#createUsers} against the database, outside a test transaction like the
+ * import does, so that a failed batch insert really rolls back and falls back to single inserts.
+ */
+@DataJpaTest
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class UserServiceBatchTest {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private UserService userService;
+
+    @BeforeEach
+    void setUp() {
+        userService = new UserService(userRepository, new BCryptPasswordEncoder(4), mock(UserCacheInvalidator.class),
+            mock(UserPageCache.class), mock(RoleStatistics.class), mock(ActiveUserCounter.class));
+        userRepository.save(user("taken"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void whenBatchHoldsDuplicateUsername_thenOnlyThatUserFails() {
+        // given
+        List<User> batch = List.of(user("alice"), user("taken"), user("bob"));
+        Map<String, Exception> failures = new HashMap<>();
+
+        // when
+        List<User> created = userService.createUsers(batch, (user, e) -> failures.put(user.getUsername(), e));
+
+        // then
+        assertThat(created).extracting(User::getUsername).containsExactly("alice", "bob");
+        assertThat(created).allSatisfy(user -> assertThat(user.getId()).isNotNull());
+        assertThat(failures).containsOnlyKeys("taken");
+        assertThat(userRepository.findAll()).extracting(User::getUsername)
+            .containsExactlyInAnyOrder("taken", "alice", "bob");
+        assertThat(userRepository.findByUsername("alice").orElseThrow().getRoles()).containsExactly("ROLE_USER");
+    }
+
+    private static User user(String username) {
+        return User.builder()
+            .username(username)
+            .email(username + "@example.com")
+            .password("password123")
+            .active(true)
+            .roles(Set.of())
+            .build();
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.demo.cache;
+
+import com.example.demo.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageImpl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CacheEntryWeigherTest {
+
+    private final CacheEntryWeigher weigher = new CacheEntryWeigher();
+
+    @Test
+    void testLargerStringsWeighMore() {
+        assertTrue(weigher.weigh(1L, "a".repeat(1000)) > weigher.weigh(1L, "a"));
+    }
+
+    @Test
+    void testUserWeightIncludesFieldsAndRoles() {
+        User user = new User("testUser", "test@example.com", "$2a$12$" + "x".repeat(53));
+        long withoutRoles = CacheEntryWeigher.estimate(user);
+        user.setRoles(Set.of("ROLE_USER", "ROLE_ADMIN"));
+
+        assertTrue(CacheEntryWeigher.estimate(user) > withoutRoles);
+        assertTrue(withoutRoles > 60);
+    }
+
+    @Test
+    void testPageWeightScalesWithContent() {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            users.add(new User("user" + i, "user" + i + "@example.com", "password"));
+        }
+
+        long small = CacheEntryWeigher.estimate(new PageImpl<>(users.subList(0, 10)));
+        long large = CacheEntryWeigher.estimate(new PageImpl<>(users));
+
+        assertTrue(large > small * 50);
+    }
+
+    @Test
+    void testOptionalAndNullValues() {
+        assertEquals(0, CacheEntryWeigher.estimate(null));
+        assertTrue(CacheEntryWeigher.estimate(Optional.of("value")) > CacheEntryWeigher.estimate(Optional.empty()));
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.demo.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TwoLevelCacheTest {
+
+    private TwoLevelCacheManager nodeA;
+    private TwoLevelCacheManager nodeB;
+
+    @BeforeEach
+    void setUp() {
+        SharedCacheStore sharedStore = new LocalSharedCacheStore(1024 * 1024);
+        CacheInvalidationBus bus = new LocalCacheInvalidationBus();
+        nodeA = node(sharedStore, bus);
+        nodeB = node(sharedStore, bus);
+    }
+
+    @Test
+    void testValueLoadedOnOneNodeIsServedFromSharedTierOnAnother() {
+        AtomicInteger loads = new AtomicInteger();
+
+        assertEquals("alice", nodeA.getCache("user").get(1L, () -> {
+            loads.incrementAndGet();
+            return "alice";
+        }));
+        assertEquals("alice", nodeB.getCache("user").get(1L, () -> {
+            loads.incrementAndGet();
+            return "other";
+        }));
+
+        assertEquals(1, loads.get());
+        assertEquals(1, ((TwoLevelCache) nodeB.getCache("user")).getSharedHitCount());
+    }
+
+    @Test
+    void testEvictOnOneNodeInvalidatesLocalCopiesEverywhere() {
+        nodeA.getCache("user").put(1L, "alice");
+        assertEquals("alice", nodeB.getCache("user").get(1L, String.class));
+
+        nodeA.getCache("user").evict(1L);
+
+        assertNull(nodeB.getCache("user").get(1L));
+        assertNull(nodeA.getCache("user").get(1L));
+    }
+
+    @Test
+    void testPutOnOneNodeReplacesStaleLocalCopyElsewhere() {
+        nodeA.getCache("user").put(1L, "alice");
+        assertEquals("alice", nodeB.getCache("user").get(1L, String.class));
+
+        nodeA.getCache("user").put(1L, "alice-renamed");
+
+        assertEquals("alice-renamed", nodeB.getCache("user").get(1L, String.class));
+    }
+
+    @Test
+    void testClearOnlyAffectsTheNamedCache() {
+        Cache users = nodeA.getCache("users");
+        users.put("count", 5L);
+        nodeA.getCache("user").put(1L, "alice");
+        assertEquals(5L, nodeB.getCache("users").get("count", Long.class));
+
+        users.clear();
+
+        assertNull(nodeB.getCache("users").get("count"));
+        assertEquals("alice", nodeB.getCache("user").get(1L, String.class));
+    }
+
+    @Test
+    void testNullValuesAreCached() {
+        AtomicInteger loads = new AtomicInteger();
+
+        nodeA.getCache("user").get(99L, () -> {
+            loads.incrementAndGet();
+            return null;
+        });
+        Cache.ValueWrapper wrapper = nodeB.getCache("user").get(99L);
+
+        assertNotNull(wrapper);
+        assertNull(wrapper.get());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void testEvictTaggedOnlyDropsMatchingEntriesOnEveryNode() {
+        Cache usersA = nodeA.getCache("users");
+        usersA.put("active_0_10", "active page");
+        usersA.put("inactive_0_10", "inactive page");
+        Cache usersB = nodeB.getCache("users");
+        assertEquals("active page", usersB.get("active_0_10", String.class));
+        assertEquals("inactive page", usersB.get("inactive_0_10", String.class));
+
+        ((TwoLevelCache) usersA).evictTagged(Set.of("active"));
+
+        assertNull(usersB.get("active_0_10"));
+        assertNull(usersA.get("active_0_10"));
+        assertEquals("inactive page", usersB.get("inactive_0_10", String.class));
+    }
+
+    @Test
+    void testEvictTaggedReachesEntriesLoadedThroughSharedTier() {
+        nodeA.getCache("users").get("active_0_10", () -> "active page");
+        assertEquals("active page", nodeB.getCache("users").get("active_0_10", () -> "reloaded"));
+
+        ((TwoLevelCache) nodeB.getCache("users")).evictTagged(Set.of("active"));
+
+        assertEquals("reloaded", nodeA.getCache("users").get("active_0_10", () -> "reloaded"));
+    }
+
+    private static TwoLevelCacheManager node(SharedCacheStore sharedStore, CacheInvalidationBus bus) {
+        TwoLevelCacheManager manager = new TwoLevelCacheManager(List.of("user", "users"),
+            name -> Caffeine.newBuilder().maximumSize(100), sharedStore, name -> Duration.ofMinutes(5), bus);
+        manager.setCacheTaggers(Map.of("users", (key, value) -> Set.of(key.toString().split("_")[0])));
+        manager.initializeCaches();
+        return manager;
+    }
+}
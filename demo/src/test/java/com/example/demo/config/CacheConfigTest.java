@@ -0,0 +1,134 @@
+package com.example.demo.config;
+
+import com.example.demo.cache.LocalCacheInvalidationBus;
+import com.example.demo.cache.LocalSharedCacheStore;
+import com.example.demo.cache.TwoLevelCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CacheConfigTest {
+
+    private final CacheConfig cacheConfig = new CacheConfig();
+
+    @Test
+    void testConfiguredCacheIsBoundedByWeightAndExpiry() {
+        CachingProperties properties = new CachingProperties();
+        properties.getCaches().put("user", new CachingProperties.Spec(
+            DataSize.ofKilobytes(64), Duration.ofMinutes(30), Duration.ofMinutes(5)));
+
+        CacheManager cacheManager = cacheManager(properties);
+
+        assertTrue(cacheManager.getCacheNames().contains("user"));
+        Cache<Object, Object> cache = nativeCache(cacheManager, "user");
+        assertEquals(64 * 1024, cache.policy().eviction().orElseThrow().getMaximum());
+        assertEquals(30, cache.policy().expireAfterWrite().orElseThrow().getExpiresAfter(TimeUnit.MINUTES));
+        assertEquals(5, cache.policy().expireAfterAccess().orElseThrow().getExpiresAfter(TimeUnit.MINUTES));
+    }
+
+    @Test
+    void testUnconfiguredCacheUsesDefaults() {
+        CachingProperties properties = new CachingProperties();
+
+        CacheManager cacheManager = cacheManager(properties);
+
+        Cache<Object, Object> cache = nativeCache(cacheManager, "adHoc");
+        assertEquals(DataSize.ofMegabytes(16).toBytes(), cache.policy().eviction().orElseThrow().getMaximum());
+        assertTrue(cache.policy().expireAfterAccess().isEmpty());
+    }
+
+    @Test
+    void testPartialSpecInheritsDefaults() {
+        CachingProperties properties = new CachingProperties();
+        CachingProperties.Spec spec = new CachingProperties.Spec();
+        spec.setTimeToIdle(Duration.ofMinutes(1));
+        properties.getCaches().put("users", spec);
+
+        CachingProperties.Spec resolved = properties.resolve("users");
+
+        assertEquals(DataSize.ofMegabytes(16), resolved.getMaxWeight());
+        assertEquals(Duration.ofMinutes(10), resolved.getTimeToLive());
+        assertEquals(Duration.ofMinutes(1), resolved.getTimeToIdle());
+    }
+
+    @Test
+    void testCacheEvictsByWeightAndRecordsStats() {
+        CachingProperties properties = new CachingProperties();
+        properties.getCaches().put("tiny", new CachingProperties.Spec(DataSize.ofKilobytes(4), null, null));
+        Cache<Object, Object> cache = nativeCache(cacheManager(properties), "tiny");
+
+        for (long i = 0; i < 500; i++) {
+            cache.put(i, "value-" + i);
+        }
+        cache.cleanUp();
+
+        assertTrue(cache.policy().eviction().orElseThrow().weightedSize().orElseThrow() <= 4 * 1024);
+        assertTrue(cache.stats().evictionCount() > 0);
+    }
+
+    @Test
+    void testSharedTierCanBeDisabled() {
+        CachingProperties properties = new CachingProperties();
+        properties.getShared().setEnabled(false);
+
+        assertTrue(cacheManager(properties).getCache("user") instanceof CaffeineCache);
+        properties.getShared().setEnabled(true);
+        assertTrue(cacheManager(properties).getCache("user") instanceof TwoLevelCache);
+    }
+
+    @Test
+    void testSharedTierKeepsEntriesNoLongerThanTheirCache() {
+        CachingProperties properties = new CachingProperties();
+        properties.getCaches().put("user", new CachingProperties.Spec(null, Duration.ofMinutes(30), null));
+        properties.getCaches().put("users", new CachingProperties.Spec(null, Duration.ofMinutes(5), null));
+        Map<String, Duration> sharedTimeToLive = new HashMap<>();
+        LocalSharedCacheStore sharedStore = new LocalSharedCacheStore(DataSize.ofMegabytes(1).toBytes()) {
+            @Override
+            public void put(String cacheName, Object key, Object value, Duration timeToLive, Collection<String> tags) {
+                sharedTimeToLive.put(cacheName, timeToLive);
+                super.put(cacheName, key, value, timeToLive, tags);
+            }
+        };
+        CacheManager cacheManager = cacheManager(properties, sharedStore);
+
+        cacheManager.getCache("user").put(1L, "alice");
+        cacheManager.getCache("users").get("active_0_10", () -> "active page");
+        cacheManager.getCache("adHoc").put("key", "value");
+
+        assertEquals(Duration.ofMinutes(10), sharedTimeToLive.get("user"));
+        assertEquals(Duration.ofMinutes(5), sharedTimeToLive.get("users"));
+        assertEquals(Duration.ofMinutes(10), sharedTimeToLive.get("adHoc"));
+    }
+
+    private CacheManager cacheManager(CachingProperties properties) {
+        return cacheManager(properties, new LocalSharedCacheStore(DataSize.ofMegabytes(1).toBytes()));
+    }
+
+    private CacheManager cacheManager(CachingProperties properties, LocalSharedCacheStore sharedStore) {
+        CacheManager cacheManager = cacheConfig.cacheManager(properties, sharedStore, new LocalCacheInvalidationBus());
+        if (cacheManager instanceof InitializingBean initializingBean) {
+            try {
+                initializingBean.afterPropertiesSet();
+            } catch (Exception e) {
+                fail("Failed to initialize cache manager: " + e.getMessage());
+            }
+        }
+        return cacheManager;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Cache<Object, Object> nativeCache(CacheManager cacheManager, String name) {
+        return (Cache<Object, Object>) cacheManager.getCache(name).getNativeCache();
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.demo.controller;
+
+import com.example.demo.GlobalExceptionHandler;
+import com.example.demo.model.mongo.UserActivity;
+import com.example.demo.service.AnalyticsRollupService;
+import com.example.demo.service.BulkLogResult;
+import com.example.demo.service.LogRetentionService;
+import com.example.demo.service.MongoLoggingService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(MockitoExtension.class)
+class LoggingControllerTest {
+
+    @Mock
+    private MongoLoggingService mongoLoggingService;
+
+    @Mock
+    private AnalyticsRollupService analyticsRollupService;
+
+    @Mock
+    private LogRetentionService logRetentionService;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        mockMvc = MockMvcBuilders
+            .standaloneSetup(new LoggingController(mongoLoggingService, analyticsRollupService, logRetentionService,
+                objectMapper, 2))
+            .setControllerAdvice(new GlobalExceptionHandler())
+            .build();
+    }
+
+    @Test
+    void testReadsNdjsonUpToTheBatchLimit() throws Exception {
+        when(mongoLoggingService.logUserActivities(anyList(), any(), any()))
+            .thenReturn(new BulkLogResult(2, 1, List.of(new BulkLogResult.ItemError(1, "Event is missing or malformed"))));
+
+        mockMvc.perform(post("/api/logs/activity/batch")
+                .contentType("application/x-ndjson")
+                .content("{\"userId\":\"1\",\"action\":\"LOGIN\"}\n\n\nnot json\n\n"))
+            .andExpect(status().isMultiStatus());
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<UserActivity>> activities = ArgumentCaptor.forClass(List.class);
+        verify(mongoLoggingService).logUserActivities(activities.capture(), any(), any());
+        assertEquals(2, activities.getValue().size());
+        assertEquals("LOGIN", activities.getValue().get(0).getAction());
+        assertNull(activities.getValue().get(1));
+    }
+
+    @Test
+    void testRejectsNdjsonPastTheBatchLimitWithoutLoggingIt() throws Exception {
+        mockMvc.perform(post("/api/logs/activity/batch")
+                .contentType("application/x-ndjson")
+                .content("{\"userId\":\"1\",\"action\":\"LOGIN\"}\n"
+                    + "{\"userId\":\"2\",\"action\":\"LOGIN\"}\n"
+                    + "{\"userId\":\"3\",\"action\":\"LOGIN\"}\n"))
+            .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(mongoLoggingService);
+    }
+
+    @Test
+    void testReadsJsonArrayUpToTheBatchLimit() throws Exception {
+        when(mongoLoggingService.logUserActivities(anyList(), any(), any()))
+            .thenReturn(new BulkLogResult(2, 1, List.of(new BulkLogResult.ItemError(1, "Event is missing or malformed"))));
+
+        mockMvc.perform(post("/api/logs/activity/batch")
+                .contentType("application/json")
+                .content("[{\"userId\":\"1\",\"action\":\"LOGIN\"}, null]"))
+            .andExpect(status().isMultiStatus());
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<UserActivity>> activities = ArgumentCaptor.forClass(List.class);
+        verify(mongoLoggingService).logUserActivities(activities.capture(), any(), any());
+        assertEquals(2, activities.getValue().size());
+        assertEquals("LOGIN", activities.getValue().get(0).getAction());
+        assertNull(activities.getValue().get(1));
+    }
+
+    @Test
+    void testRejectsJsonArrayPastTheBatchLimitWithoutLoggingIt() throws Exception {
+        mockMvc.perform(post("/api/logs/activity/batch")
+                .contentType("application/json")
+                .content("[{\"userId\":\"1\",\"action\":\"LOGIN\"},"
+                    + "{\"userId\":\"2\",\"action\":\"LOGIN\"},"
+                    + "{\"userId\":\"3\",\"action\":\"LOGIN\"}]"))
+            .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(mongoLoggingService);
+    }
+
+    @Test
+    void testRejectsMalformedJsonArray() throws Exception {
+        mockMvc.perform(post("/api/logs/analytics/batch")
+                .contentType("application/json")
+                .content("{\"eventType\":\"PAGE_VIEW\"}"))
+            .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/api/logs/analytics/batch")
+                .contentType("application/json")
+                .content("[{\"eventType\":\"PAGE_VIEW\"},"))
+            .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(mongoLoggingService);
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.demo.service;
+
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.Binary;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoOperations;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ActiveUserSketchesTest {
+
+    @Mock
+    private MongoOperations mongoOperations;
+
+    @Mock
+    private MongoCollection<Document> collection;
+
+    @Mock
+    private FindIterable<Document> found;
+
+    private ActiveUserSketches activeUserSketches;
+
+    @BeforeEach
+    void setUp() {
+        activeUserSketches = new ActiveUserSketches(mongoOperations, Duration.ofHours(1), Duration.ofDays(400));
+        when(mongoOperations.getCollection(ActiveUserSketches.COLLECTION)).thenReturn(collection);
+        when(collection.find(any(Bson.class))).thenReturn(found);
+    }
+
+    @Test
+    void testRetriesWhenAnotherNodeStoredTheSketchInBetween() {
+        // Given
+        Instant yesterday = LocalDate.now().minusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant();
+        activeUserSketches.add("local-user", yesterday);
+        when(found.first()).thenReturn(stored(1, "other-user"), stored(2, "other-user", "late-user"));
+        when(collection.replaceOne(any(Bson.class), any(Document.class)))
+            .thenReturn(UpdateResult.acknowledged(0, 0L, null), UpdateResult.acknowledged(1, 1L, null));
+
+        // When
+        activeUserSketches.flush();
+
+        // Then
+        ArgumentCaptor<Document> replaced = ArgumentCaptor.forClass(Document.class);
+        verify(collection, times(2)).replaceOne(any(Bson.class), replaced.capture());
+        Document last = replaced.getValue();
+        assertEquals(3L, last.get("version"));
+        assertEquals(3, HyperLogLog.fromByteArray(((Binary) last.get("sketch")).getData()).estimate());
+        verify(collection, never()).insertOne(any());
+    }
+
+    @Test
+    void testUnchangedSketchesAreNotStoredAgain() {
+        // Given
+        Instant yesterday = LocalDate.now().minusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant();
+        activeUserSketches.add("local-user", yesterday);
+        when(found.first()).thenReturn(null);
+
+        // When
+        activeUserSketches.flush();
+        activeUserSketches.flush();
+
+        // Then
+        verify(collection, times(1)).insertOne(argThat(document -> Long.valueOf(1).equals(document.get("version"))));
+    }
+
+    private static Document stored(long version, String... users) {
+        HyperLogLog sketch = new HyperLogLog();
+        for (String user : users) {
+            sketch.add(user);
+        }
+        return new Document("_id", "day").append("version", version).append("sketch", new Binary(sketch.toByteArray()));
+    }
+}
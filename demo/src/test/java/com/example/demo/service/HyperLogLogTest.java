@@ -0,0 +1,72 @@
+package com.example.demo.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HyperLogLogTest {
+
+    @Test
+    void testEstimatesDistinctValuesWithinTheStandardError() {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int i = 0; i < 100_000; i++) {
+            sketch.add("user-" + i);
+            sketch.add("user-" + (i / 2));
+        }
+
+        assertEquals(100_000, sketch.estimate(), 100_000 * 0.05);
+    }
+
+    @Test
+    void testSmallCountsAreNearlyExact() {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int i = 0; i < 50; i++) {
+            sketch.add(Long.toString(i));
+        }
+        assertFalse(sketch.add("7"));
+
+        // Linear counting at 4096 registers still loses a few values to register collisions
+        assertEquals(50, sketch.estimate(), 3);
+    }
+
+    @Test
+    void testMergeEstimatesTheUnion() {
+        HyperLogLog monday = new HyperLogLog();
+        HyperLogLog tuesday = new HyperLogLog();
+        for (int i = 0; i < 20_000; i++) {
+            monday.add("user-" + i);
+            tuesday.add("user-" + (i + 10_000));
+        }
+
+        HyperLogLog week = monday.copy();
+        week.merge(tuesday);
+
+        assertEquals(30_000, week.estimate(), 30_000 * 0.05);
+        assertEquals(20_000, monday.estimate(), 20_000 * 0.05);
+        assertThrows(IllegalArgumentException.class, () -> week.merge(new HyperLogLog(10)));
+    }
+
+    @Test
+    void testSerializationRoundTrip() {
+        HyperLogLog sparse = new HyperLogLog();
+        sparse.add("only-user");
+        HyperLogLog dense = new HyperLogLog();
+        for (int i = 0; i < 50_000; i++) {
+            dense.add("user-" + i);
+        }
+
+        byte[] sparseBytes = sparse.toByteArray();
+        assertTrue(sparseBytes.length < 16, "A sketch of one user should be stored sparsely");
+        assertEquals(sparse.estimate(), HyperLogLog.fromByteArray(sparseBytes).estimate());
+        assertEquals(dense.estimate(), HyperLogLog.fromByteArray(dense.toByteArray()).estimate());
+    }
+
+    @Test
+    void testRejectsUnknownFormats() {
+        byte[] bytes = new HyperLogLog().toByteArray();
+        bytes[0] = 99;
+
+        assertThrows(IllegalArgumentException.class, () -> HyperLogLog.fromByteArray(bytes));
+        assertThrows(IllegalArgumentException.class, () -> new HyperLogLog(3));
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.demo.service;
+
+import com.example.demo.User;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ImportJobServiceTest {
+
+    private static final String CSV = "username,email,password,roles\njohn_doe,john@example.com,secret,USER\n";
+
+    @Mock
+    private ImportService importService;
+
+    @TempDir
+    Path spoolDirectory;
+
+    @Test
+    void testRecoversJobInterruptedByARestartFromItsCheckpoint() throws IOException {
+        // Given a job that committed two records before its node went down
+        doAnswer(invocation -> {
+            ImportService.ImportListener listener = invocation.getArgument(3);
+            listener.imported(1, User.builder().username("john_doe").build());
+            listener.failed(2, "jane_doe", "Duplicate username");
+            listener.committed(2, 40);
+            listener.imported(3, User.builder().username("bob").build());
+            throw new IllegalStateException("Node stopped");
+        }).when(importService).importUsers(any(Path.class), eq(0L), eq(0L), any());
+        ImportJob job = newImportJobService(Duration.ofHours(1)).submit(upload());
+
+        // When
+        ImportJobService restarted = newImportJobService(Duration.ofHours(1));
+        restarted.recoverInterruptedJobs();
+
+        // Then
+        ImportJob recovered = restarted.getJob(job.getId()).orElseThrow();
+        assertEquals(ImportJob.Status.FAILED, recovered.getStatus());
+        assertEquals(new ImportJob.Checkpoint(job.getId(), "users.csv", CSV.length(), 2, 40, 1, 1),
+            recovered.checkpoint());
+        ImportJobStatus status = recovered.status(0, 10);
+        assertEquals(1, status.succeeded());
+        assertEquals(1, status.failed());
+        assertTrue(Files.exists(spoolDirectory.resolve(job.getId() + ".csv")));
+    }
+
+    @Test
+    void testResumesFailedJobAfterLastCommittedRecord() throws IOException {
+        // Given
+        doAnswer(invocation -> {
+            ImportService.ImportListener listener = invocation.getArgument(3);
+            listener.imported(1, User.builder().username("john_doe").build());
+            listener.committed(1, 40);
+            listener.imported(2, User.builder().username("bob").build());
+            throw new IOException("Connection reset");
+        }).when(importService).importUsers(any(Path.class), eq(0L), eq(0L), any());
+        ImportJobService importJobService = newImportJobService(Duration.ofHours(1));
+        ImportJob job = importJobService.submit(upload());
+        assertEquals(ImportJob.Status.FAILED, job.getStatus());
+        Path dataFile = spoolDirectory.resolve(job.getId() + ".csv");
+        doAnswer(invocation -> {
+            ImportService.ImportListener listener = invocation.getArgument(3);
+            listener.imported(2, User.builder().username("bob").build());
+            listener.committed(2, 80);
+            return null;
+        }).when(importService).importUsers(eq(dataFile), eq(1L), eq(40L), any());
+
+        // When
+        ImportJob resumed = importJobService.resume(job.getId()).orElseThrow();
+
+        // Then
+        assertSame(job, resumed);
+        assertEquals(ImportJob.Status.COMPLETED, resumed.getStatus());
+        assertEquals(2, resumed.status(0, 10).succeeded());
+        verify(importService).importUsers(eq(dataFile), eq(1L), eq(40L), any());
+        assertFalse(Files.exists(dataFile));
+        assertFalse(Files.exists(spoolDirectory.resolve(job.getId() + ".checkpoint")));
+    }
+
+    @Test
+    void testOnlyFailedJobsCanBeResumed() throws IOException {
+        ImportJobService importJobService = new ImportJobService(importService, task -> { }, Duration.ofHours(1),
+            spoolDirectory.toString());
+        ImportJob queued = importJobService.submit(upload());
+
+        assertThrows(IllegalStateException.class, () -> importJobService.resume(queued.getId()));
+        assertTrue(importJobService.resume("unknown").isEmpty());
+    }
+
+    @Test
+    void testEvictsFinishedJobsWithTheirFiles() throws IOException {
+        // Given a failed job, whose files are kept for resuming until it expires
+        doThrow(new IOException("Disk full")).when(importService)
+            .importUsers(any(Path.class), anyLong(), anyLong(), any());
+        // A negative retention puts every finished job past it
+        ImportJobService importJobService = newImportJobService(Duration.ofMinutes(-1));
+        ImportJob job = importJobService.submit(upload());
+        assertTrue(Files.exists(spoolDirectory.resolve(job.getId() + ".checkpoint")));
+
+        // When
+        importJobService.evictFinishedJobs();
+
+        // Then
+        assertTrue(importJobService.getJob(job.getId()).isEmpty());
+        assertFalse(Files.exists(spoolDirectory.resolve(job.getId() + ".csv")));
+        assertFalse(Files.exists(spoolDirectory.resolve(job.getId() + ".checkpoint")));
+    }
+
+    private ImportJobService newImportJobService(Duration retention) {
+        return new ImportJobService(importService, Runnable::run, retention, spoolDirectory.toString());
+    }
+
+    private static MockMultipartFile upload() {
+        return new MockMultipartFile("file", "users.csv", "text/csv", CSV.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.demo.service;
+
+import com.example.demo.User;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImportJobTest {
+
+    @Test
+    void testCountsOutcomesAndPagesErrors() {
+        ImportJob job = new ImportJob("job-1", "users.csv", 1000);
+        job.started();
+
+        job.imported(1, User.builder().username("john_doe").build());
+        job.failed(2, "jane_doe", "Duplicate username");
+        job.skipped(3, "Index for header 'roles' is 4 but CSVRecord only has 3 values!");
+        job.imported(4, User.builder().username("bob").build());
+        job.committed(4, 500);
+
+        ImportJobStatus status = job.status(1, 1);
+        assertEquals(ImportJob.Status.RUNNING, status.status());
+        assertEquals(4, status.processed());
+        assertEquals(2, status.succeeded());
+        assertEquals(2, status.failed());
+        assertEquals(2, status.totalErrors());
+        assertEquals(List.of(new ImportJob.ImportError(3, null,
+                "Index for header 'roles' is 4 but CSVRecord only has 3 values!")), status.errors());
+    }
+
+    @Test
+    void testCompletedJobHasNoEta() {
+        ImportJob job = new ImportJob("job-2", "users.csv", 1000);
+        job.started();
+        job.committed(10, 1000);
+        job.completed();
+
+        ImportJobStatus status = job.status(0, 50);
+        assertEquals(ImportJob.Status.COMPLETED, status.status());
+        assertNotNull(status.finishedAt());
+        assertNull(status.etaSeconds());
+        assertTrue(status.errors().isEmpty());
+    }
+
+    @Test
+    void testRetainsBoundedNumberOfErrors() {
+        ImportJob job = new ImportJob("job-3", "users.csv", 1000);
+        for (int row = 1; row <= ImportJob.MAX_ERRORS + 10; row++) {
+            job.failed(row, "user" + row, "Duplicate username");
+        }
+
+        ImportJobStatus status = job.status(Integer.MAX_VALUE / 100, 100);
+        assertEquals(ImportJob.MAX_ERRORS + 10, status.failed());
+        assertEquals(ImportJob.MAX_ERRORS, status.totalErrors());
+        assertTrue(status.errors().isEmpty());
+    }
+
+    @Test
+    void testFailedJobKeepsReason() {
+        ImportJob job = new ImportJob("job-4", "users.csv", 1000);
+        job.started();
+        job.failed("Invalid CSV structure");
+
+        ImportJobStatus status = job.status(0, 0);
+        assertEquals(ImportJob.Status.FAILED, status.status());
+        assertEquals("Invalid CSV structure", status.message());
+    }
+
+    @Test
+    void testRequeueDiscardsOutcomesAfterCheckpoint() {
+        ImportJob job = new ImportJob("job-5", "users.csv", 1000);
+        job.started();
+        job.imported(1, User.builder().username("john_doe").build());
+        job.failed(2, "jane_doe", "Duplicate username");
+        job.committed(2, 120);
+        job.imported(3, User.builder().username("bob").build());
+        job.failed(4, "alice", "Duplicate email");
+        job.failed("Connection refused");
+
+        assertTrue(job.requeue());
+        assertFalse(job.requeue());
+
+        ImportJobStatus status = job.status(0, 50);
+        assertEquals(ImportJob.Status.QUEUED, status.status());
+        assertEquals(1, status.succeeded());
+        assertEquals(1, status.failed());
+        assertEquals(2, status.committedRecord());
+        assertEquals(List.of(new ImportJob.ImportError(2, "jane_doe", "Duplicate username")), status.errors());
+        assertEquals(new ImportJob.Checkpoint("job-5", "users.csv", 1000, 2, 120, 1, 1), job.checkpoint());
+    }
+
+    @Test
+    void testRestoredJobCanBeResumed() {
+        ImportJob job = ImportJob.restore(
+            new ImportJob.Checkpoint("job-6", "users.csv", 1000, 500, 40_000, 480, 20), "Interrupted by a restart");
+
+        ImportJobStatus status = job.status(0, 50);
+        assertEquals(ImportJob.Status.FAILED, status.status());
+        assertEquals(500, status.processed());
+        assertTrue(job.requeue());
+        assertEquals(500, job.checkpoint().committedRecord());
+    }
+}
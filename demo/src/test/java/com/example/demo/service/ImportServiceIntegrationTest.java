@@ -10,17 +10,19 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
-import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.function.BiConsumer;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.Mockito.*;
 
 @SpringBootTest
@@ -45,28 +47,23 @@ class ImportServiceIntegrationTest {
         
         Path csvFile = tempDir.resolve("users.csv");
         Files.writeString(csvFile, csvContent);
-        
-        MockMultipartFile file = new MockMultipartFile(
-            "users.csv",
-            "users.csv",
-            "text/csv",
-            Files.readAllBytes(csvFile)
-        );
 
-        when(userService.createUser(any(User.class))).thenAnswer(i -> i.getArgument(0));
+        when(userService.createUsers(anyList(), any())).thenAnswer(i -> i.getArgument(0));
 
         // When
-        List<String> results = importService.importUsersFromCsv(file);
+        List<String> results = importFile(csvFile);
 
         // Then
         assertEquals(2, results.size());
         assertTrue(results.get(0).contains("Successfully imported user: john_doe"));
         assertTrue(results.get(1).contains("Successfully imported user: jane_doe"));
 
-        ArgumentCaptor<User> userCaptor = ArgumentCaptor.forClass(User.class);
-        verify(userService, times(2)).createUser(userCaptor.capture());
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<User>> batchCaptor = ArgumentCaptor.forClass(List.class);
+        verify(userService, times(1)).createUsers(batchCaptor.capture(), any());
 
-        List<User> capturedUsers = userCaptor.getAllValues();
+        List<User> capturedUsers = batchCaptor.getValue();
+        assertEquals(2, capturedUsers.size());
         
         // Verify first user
         User user1 = capturedUsers.get(0);
@@ -94,62 +91,136 @@ class ImportServiceIntegrationTest {
         
         Path csvFile = tempDir.resolve("users.csv");
         Files.writeString(csvFile, csvContent);
-        
-        MockMultipartFile file = new MockMultipartFile(
-            "users.csv",
-            "users.csv",
-            "text/csv",
-            Files.readAllBytes(csvFile)
-        );
 
-        when(userService.createUser(any(User.class)))
-            .thenThrow(new IllegalArgumentException("Invalid email format"))
-            .thenAnswer(i -> i.getArgument(0));
+        when(userService.createUsers(anyList(), any())).thenAnswer(i -> {
+            List<User> users = i.getArgument(0);
+            BiConsumer<User, Exception> onFailure = i.getArgument(1);
+            onFailure.accept(users.get(0), new IllegalArgumentException("Invalid email format"));
+            return users.subList(1, users.size());
+        });
 
         // When
-        List<String> results = importService.importUsersFromCsv(file);
+        List<String> results = importFile(csvFile);
 
         // Then
         assertEquals(2, results.size());
         assertTrue(results.get(0).contains("Failed to import user"));
         assertTrue(results.get(1).contains("Successfully imported user: jane_doe"));
 
-        verify(userService, times(2)).createUser(any(User.class));
+        verify(userService, times(1)).createUsers(anyList(), any());
     }
 
     @Test
-    void testImportEmptyCsv() throws IOException {
+    void testImportRejectsDuplicatesBeforeHashing(@TempDir Path tempDir) throws IOException {
         // Given
-        MockMultipartFile file = new MockMultipartFile(
-            "users.csv",
-            "users.csv",
-            "text/csv",
-            "username,email,password,active,roles\n".getBytes()
-        );
+        String csvContent = "username,email,password,active,roles\n" +
+                          "john_doe,john@example.com,password123,true,ROLE_USER\n" +
+                          "jane_doe,jane@example.com,password456,true,ROLE_USER\n" +
+                          "jane_smith,jane@example.com,password789,true,ROLE_USER";
+        Path csvFile = tempDir.resolve("users.csv");
+        Files.writeString(csvFile, csvContent);
+
+        when(userService.findExistingUsernames(any())).thenReturn(Set.of("john_doe"));
+        when(userService.createUsers(anyList(), any())).thenAnswer(i -> i.getArgument(0));
 
         // When
-        List<String> results = importService.importUsersFromCsv(file);
+        List<String> results = importFile(csvFile);
 
         // Then
-        assertTrue(results.isEmpty());
-        verify(userService, never()).createUser(any(User.class));
+        assertEquals(List.of(
+            "Failed to import user: Username already exists: john_doe",
+            "Successfully imported user: jane_doe",
+            "Failed to import user: Duplicate email in file: jane@example.com"), results);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<User>> batchCaptor = ArgumentCaptor.forClass(List.class);
+        verify(userService, times(1)).createUsers(batchCaptor.capture(), any());
+        assertEquals(List.of("jane_doe"), batchCaptor.getValue().stream().map(User::getUsername).toList());
     }
 
     @Test
-    void testImportMalformedCsv() throws IOException {
+    void testResumeImportAfterCommittedRecord(@TempDir Path tempDir) throws IOException {
         // Given
-        MockMultipartFile file = new MockMultipartFile(
-            "users.csv",
-            "users.csv",
-            "text/csv",
-            "malformed,csv,content".getBytes()
-        );
+        String header = "username,email,password,active,roles\n";
+        String first = "john_doe,john@example.com,password123,true,ROLE_USER\n";
+        String csvContent = header + first +
+                          "jane_doe,jane@example.com,password456,true,ROLE_USER\n" +
+                          "bob,bob@example.com,password789,false,ROLE_USER\n";
+        Path csvFile = tempDir.resolve("users.csv");
+        Files.writeString(csvFile, csvContent);
+
+        when(userService.createUsers(anyList(), any())).thenAnswer(i -> i.getArgument(0));
+
+        List<String> imported = new ArrayList<>();
+        List<Long> committed = new ArrayList<>();
+        ImportService.ImportListener listener = new ImportService.ImportListener() {
+            @Override
+            public void imported(long recordNumber, User user) {
+                imported.add(recordNumber + ":" + user.getUsername());
+            }
+
+            @Override
+            public void failed(long recordNumber, String username, String message) {
+                fail("Unexpected failure of record " + recordNumber + ": " + message);
+            }
+
+            @Override
+            public void committed(long recordNumber, long characterPosition) {
+                committed.add(recordNumber);
+                committed.add(characterPosition);
+            }
+        };
 
         // When
-        List<String> results = importService.importUsersFromCsv(file);
+        importService.importUsers(csvFile, 1, header.length(), listener);
+
+        // Then
+        assertEquals(List.of("2:jane_doe", "3:bob"), imported);
+        assertEquals(List.of(3L, (long) csvContent.indexOf("bob")), committed);
+    }
+
+    @Test
+    void testImportEmptyCsv(@TempDir Path tempDir) throws IOException {
+        // Given
+        Path csvFile = tempDir.resolve("users.csv");
+        Files.writeString(csvFile, "username,email,password,active,roles\n");
+
+        // When
+        List<String> results = importFile(csvFile);
 
         // Then
         assertTrue(results.isEmpty());
-        verify(userService, never()).createUser(any(User.class));
+        verify(userService, never()).createUsers(anyList(), any());
+    }
+
+    @Test
+    void testImportMalformedCsv(@TempDir Path tempDir) throws IOException {
+        // Given
+        Path csvFile = tempDir.resolve("users.csv");
+        Files.writeString(csvFile, "malformed,csv,content");
+
+        // When / Then
+        assertThrows(IllegalArgumentException.class, () -> importFile(csvFile));
+        verify(userService, never()).createUsers(anyList(), any());
+    }
+
+    /**
+     * Imports a file from its start, the way an import job runs, with one message per imported
+     * or failed record.
+     */
+    private List<String> importFile(Path csvFile) throws IOException {
+        List<String> results = new ArrayList<>();
+        importService.importUsers(csvFile, 0, 0, new ImportService.ImportListener() {
+            @Override
+            public void imported(long recordNumber, User user) {
+                results.add("Successfully imported user: " + user.getUsername());
+            }
+
+            @Override
+            public void failed(long recordNumber, String username, String message) {
+                results.add("Failed to import user: " + message);
+            }
+        });
+        return results;
     }
 } 
\ No newline at end of file
@@ -1,21 +1,31 @@
 package com.example.demo.service;
 
+import com.example.demo.CursorPage;
 import com.example.demo.config.TestContainersConfig;
 import com.example.demo.model.mongo.*;
+import com.example.demo.repository.mongo.MongoQueryPlanVerifier;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.MongoOperations;
 import org.springframework.test.context.DynamicPropertyRegistry;
 import org.springframework.test.context.DynamicPropertySource;
 import org.testcontainers.containers.MongoDBContainer;
 import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -27,12 +37,33 @@ class MongoLoggingServiceIntegrationTest {
     @Autowired
     private MongoLoggingService mongoLoggingService;
 
+    @Autowired
+    private MongoQueryPlanVerifier mongoQueryPlanVerifier;
+
+    @Autowired
+    private AnalyticsRollupService analyticsRollupService;
+
+    @Autowired
+    private LogRetentionService logRetentionService;
+
+    @Autowired
+    private ActiveUserSketches activeUserSketches;
+
+    @Autowired
+    private MongoOperations mongoOperations;
+
     @Container
     private static final MongoDBContainer mongoDBContainer = new MongoDBContainer("mongo:6.0");
 
     @DynamicPropertySource
     static void setProperties(DynamicPropertyRegistry registry) {
         registry.add("spring.data.mongodb.uri", mongoDBContainer::getReplicaSetUrl);
+        registry.add("app.mongo.verify-query-plans", () -> "true");
+    }
+
+    @Test
+    void testNoQueryScansWholeCollection() {
+        assertEquals(List.of(), mongoQueryPlanVerifier.verify());
     }
 
     @Test
@@ -118,6 +149,134 @@ class MongoLoggingServiceIntegrationTest {
         assertEquals(auditLog.getId(), logs.get(0).getId());
     }
 
+    @Test
+    void testBulkLoggingReportsRejectedEvents() {
+        // Given
+        AnalyticsData valid = new AnalyticsData("BULK_VIEW", "bulk-user", Map.of("page", "/home"));
+        AnalyticsData missingUser = new AnalyticsData("BULK_VIEW", null, Map.of());
+        AuditLog first = new AuditLog("bulk-user", "DELETE", "USER", "42", Map.of(), null, null, null);
+        first.setId("audit-bulk-1");
+        AuditLog duplicate = new AuditLog("bulk-user", "DELETE", "USER", "43", Map.of(), null, null, null);
+        duplicate.setId("audit-bulk-1");
+
+        // When
+        BulkLogResult analyticsResult = mongoLoggingService.logAnalyticsEvents(
+            Arrays.asList(valid, missingUser, null));
+        BulkLogResult auditResult = mongoLoggingService.createAuditLogs(List.of(first, duplicate), "10.0.0.1");
+
+        // Then
+        assertEquals(3, analyticsResult.received());
+        assertEquals(1, analyticsResult.written());
+        assertEquals(List.of(1, 2), analyticsResult.errors().stream().map(BulkLogResult.ItemError::index).toList());
+        assertEquals("userId is required", analyticsResult.errors().get(0).message());
+        assertEquals(1, mongoLoggingService.getAnalyticsByEventType("BULK_VIEW").size());
+
+        assertEquals(1, auditResult.written());
+        assertEquals(1, auditResult.errors().size());
+        assertEquals(1, auditResult.errors().get(0).index());
+        List<AuditLog> logs = mongoLoggingService.getAuditLogsByUser("bulk-user");
+        assertEquals(1, logs.size());
+        assertEquals("10.0.0.1", logs.get(0).getIpAddress());
+        assertEquals("SUCCESS", logs.get(0).getStatus());
+    }
+
+    @Test
+    void testScrollUserActivitiesVisitsEachActivityOnce() {
+        // Given
+        List<String> logged = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            logged.add(mongoLoggingService.logUserActivity("page-user", "VIEW", "page " + i, "ip", "agent").getId());
+        }
+
+        // When
+        List<UserActivity> scrolled = new ArrayList<>();
+        String cursor = null;
+        do {
+            CursorPage<UserActivity> page = mongoLoggingService.scrollUserActivities(
+                "page-user", null, null, cursor, 2, "action");
+            assertTrue(page.content().size() <= 2);
+            scrolled.addAll(page.content());
+            cursor = page.nextCursor();
+        } while (cursor != null);
+
+        // Then
+        assertEquals(Set.copyOf(logged), scrolled.stream().map(UserActivity::getId).collect(Collectors.toSet()));
+        assertEquals(5, scrolled.size());
+        for (int i = 1; i < scrolled.size(); i++) {
+            assertFalse(scrolled.get(i).getTimestamp().isAfter(scrolled.get(i - 1).getTimestamp()));
+        }
+        assertEquals("VIEW", scrolled.get(0).getAction());
+        assertNull(scrolled.get(0).getDetails());
+    }
+
+    @Test
+    void testRollupsCountEventsPerMinuteHourAndDay() {
+        // Given
+        Instant now = Instant.now();
+        mongoLoggingService.logAnalyticsEvents(List.of(
+            new AnalyticsData("ROLLUP_EVENT", "user1", Map.of()),
+            new AnalyticsData("ROLLUP_EVENT", "user2", Map.of()),
+            new AnalyticsData("ROLLUP_EVENT", "user1", Map.of())));
+
+        // When
+        analyticsRollupService.rollUp(now.plus(2, ChronoUnit.MINUTES));
+
+        // Then
+        for (AnalyticsRollup.Granularity granularity : AnalyticsRollup.Granularity.values()) {
+            AnalyticsRollupSeries series = analyticsRollupService.getRollups(granularity, "ROLLUP_EVENT",
+                now.minus(1, ChronoUnit.DAYS), now.plus(1, ChronoUnit.DAYS));
+            assertEquals(3, series.buckets().stream().mapToLong(AnalyticsRollup::getCount).sum(),
+                "Expected 3 events in " + granularity + " rollups");
+            assertNotNull(series.completeUntil());
+        }
+    }
+
+    @Test
+    void testActiveUserSketchesAreStoredAndLoaded() {
+        // Given
+        LocalDate today = LocalDate.now();
+        long before = activeUserSketches.activeUsers(today, today);
+        mongoLoggingService.logUserActivity("sketch-user-1", "LOGIN", "details", "ip", "agent");
+        mongoLoggingService.logUserActivities(List.of(
+            new UserActivity("sketch-user-1", "VIEW", "details", "ip", "agent"),
+            new UserActivity("sketch-user-2", "VIEW", "details", "ip", "agent")), "ip", "agent");
+        // Buffered activities are counted once written
+        mongoLoggingService.getUserActivities("sketch-user-1");
+
+        // When
+        activeUserSketches.flush();
+        ActiveUserSketches restarted = new ActiveUserSketches(mongoOperations, Duration.ofDays(7), Duration.ofDays(400));
+        restarted.load();
+
+        // Then
+        long after = activeUserSketches.activeUsers(today, today);
+        assertTrue(after - before >= 1 && after - before <= 3, "Expected about 2 new users, got " + (after - before));
+        assertEquals(after, restarted.activeUsers(today, today));
+        assertEquals(activeUserSketches.dailyActiveUsers(today, today), restarted.dailyActiveUsers(today, today));
+    }
+
+    @Test
+    void testAgedAuditLogsMoveToArchive() {
+        // Given
+        Instant now = Instant.now();
+        AuditLog aged = new AuditLog("archive-user", "DELETE", "USER", "7", Map.of(), "ip", "SUCCESS", "details");
+        aged.setTimestamp(now.minus(40, ChronoUnit.DAYS));
+        AuditLog recent = new AuditLog("archive-user", "UPDATE", "USER", "7", Map.of(), "ip", "SUCCESS", "details");
+        mongoLoggingService.createAuditLogs(List.of(aged, recent), "ip");
+
+        // When
+        long archived = logRetentionService.archiveAuditLogs(now);
+
+        // Then
+        assertTrue(archived >= 1);
+        List<AuditLog> hot = mongoLoggingService.getAuditLogsByUser("archive-user");
+        assertEquals(List.of("UPDATE"), hot.stream().map(AuditLog::getAction).toList());
+        CursorPage<AuditLog> archive = logRetentionService.scrollAuditArchive("archive-user",
+            now.minus(60, ChronoUnit.DAYS), now, null, 10);
+        assertEquals(List.of("DELETE"), archive.content().stream().map(AuditLog::getAction).toList());
+        assertFalse(archive.hasNext());
+    }
+
     @Test
     void testSessionManagement() {
         // Given
@@ -145,6 +304,11 @@ class MongoLoggingServiceIntegrationTest {
         var updatedSession = mongoLoggingService.getActiveSession(sessionToken).get();
         assertTrue(updatedSession.getLastAccessTime().isAfter(beforeUpdate));
 
+        // Test touches within the touch interval are coalesced
+        mongoLoggingService.updateSessionActivity(sessionToken);
+        assertEquals(updatedSession.getLastAccessTime(),
+            mongoLoggingService.getActiveSession(sessionToken).get().getLastAccessTime());
+
         // Test session invalidation
         mongoLoggingService.invalidateSession(sessionToken);
         assertTrue(mongoLoggingService.getActiveSession(sessionToken).isEmpty());
@@ -0,0 +1,156 @@
+package com.example.demo.service;
+
+import com.example.demo.UserActivityService;
+import com.example.demo.config.WriteBehindProperties;
+import com.example.demo.model.mongo.UserActivity;
+import com.example.demo.model.mongo.UserSession;
+import com.example.demo.repository.mongo.AnalyticsDataRepository;
+import com.example.demo.repository.mongo.AuditLogRepository;
+import com.example.demo.repository.mongo.UserActivityRepository;
+import com.example.demo.repository.mongo.UserSessionRepository;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.result.UpdateResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MongoLoggingServiceTest {
+
+    @Mock
+    private UserActivityRepository userActivityRepository;
+
+    @Mock
+    private AnalyticsDataRepository analyticsDataRepository;
+
+    @Mock
+    private UserSessionRepository userSessionRepository;
+
+    @Mock
+    private AuditLogRepository auditLogRepository;
+
+    @Mock
+    private MongoOperations mongoOperations;
+
+    @Mock
+    private BulkOperations bulkOperations;
+
+    @Mock
+    private UserActivityService userActivityService;
+
+    private MongoLoggingService mongoLoggingService;
+
+    @BeforeEach
+    void setUp() {
+        mongoLoggingService = new MongoLoggingService(userActivityRepository, analyticsDataRepository,
+            userSessionRepository, auditLogRepository, mongoOperations, new WriteBehindProperties(),
+            new SimpleMeterRegistry(), userActivityService, 100, Duration.ZERO, "node-1");
+        lenient().when(mongoOperations.bulkOps(eq(BulkMode.UNORDERED), eq(UserActivity.class))).thenReturn(bulkOperations);
+        lenient().when(bulkOperations.insert(anyList())).thenReturn(bulkOperations);
+    }
+
+    @AfterEach
+    void tearDown() {
+        mongoLoggingService.close();
+    }
+
+    @Test
+    void testOnlyWrittenActivitiesOfABatchAreCounted() {
+        // Given
+        BulkOperationException duplicate = rejected(1);
+        when(bulkOperations.execute()).thenThrow(duplicate);
+        List<UserActivity> activities = List.of(
+            new UserActivity("1", "LOGIN", "details", "ip", "agent"),
+            new UserActivity("2", "LOGIN", "details", "ip", "agent"));
+
+        // When
+        BulkLogResult result = mongoLoggingService.logUserActivities(activities, "ip", "agent");
+
+        // Then
+        assertEquals(1, result.written());
+        assertTrue(activities.stream().allMatch(activity -> "node-1".equals(activity.getNodeId())));
+        verify(userActivityService).recordUserActivity(eq("1"), eq("LOGIN"), any());
+        verify(userActivityService, never()).recordUserActivity(eq("2"), any(), any());
+    }
+
+    @Test
+    void testFailedBatchIsNotCounted() {
+        // Given
+        when(bulkOperations.execute()).thenThrow(new DataAccessResourceFailureException("down"));
+        List<UserActivity> activities = List.of(new UserActivity("1", "LOGIN", "details", "ip", "agent"));
+
+        // When
+        assertThrows(DataAccessResourceFailureException.class,
+            () -> mongoLoggingService.logUserActivities(activities, "ip", "agent"));
+
+        // Then
+        verifyNoInteractions(userActivityService);
+    }
+
+    @Test
+    void testBufferedActivityIsCountedOnlyOnceWritten() {
+        // Given
+        BulkOperationException duplicate = rejected(0);
+        when(bulkOperations.execute()).thenReturn(null).thenThrow(duplicate);
+
+        // When
+        mongoLoggingService.logUserActivity("1", "LOGIN", "details", "ip", "agent");
+        mongoLoggingService.getUserActivities("1");
+        mongoLoggingService.logUserActivity("2", "LOGIN", "details", "ip", "agent");
+        mongoLoggingService.getUserActivities("2");
+
+        // Then
+        verify(userActivityService).recordUserActivity(eq("1"), eq("LOGIN"), any());
+        verify(userActivityService, never()).recordUserActivity(eq("2"), any(), any());
+    }
+
+    @Test
+    void testFailedSessionTouchIsRetriedWithinTheTouchInterval() {
+        // Given
+        MongoLoggingService throttled = new MongoLoggingService(userActivityRepository, analyticsDataRepository,
+            userSessionRepository, auditLogRepository, mongoOperations, new WriteBehindProperties(),
+            new SimpleMeterRegistry(), userActivityService, 100, Duration.ofMinutes(1), "node-1");
+        when(mongoOperations.updateFirst(any(Query.class), any(UpdateDefinition.class), eq(UserSession.class)))
+            .thenThrow(new DataAccessResourceFailureException("down"))
+            .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+
+        // When
+        try {
+            assertThrows(DataAccessResourceFailureException.class, () -> throttled.updateSessionActivity("token"));
+            throttled.updateSessionActivity("token");
+            throttled.updateSessionActivity("token");
+        } finally {
+            throttled.close();
+        }
+
+        // Then
+        verify(mongoOperations, times(2)).updateFirst(any(Query.class), any(UpdateDefinition.class), eq(UserSession.class));
+    }
+
+    private static BulkOperationException rejected(int index) {
+        BulkOperationException exception = mock(BulkOperationException.class);
+        when(exception.getErrors()).thenReturn(List.of(new BulkWriteError(11000, "duplicate key", new BsonDocument(), index)));
+        return exception;
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.demo.service;
+
+import com.example.demo.config.WriteBehindProperties;
+import com.example.demo.config.WriteBehindProperties.Durability;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteBehindBufferTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void testWritesFullBatchesWithoutWaitingForDelay() {
+        List<List<String>> batches = Collections.synchronizedList(new ArrayList<>());
+        WriteBehindProperties properties = properties(Durability.BEST_EFFORT, 100);
+        properties.setBatchSize(3);
+        properties.setMaxDelay(Duration.ofMinutes(1));
+
+        try (WriteBehindBuffer<String> buffer = new WriteBehindBuffer<>("test", documents -> {
+            batches.add(List.copyOf(documents));
+            return Set.of();
+        }, properties, registry)) {
+            for (int i = 0; i < 6; i++) {
+                buffer.add("event" + i);
+            }
+            buffer.flush();
+        }
+
+        assertEquals(List.of("event0", "event1", "event2", "event3", "event4", "event5"),
+            batches.stream().flatMap(List::stream).toList());
+        assertTrue(batches.stream().allMatch(batch -> batch.size() <= 3));
+        assertEquals(6, registry.counter("logging.writebehind.written", "stream", "test").count());
+    }
+
+    @Test
+    void testFlushMakesQueuedDocumentsVisible() throws InterruptedException {
+        List<String> written = Collections.synchronizedList(new ArrayList<>());
+        WriteBehindProperties properties = properties(Durability.BEST_EFFORT, 100);
+        // Far beyond the sync timeout, so only a flush can get the batch written in time
+        properties.setMaxDelay(Duration.ofMinutes(1));
+
+        try (WriteBehindBuffer<String> buffer = new WriteBehindBuffer<>("test", documents -> {
+            written.addAll(documents);
+            return Set.of();
+        }, properties, registry)) {
+            buffer.add("login");
+            buffer.add("logout");
+            // Let the flusher take both into its batch and wait for more
+            while (buffer.size() > 0) {
+                Thread.sleep(1);
+            }
+            buffer.flush();
+
+            assertEquals(List.of("login", "logout"), written);
+            assertEquals(0, buffer.size());
+        }
+    }
+
+    @Test
+    void testBestEffortDropsWhenFull() throws InterruptedException {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        WriteBehindProperties properties = properties(Durability.BEST_EFFORT, 2);
+        properties.setBatchSize(1);
+
+        try (WriteBehindBuffer<String> buffer = new WriteBehindBuffer<>("test", documents -> {
+            writing.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return Set.of();
+        }, properties, registry)) {
+            buffer.add("event0");
+            writing.await();
+            buffer.add("event1");
+            buffer.add("event2");
+            buffer.add("event3");
+
+            assertEquals(1, registry.counter("logging.writebehind.dropped", "stream", "test").count());
+            release.countDown();
+            buffer.flush();
+        }
+
+        assertEquals(3, registry.counter("logging.writebehind.written", "stream", "test").count());
+    }
+
+    @Test
+    void testSyncWaitsForWriteAndReportsRejection() {
+        List<String> written = Collections.synchronizedList(new ArrayList<>());
+        WriteBehindProperties properties = properties(Durability.SYNC, 100);
+
+        try (WriteBehindBuffer<String> buffer = new WriteBehindBuffer<>("test", documents -> {
+            if (documents.contains("duplicate")) {
+                return Set.of(documents.indexOf("duplicate"));
+            }
+            written.addAll(documents);
+            return Set.of();
+        }, properties, registry)) {
+            buffer.add("created");
+            assertEquals(List.of("created"), written);
+
+            assertThrows(IllegalStateException.class, () -> buffer.add("duplicate"));
+        }
+
+        assertEquals(1, registry.counter("logging.writebehind.dropped", "stream", "test").count());
+    }
+
+    @Test
+    void testSyncPropagatesWriterFailure() {
+        WriteBehindProperties properties = properties(Durability.SYNC, 100);
+
+        try (WriteBehindBuffer<String> buffer = new WriteBehindBuffer<>("test", documents -> {
+            throw new IllegalArgumentException("Connection refused");
+        }, properties, registry)) {
+            IllegalArgumentException error = assertThrows(IllegalArgumentException.class, () -> buffer.add("created"));
+            assertEquals("Connection refused", error.getMessage());
+        }
+    }
+
+    private static WriteBehindProperties properties(Durability durability, int capacity) {
+        WriteBehindProperties properties = new WriteBehindProperties();
+        properties.setCapacity(capacity);
+        properties.setMaxDelay(Duration.ofMillis(10));
+        properties.setDurability(Map.of("test", durability));
+        return properties;
+    }
+}